@@ -0,0 +1,113 @@
+package benchmarks;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the ChessGame rules the server runs on every move.
+ * <p>
+ * Build with {@code mvn -pl benchmarks -am package -DskipTests} and run with
+ * {@code java -jar benchmarks/target/benchmarks-jar-with-dependencies.jar -prof gc}
+ * to report allocation per operation alongside ops/sec.
+ * <p>
+ * The game status is cached per position, so the checkmate and stalemate
+ * benchmarks reset the turn first. That measures the full computation a freshly
+ * loaded game pays, not a cache hit.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChessGameBenchmark {
+
+    @Param({Positions.OPENING, Positions.MIDDLEGAME, Positions.ENDGAME})
+    public String position;
+
+    private ChessGame game;
+    private ChessGame.TeamColor turn;
+    private List<ChessPosition> ownPieces;
+    private ChessMove move;
+
+    @Setup
+    public void setUp() {
+        game = Positions.load(position);
+        turn = game.getTeamTurn();
+        ownPieces = new ArrayList<>();
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                ChessPosition square = ChessPosition.of(row, col);
+                if (game.getBoard().getPiece(square) != null && game.getBoard().getPiece(square).getTeamColor() == turn) {
+                    ownPieces.add(square);
+                }
+            }
+        }
+        move = game.legalMoves().iterator().next();
+    }
+
+    //validMoves for every piece of the side to move, as the client's move highlighting asks for them
+    @Benchmark
+    public void validMoves(Blackhole blackhole) {
+        for (ChessPosition square : ownPieces) {
+            blackhole.consume(game.validMoves(square));
+        }
+    }
+
+    @Benchmark
+    public Object legalMoves() {
+        return game.legalMoves();
+    }
+
+    //includes copying the game, since the validated makeMove has no way to take a move back
+    @Benchmark
+    public ChessGame makeMove() throws InvalidMoveException {
+        ChessGame copy = new ChessGame(turn, new ChessBoard(game.getBoard()));
+        copy.makeMove(move);
+        return copy;
+    }
+
+    @Benchmark
+    public long makeAndUnmakeLegalMove() {
+        game.makeLegalMove(move);
+        long key = game.positionKey();
+        game.unmakeMove();
+        return key;
+    }
+
+    @Benchmark
+    public boolean isInCheck() {
+        return game.isInCheck(turn);
+    }
+
+    @Benchmark
+    public boolean isInCheckmate() {
+        game.setTeamTurn(turn);
+        return game.isInCheckmate(turn);
+    }
+
+    @Benchmark
+    public boolean isInStalemate() {
+        game.setTeamTurn(turn);
+        return game.isInStalemate(turn);
+    }
+}
@@ -0,0 +1,91 @@
+package benchmarks;
+
+import chess.ChessGame;
+import chess.engine.ParallelSearch;
+import chess.engine.Search;
+import chess.engine.SearchLimits;
+import chess.engine.SearchResult;
+import chess.engine.TranspositionTable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How ParallelSearch scales with threads: the time to search a fixed set of
+ * positions to a depth, and the nodes searched per second, each against one
+ * thread.
+ * <p>
+ * Extra threads are for reaching a depth sooner, so time-to-depth is the
+ * speedup that matters; nodes per second shows how much of the machine the
+ * threads use, and the gap between the two is the work they duplicate. This
+ * is a harness rather than a JMH benchmark because the interesting numbers are
+ * those ratios, and each search is long enough to time on its own.
+ * <p>
+ * Run with {@code java -cp benchmarks/target/benchmarks-jar-with-dependencies.jar
+ * benchmarks.ParallelSearchScaling <depth> <threads>...}, for example
+ * {@code 10 2 4 8}. One thread is always measured first, as the baseline.
+ */
+public final class ParallelSearchScaling {
+
+    private static final String[] POSITIONS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r1bqkbnr/1ppp1ppp/p1n5/1B2p3/4P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 0 4",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+    };
+
+    private ParallelSearchScaling() {
+    }
+
+    private record Run(int threads, long nanos, long nodes) {
+        double nps() {
+            return nodes * 1e9 / Math.max(1, nanos);
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: ParallelSearchScaling <depth> <threads>...");
+            return;
+        }
+        int depth = Integer.parseInt(args[0]);
+        List<Integer> threadCounts = new ArrayList<>(List.of(1));
+        for (int i = 1; i < args.length; i++) {
+            int threads = Integer.parseInt(args[i]);
+            if (!threadCounts.contains(threads)) {
+                threadCounts.add(threads);
+            }
+        }
+
+        List<Run> runs = new ArrayList<>();
+        for (int threads : threadCounts) {
+            TranspositionTable table = new TranspositionTable(Search.DEFAULT_TABLE_MEGABYTES * 4);
+            try (ParallelSearch search = new ParallelSearch(threads, table)) {
+                //warm up the JIT so the first timed position isn't slowed by compilation
+                run(search, table, Math.max(1, depth - 2));
+                runs.add(run(search, table, depth));
+            }
+        }
+
+        Run single = runs.getFirst();
+        System.out.printf("%7s %10s %8s %14s %12s %8s%n", "threads", "ms", "speedup", "nodes", "nps", "nps x");
+        for (Run run : runs) {
+            System.out.printf("%7d %10d %8.2f %14d %12.0f %8.2f%n", run.threads(), run.nanos() / 1_000_000,
+                    (double) single.nanos() / run.nanos(), run.nodes(), run.nps(), run.nps() / single.nps());
+        }
+    }
+
+    //every position to the depth, each from an empty table so no run profits from the last
+    private static Run run(ParallelSearch search, TranspositionTable table, int depth) {
+        long nanos = 0;
+        long nodes = 0;
+        for (String fen : POSITIONS) {
+            table.clear();
+            SearchResult result = search.search(ChessGame.fromFen(fen), SearchLimits.depth(depth));
+            nanos += result.nanos();
+            nodes += result.nodes();
+        }
+        return new Run(search.getThreads(), nanos, nodes);
+    }
+}
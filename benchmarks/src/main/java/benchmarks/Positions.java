@@ -0,0 +1,100 @@
+package benchmarks;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+
+/**
+ * Positions the benchmarks run against, one from each phase of a game.
+ */
+final class Positions {
+
+    static final String OPENING = "opening";
+    static final String MIDDLEGAME = "middlegame";
+    static final String ENDGAME = "endgame";
+
+    private Positions() {
+    }
+
+    static ChessGame load(String name) {
+        return switch (name) {
+            case OPENING -> ruyLopez();
+            case MIDDLEGAME -> new ChessGame(ChessGame.TeamColor.WHITE, loadBoard("""
+                    |r| | | |k| | |r|
+                    |p| |p|p|q|p|b| |
+                    |b|n| | |p|n|p| |
+                    | | | |P|N| | | |
+                    | |p| | |P| | | |
+                    | | |N| | |Q| |p|
+                    |P|P|P|B|B|P|P|P|
+                    |R| | | |K| | |R|
+                    """));
+            case ENDGAME -> new ChessGame(ChessGame.TeamColor.WHITE, loadBoard("""
+                    | | | | | | | | |
+                    | | |p| | | | | |
+                    | | | |p| | | | |
+                    |K|P| | | | | |r|
+                    | |R| | | |p| |k|
+                    | | | | | | | | |
+                    | | | | |P| |P| |
+                    | | | | | | | | |
+                    """));
+            default -> throw new IllegalArgumentException("Unknown position: " + name);
+        };
+    }
+
+    //1. e4 e5 2. Nf3 Nc6 3. Bb5 a6, played through makeMove so castling rights and history are real
+    private static ChessGame ruyLopez() {
+        ChessGame game = new ChessGame();
+        int[][] moves = {{2, 5, 4, 5}, {7, 5, 5, 5}, {1, 7, 3, 6}, {8, 2, 6, 3}, {1, 6, 5, 2}, {7, 1, 6, 1}};
+        try {
+            for (int[] move : moves) {
+                game.makeMove(new ChessMove(ChessPosition.of(move[0], move[1]),
+                        ChessPosition.of(move[2], move[3]), null));
+            }
+        } catch (InvalidMoveException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return game;
+    }
+
+    //same layout as the passoff tests: rank 8 first, one |x| cell per square
+    private static ChessBoard loadBoard(String boardText) {
+        ChessBoard board = new ChessBoard();
+        int row = 8;
+        int column = 1;
+        for (char c : boardText.toCharArray()) {
+            switch (c) {
+                case '\n' -> {
+                    column = 1;
+                    row--;
+                }
+                case ' ' -> column++;
+                case '|' -> {
+                }
+                default -> {
+                    ChessGame.TeamColor color = Character.isLowerCase(c) ? ChessGame.TeamColor.BLACK
+                            : ChessGame.TeamColor.WHITE;
+                    board.addPiece(ChessPosition.of(row, column), ChessPiece.of(color, pieceType(c)));
+                    column++;
+                }
+            }
+        }
+        return board;
+    }
+
+    private static ChessPiece.PieceType pieceType(char c) {
+        return switch (Character.toLowerCase(c)) {
+            case 'k' -> ChessPiece.PieceType.KING;
+            case 'q' -> ChessPiece.PieceType.QUEEN;
+            case 'b' -> ChessPiece.PieceType.BISHOP;
+            case 'n' -> ChessPiece.PieceType.KNIGHT;
+            case 'r' -> ChessPiece.PieceType.ROOK;
+            case 'p' -> ChessPiece.PieceType.PAWN;
+            default -> throw new IllegalArgumentException("Unknown piece: " + c);
+        };
+    }
+}
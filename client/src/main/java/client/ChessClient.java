@@ -15,6 +15,7 @@ import ui.ChessBoardUI;
 import ui.EscapeSequences;
 import websocket.ServerMessageHandler;
 import websocket.WebSocketFacade;
+import websocket.messages.AnalysisMessage;
 import websocket.messages.ErrorMessage;
 import websocket.messages.GameMessage;
 import websocket.messages.ServerMessage;
@@ -200,7 +201,20 @@ public class ChessClient implements ServerMessageHandler {
                     break label;
                 case "help":
                     System.out.println(EscapeSequences.SET_TEXT_COLOR_YELLOW + "Commands and usages: \n" +
-                            "quit - return to menu\nredraw - redraw the board");
+                            "quit - return to menu\nredraw - redraw the board\n" +
+                            "analyze [lines] - have the engine suggest the best few moves");
+                    break;
+                case "analyze":
+                    int lines = 3;
+                    if (input.length > 1) {
+                        try {
+                            lines = Integer.parseInt(input[1]);
+                        } catch (NumberFormatException ex) {
+                            System.out.println(EscapeSequences.SET_TEXT_COLOR_RED + "Lines must be a number");
+                            break;
+                        }
+                    }
+                    webSocket.analyze(authToken, gameData.getGameID(), lines);
                     break;
                 case "redraw":
                     drawer.draw(gameData.getGame().getBoard(), false);
@@ -493,7 +507,20 @@ public class ChessClient implements ServerMessageHandler {
         if (row < 1 || row > 8 || col < 1 || col > 8){
             throw new InvalidMoveException("Invalid move!");
         }
-        return new ChessPosition(row, col);
+        return ChessPosition.of(row, col);
+    }
+
+    private void printAnalysis(AnalysisMessage analysis) {
+        System.out.println();
+        String done = analysis.getServerMessageType() == ServerMessage.ServerMessageType.ANALYSIS_COMPLETE ? " (done)" : "";
+        boolean book = !analysis.getLines().isEmpty() && analysis.getLines().getFirst().bookPercent() != null;
+        System.out.println(EscapeSequences.SET_TEXT_COLOR_YELLOW + (book ? "Opening book" : "Depth " + analysis.getDepth() + done));
+        for (AnalysisMessage.Line line : analysis.getLines()) {
+            String score = line.bookPercent() != null ? "book " + line.bookPercent() + "%"
+                    : line.mateIn() != null ? "mate " + line.mateIn()
+                    : String.format("%+.2f", line.centipawns() / 100.0);
+            System.out.println(EscapeSequences.SET_TEXT_COLOR_WHITE + score + "  " + String.join(" ", line.moves()));
+        }
     }
 
     public void notify(String message) {
@@ -510,6 +537,7 @@ public class ChessClient implements ServerMessageHandler {
                     System.out.println("\n" + EscapeSequences.SET_TEXT_COLOR_WHITE + serverMessage.getMessage());
             case ERROR ->
                     System.out.println("\n" + EscapeSequences.SET_TEXT_COLOR_RED + g.fromJson(message, ErrorMessage.class).getErrorMessage());
+            case ANALYSIS, ANALYSIS_COMPLETE -> printAnalysis(g.fromJson(message, AnalysisMessage.class));
         }
         printPlayStatus();
     }
@@ -2,7 +2,6 @@ package serverfacade;
 
 import chess.ChessBoard;
 import chess.ChessGame;
-import chess.ChessPiece;
 import com.google.gson.Gson;
 import com.google.gson.TypeAdapter;
 import com.google.gson.stream.JsonReader;
@@ -57,10 +56,12 @@ public class GameDataTypeAdapter extends TypeAdapter<GameData> {
     }
 
     private ChessGame buildGame(JsonReader jsonReader) throws IOException {
+        if (jsonReader.peek() == JsonToken.STRING) {
+            return ChessGame.fromFen(jsonReader.nextString());
+        }
         ChessGame.TeamColor currentTurn = null;
         boolean gameOver = false;
         ChessBoard board = null;
-        ChessBoard previousBoard = null;
 
         jsonReader.beginObject();
         while (jsonReader.hasNext()){
@@ -69,48 +70,17 @@ public class GameDataTypeAdapter extends TypeAdapter<GameData> {
                 currentTurn = ChessGame.TeamColor.valueOf(jsonReader.nextString());
             } else if (Objects.equals(identifier, "gameOver")){
                 gameOver = jsonReader.nextBoolean();
-            } else if (Objects.equals(identifier, "previousBoard")){
-                previousBoard = buildBoard(jsonReader);
             } else if (Objects.equals(identifier, "board")){
                 board = buildBoard(jsonReader);
+            } else {
+                jsonReader.skipValue();
             }
         }
         jsonReader.endObject();
-        return new ChessGame(currentTurn, board, previousBoard, gameOver);
+        return new ChessGame(currentTurn, board, gameOver);
     }
 
     private ChessBoard buildBoard(JsonReader jsonReader) throws IOException {
-        ChessPiece[][] board = new ChessPiece[8][8];
-        jsonReader.beginObject();
-        jsonReader.nextName();
-        jsonReader.beginArray();
-        for (int i = 0; i < 8; i++){
-            jsonReader.beginArray();
-            for (int j = 0; j < 8; j++){
-                if (jsonReader.peek() == JsonToken.NULL){
-                    jsonReader.nextNull();
-                    board[i][j] = null;
-                    continue;
-                }
-                jsonReader.beginObject();
-                ChessPiece.PieceType pieceType = null;
-                ChessGame.TeamColor teamColor = null;
-                boolean hasMoved = false;
-                while (jsonReader.hasNext()){
-                    String identifier = jsonReader.nextName();
-                    switch (identifier){
-                        case "type" -> pieceType = ChessPiece.PieceType.valueOf(jsonReader.nextString());
-                        case "pieceColor" -> teamColor = ChessGame.TeamColor.valueOf(jsonReader.nextString());
-                        case "hasMoved" -> jsonReader.nextBoolean();
-                    }
-                }
-                jsonReader.endObject();
-                board[i][j] = new ChessPiece(teamColor, pieceType, hasMoved);
-            }
-            jsonReader.endArray();
-        }
-        jsonReader.endArray();
-        jsonReader.endObject();
-        return new ChessBoard(board);
+        return new Gson().fromJson(jsonReader, ChessBoard.class);
     }
 }
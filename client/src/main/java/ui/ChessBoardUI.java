@@ -51,7 +51,6 @@ public class ChessBoardUI {
 
     public void highlight(ChessGame game, boolean isBlack, ChessPosition pos){
 
-        boolean throwsNullPointerException = game.getBoard().getPiece(pos).hasMoved;
         ChessGame.TeamColor color = game.getBoard().getPiece(pos).getTeamColor();
         boolean notFlipped = color == game.getTeamTurn();
         if (!notFlipped){
@@ -98,19 +97,19 @@ public class ChessBoardUI {
             }
             for (int col : cols) {
                 if (whiteSquare){
-                    if (validDestinations.contains(new ChessPosition(row, col))){
+                    if (validDestinations.contains(ChessPosition.of(row, col))){
                         thisRow.append(EscapeSequences.SET_BG_COLOR_LIGHT_BLUE);
                     } else {
                         thisRow.append(EscapeSequences.SET_BG_COLOR_WHITE);
                     }
                 } else {
-                    if (validDestinations.contains(new ChessPosition(row, col))){
+                    if (validDestinations.contains(ChessPosition.of(row, col))){
                         thisRow.append(EscapeSequences.SET_BG_COLOR_BLUE);
                     } else {
                         thisRow.append(EscapeSequences.SET_BG_COLOR_LIGHT_GREY);
                     }
                 }
-                String piece = translateToANSI(game.getBoard().getPiece(new ChessPosition(row, col)), whiteSquare);
+                String piece = translateToANSI(game.getBoard().getPiece(ChessPosition.of(row, col)), whiteSquare);
                 thisRow.append(piece);
                 thisRow.append(EscapeSequences.SET_TEXT_COLOR_BLACK);
                 whiteSquare = !whiteSquare;
@@ -148,7 +147,7 @@ public class ChessBoardUI {
                 } else {
                     thisRow.append(EscapeSequences.SET_BG_COLOR_LIGHT_GREY);
                 }
-                String piece = translateToANSI(board.getPiece(new ChessPosition(row, col)), whiteSquare);
+                String piece = translateToANSI(board.getPiece(ChessPosition.of(row, col)), whiteSquare);
                 thisRow.append(piece);
                 thisRow.append(EscapeSequences.SET_TEXT_COLOR_BLACK);
                 whiteSquare = !whiteSquare;
@@ -3,6 +3,7 @@ package websocket;
 import chess.ChessMove;
 import com.google.gson.Gson;
 import jakarta.websocket.*;
+import websocket.commands.AnalyzeCommand;
 import websocket.commands.ConnectCommand;
 import websocket.commands.MoveCommand;
 import websocket.commands.UserGameCommand;
@@ -92,6 +93,15 @@ public class WebSocketFacade {
         }
     }
 
+    public void analyze(String authToken, int gameID, int lines){
+        try {
+            AnalyzeCommand command = new AnalyzeCommand(UserGameCommand.CommandType.ANALYZE, authToken, gameID, lines, null);
+            this.session.getBasicRemote().sendText(new Gson().toJson(command));
+        } catch (IOException ex) {
+            System.out.println(ex.getMessage());
+        }
+    }
+
     public void leaveGame(String authToken, int gameID){
         try {
             UserGameCommand command = new UserGameCommand(UserGameCommand.CommandType.LEAVE, authToken, gameID);
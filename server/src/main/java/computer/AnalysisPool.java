@@ -0,0 +1,257 @@
+package computer;
+
+import chess.ChessGame;
+import chess.engine.AnalysisListener;
+import chess.engine.OpeningBook;
+import chess.engine.ParallelSearch;
+import chess.engine.SearchLimits;
+import chess.engine.Tablebase;
+import chess.engine.SearchResult;
+import chess.engine.TranspositionTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs multi-PV analyses of positions for people watching or looking back on
+ * games, on worker threads of their own.
+ * <p>
+ * Analysis is a convenience, so it is kept from crowding out play: it has
+ * fewer workers than {@link EnginePool}, at a lower priority, and each
+ * analysis is limited to {@link #ANALYSIS_MILLIS}. Each connection may have
+ * one analysis at a time, and asking for another replaces it. Each user may
+ * have at most {@link #MAX_PER_USER} across all their connections, so no one
+ * can fill the queue.
+ * <p>
+ * Each analysis is searched on its worker and a number of helper threads
+ * (see {@link ParallelSearch}), so it reaches a useful depth sooner in the
+ * time it has. The helpers are started by the worker, so they run at its
+ * priority.
+ * <p>
+ * Positions in the {@link OpeningBook}, if there is one, are better answered
+ * from it than by a search; see {@link #bookMoves(ChessGame)}.
+ */
+public class AnalysisPool implements AutoCloseable {
+
+    public static final int DEFAULT_LINES = 3;
+    public static final int MAX_LINES = 5;
+    public static final int MAX_PER_USER = 2;
+    public static final long ANALYSIS_MILLIS = 10_000;
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+    public static final int DEFAULT_HELPERS = 1;
+
+    private static final int TABLE_MEGABYTES = 8;
+
+    private final BlockingQueue<Job> queue;
+    private final Map<Object, Job> jobs = new ConcurrentHashMap<>();
+    private final Map<String, Integer> perUser = new ConcurrentHashMap<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final OpeningBook book;
+    private final Tablebase tablebase;
+    private final int helpers;
+
+    private static final class Job {
+        final Object owner;
+        final String username;
+        final ChessGame game;
+        final int lines;
+        final AnalysisListener onIteration;
+        final AnalysisListener onComplete;
+        final AtomicBoolean released = new AtomicBoolean();
+        //read by the search, so a cancel counts whether or not it has started
+        volatile boolean cancelled;
+
+        Job(Object owner, String username, ChessGame game, int lines,
+            AnalysisListener onIteration, AnalysisListener onComplete) {
+            this.owner = owner;
+            this.username = username;
+            this.game = game;
+            this.lines = lines;
+            this.onIteration = onIteration;
+            this.onComplete = onComplete;
+        }
+    }
+
+    /**
+     * @return workers for this machine: a quarter of the processors
+     */
+    public static int defaultWorkers() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+    }
+
+    public AnalysisPool() {
+        this(defaultWorkers(), DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param workerCount how many analyses may run at once
+     * @param queueCapacity how many analyses may wait for a worker
+     */
+    public AnalysisPool(int workerCount, int queueCapacity) {
+        this(workerCount, queueCapacity, null, null);
+    }
+
+    /**
+     * @param workerCount how many analyses may run at once
+     * @param queueCapacity how many analyses may wait for a worker
+     * @param book the book {@link #bookMoves(ChessGame)} looks in, may be null
+     * @param tablebase exact endgame results for the searches, may be null
+     */
+    public AnalysisPool(int workerCount, int queueCapacity, OpeningBook book, Tablebase tablebase) {
+        this(workerCount, queueCapacity, DEFAULT_HELPERS, book, tablebase);
+    }
+
+    /**
+     * @param workerCount how many analyses may run at once
+     * @param queueCapacity how many analyses may wait for a worker
+     * @param helpers how many more threads each analysis searches on, besides its worker
+     * @param book the book {@link #bookMoves(ChessGame)} looks in, may be null
+     * @param tablebase exact endgame results for the searches, may be null
+     */
+    public AnalysisPool(int workerCount, int queueCapacity, int helpers, OpeningBook book, Tablebase tablebase) {
+        if (workerCount < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Analysis pool needs at least one worker and queue slot");
+        }
+        if (helpers < 0) {
+            throw new IllegalArgumentException("Helper count can't be negative: " + helpers);
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.book = book;
+        this.tablebase = tablebase;
+        this.helpers = helpers;
+        Thread.Builder builder = Thread.ofPlatform().name("analysis-", 1).daemon().priority(Thread.NORM_PRIORITY - 2);
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(builder.start(this::work));
+        }
+    }
+
+    /**
+     * Queues an analysis of the game's current position, replacing any the
+     * owner already has. The game is copied, so the caller can carry on with it.
+     * The listeners are called on a worker thread, and not at all once the
+     * analysis is cancelled.
+     *
+     * @param owner what the analysis is for, such as a connection; compared by identity
+     * @param lines how many of the best moves to find lines for
+     * @param onIteration given the lines after each depth is finished
+     * @param onComplete given the final lines when the analysis stops
+     * @return false if the user has too many analyses or the queue is full
+     */
+    public boolean start(Object owner, String username, ChessGame game, int lines,
+                         AnalysisListener onIteration, AnalysisListener onComplete) {
+        cancel(owner);
+        Job job = new Job(owner, username, new ChessGame(game), lines, onIteration, onComplete);
+        int running = perUser.merge(username, 1, Integer::sum);
+        if (running > MAX_PER_USER) {
+            releaseUser(username);
+            return false;
+        }
+        jobs.put(owner, job);
+        if (!queue.offer(job)) {
+            release(job);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Looks the game's current position up in the opening book. This takes
+     * microseconds on the caller's thread, so check it before starting an
+     * analysis.
+     *
+     * @return the book moves, highest weight first, or an empty list if the
+     * position isn't in the book or there is no book
+     */
+    public List<OpeningBook.Entry> bookMoves(ChessGame game) {
+        return book == null ? List.of() : book.lookup(game);
+    }
+
+    /**
+     * Drops the owner's waiting analysis, or stops its running one.
+     */
+    public void cancel(Object owner) {
+        Job job = jobs.get(owner);
+        if (job == null) {
+            return;
+        }
+        job.cancelled = true;
+        queue.remove(job);
+        release(job);
+    }
+
+    /**
+     * @return true if the owner has an analysis waiting or running
+     */
+    public boolean isAnalyzing(Object owner) {
+        return jobs.containsKey(owner);
+    }
+
+    @Override
+    public void close() {
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Object owner : jobs.keySet()) {
+            cancel(owner);
+        }
+    }
+
+    private void work() {
+        try (ParallelSearch search = new ParallelSearch(1 + helpers, new TranspositionTable(TABLE_MEGABYTES), tablebase)) {
+            while (!Thread.currentThread().isInterrupted()) {
+                Job job;
+                try {
+                    job = queue.take();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                run(job, search);
+            }
+        }
+    }
+
+    private void run(Job job, ParallelSearch search) {
+        if (job.cancelled) {
+            return;
+        }
+        List<SearchResult> lines;
+        try {
+            lines = search.analyze(job.game, SearchLimits.time(ANALYSIS_MILLIS), job.lines,
+                    iteration -> {
+                        if (!job.cancelled) {
+                            job.onIteration.onIteration(iteration);
+                        }
+                    }, () -> job.cancelled);
+        } catch (RuntimeException ex) {
+            ex.printStackTrace();
+            release(job);
+            return;
+        }
+        //free the slot first, so the user can ask for another analysis as soon as this one is reported
+        release(job);
+        if (!job.cancelled) {
+            try {
+                job.onComplete.onIteration(lines);
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    //exactly once per job, whether it finished or was cancelled
+    private void release(Job job) {
+        if (job.released.compareAndSet(false, true)) {
+            jobs.remove(job.owner, job);
+            releaseUser(job.username);
+        }
+    }
+
+    private void releaseUser(String username) {
+        perUser.computeIfPresent(username, (user, count) -> count == 1 ? null : count - 1);
+    }
+}
@@ -0,0 +1,43 @@
+package computer;
+
+import chess.ChessGame;
+import datamodel.GameData;
+
+import java.util.Objects;
+
+/**
+ * The seat the server plays in games against the computer, under a username
+ * no one can register.
+ */
+public final class ComputerPlayer {
+
+    public static final String USERNAME = "computer";
+
+    private ComputerPlayer() {
+    }
+
+    public static boolean isComputer(String username) {
+        return Objects.equals(username, USERNAME);
+    }
+
+    /**
+     * @return how long the computer thinks per move in the game
+     */
+    public static long thinkMillis(GameData gameData) {
+        Long millis = gameData.getThinkMillis();
+        return millis == null ? EnginePool.DEFAULT_THINK_MILLIS : millis;
+    }
+
+    /**
+     * @return true if the game is still going and the computer is the side to move
+     */
+    public static boolean isToMove(GameData gameData) {
+        ChessGame game = gameData.getGame();
+        if (game.isGameOver()) {
+            return false;
+        }
+        String player = game.getTeamTurn() == ChessGame.TeamColor.WHITE
+                ? gameData.getWhiteUsername() : gameData.getBlackUsername();
+        return isComputer(player);
+    }
+}
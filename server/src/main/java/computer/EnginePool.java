@@ -0,0 +1,210 @@
+package computer;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.engine.OpeningBook;
+import chess.engine.Search;
+import chess.engine.SearchLimits;
+import chess.engine.Tablebase;
+import chess.engine.TranspositionTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Runs the computer player's searches on a fixed set of worker threads, apart
+ * from the threads that serve requests and websocket messages.
+ * <p>
+ * A game has at most one search queued or running at a time, and searches
+ * start in the order they were asked for, so every game waiting gets its turn
+ * before any game gets a second one. Each search runs for the think time it
+ * is given, which is kept with the game rather than here, so it lasts as long
+ * as the game does and outlives a restart. The queue is bounded; when it is full, new requests are turned away
+ * rather than making every game wait longer.
+ * <p>
+ * The workers run below normal priority and there are fewer of them than
+ * processors, so however many games are waiting on the computer, games
+ * between people keep a processor to answer their moves.
+ * <p>
+ * With an {@link OpeningBook}, positions in the book are answered from it at
+ * once, and the think time is only spent once the game has left it.
+ */
+public class EnginePool implements AutoCloseable {
+
+    public static final long DEFAULT_THINK_MILLIS = 1000;
+    public static final long MIN_THINK_MILLIS = 50;
+    public static final long MAX_THINK_MILLIS = 10_000;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private static final int TABLE_MEGABYTES = 8;
+
+    private final BlockingQueue<Job> queue;
+    private final Map<Integer, Job> jobs = new ConcurrentHashMap<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final OpeningBook book;
+    private final Tablebase tablebase;
+
+    private static final class Job {
+        final int gameID;
+        final ChessGame game;
+        final long thinkMillis;
+        final Consumer<ChessMove> onMove;
+        //read by the search, so a cancel counts whether or not it has started
+        volatile boolean cancelled;
+
+        Job(int gameID, ChessGame game, long thinkMillis, Consumer<ChessMove> onMove) {
+            this.gameID = gameID;
+            this.game = game;
+            this.thinkMillis = thinkMillis;
+            this.onMove = onMove;
+        }
+    }
+
+    /**
+     * @return workers for this machine: half the processors, leaving the rest to the server
+     */
+    public static int defaultWorkers() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+
+    public EnginePool() {
+        this(defaultWorkers(), DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param workerCount how many searches may run at once
+     * @param queueCapacity how many games may wait for a worker
+     */
+    public EnginePool(int workerCount, int queueCapacity) {
+        this(workerCount, queueCapacity, null, null);
+    }
+
+    /**
+     * @param workerCount how many searches may run at once
+     * @param queueCapacity how many games may wait for a worker
+     * @param book where to look for moves before searching, may be null
+     * @param tablebase exact endgame results for the searches, may be null
+     */
+    public EnginePool(int workerCount, int queueCapacity, OpeningBook book, Tablebase tablebase) {
+        if (workerCount < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Engine pool needs at least one worker and queue slot");
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.book = book;
+        this.tablebase = tablebase;
+        Thread.Builder builder = Thread.ofPlatform().name("engine-", 1).daemon().priority(Thread.NORM_PRIORITY - 1);
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(builder.start(this::work));
+        }
+    }
+
+    /**
+     * @return the think time limited to {@link #MIN_THINK_MILLIS} through {@link #MAX_THINK_MILLIS}
+     */
+    public static long clampThinkTime(long millis) {
+        return Math.clamp(millis, MIN_THINK_MILLIS, MAX_THINK_MILLIS);
+    }
+
+    /**
+     * Queues a search for the computer's move. The game is copied, so the
+     * caller can carry on with it.
+     *
+     * @param thinkMillis how long to search, clamped as by {@link #clampThinkTime(long)}
+     * @param onMove given the move found, or null if there is none, on a worker
+     *               thread; not called if the search is cancelled
+     * @return false if the game already has a search waiting or running, or the queue is full
+     */
+    public boolean requestMove(int gameID, ChessGame game, long thinkMillis, Consumer<ChessMove> onMove) {
+        Job job = new Job(gameID, new ChessGame(game), clampThinkTime(thinkMillis), onMove);
+        if (jobs.putIfAbsent(gameID, job) != null) {
+            return false;
+        }
+        if (!queue.offer(job)) {
+            jobs.remove(gameID, job);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Drops a game's waiting search, or stops its running one, without calling back.
+     */
+    public void cancel(int gameID) {
+        Job job = jobs.remove(gameID);
+        if (job == null) {
+            return;
+        }
+        job.cancelled = true;
+        queue.remove(job);
+    }
+
+    /**
+     * @return true if the game has a search waiting or running
+     */
+    public boolean isThinking(int gameID) {
+        return jobs.containsKey(gameID);
+    }
+
+    /**
+     * @return how many searches are waiting for a worker
+     */
+    public int queued() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() {
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Job job : jobs.values()) {
+            cancel(job.gameID);
+        }
+    }
+
+    private void work() {
+        Search search = new Search(new TranspositionTable(TABLE_MEGABYTES), tablebase);
+        while (!Thread.currentThread().isInterrupted()) {
+            Job job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException ex) {
+                return;
+            }
+            run(job, search);
+        }
+    }
+
+    private void run(Job job, Search search) {
+        if (job.cancelled) {
+            return;
+        }
+        ChessMove move;
+        try {
+            move = book == null ? null : book.choose(job.game, ThreadLocalRandom.current());
+            if (move == null) {
+                move = search.search(job.game, SearchLimits.time(job.thinkMillis), null, () -> job.cancelled)
+                        .bestMove();
+            }
+        } catch (RuntimeException ex) {
+            ex.printStackTrace();
+            jobs.remove(job.gameID, job);
+            return;
+        }
+        //free the game for its next search before handing over the move, which leads to it
+        if (!jobs.remove(job.gameID, job) || job.cancelled) {
+            return;
+        }
+        try {
+            job.onMove.accept(move);
+        } catch (RuntimeException ex) {
+            ex.printStackTrace();
+        }
+    }
+}
@@ -1,11 +1,13 @@
 package dataaccess;
 
 import chess.ChessGame;
+import chess.ChessMove;
 import datamodel.AuthData;
 import datamodel.GameData;
 import datamodel.UserData;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface DataAccess {
     UserData getUser(String username) throws DataAccessException;
@@ -16,8 +18,12 @@ public interface DataAccess {
     Collection<GameData> listGames(String authToken) throws DataAccessException;
     int createGame(String authToken, int gameID, String gameName) throws DataAccessException;
     void addUserToGame(String authToken, String playerColor, int gameID) throws DataAccessException;
+    void addPlayerToGame(String username, String playerColor, int gameID) throws DataAccessException;
+    void setThinkMillis(int gameID, long thinkMillis) throws DataAccessException;
     AuthData getAuthData(String authToken) throws DataAccessException;
     GameData getGame(int gameID) throws DataAccessException;
     void updateGame(int gameID, ChessGame updatedGame) throws ServerConnectionInterruptException;
+    void addMove(int gameID, ChessMove move, ChessGame updatedGame) throws ServerConnectionInterruptException;
+    List<ChessMove> getMoves(int gameID) throws DataAccessException;
     void removeUserFromGame(String color, int gameID) throws DataAccessException;
 }
@@ -1,6 +1,7 @@
 package dataaccess;
 
 import chess.ChessGame;
+import chess.ChessMove;
 import datamodel.AuthData;
 import datamodel.GameData;
 import datamodel.LoginData;
@@ -8,39 +9,56 @@ import datamodel.UserData;
 
 import java.util.*;
 
+/**
+ * Keeps everything in memory, for tests. Every method is synchronized, since
+ * the websocket and engine threads reach the data at once, and games are
+ * copied in and out, as they would be by a database, so no caller changes
+ * another's game under it.
+ */
 public class MemoryDataAccess implements DataAccess {
     private final HashMap<String, UserData> users = new HashMap<>();
     private final HashMap<String, String> validAuthTokens = new HashMap<>();
     private final ArrayList<GameData> games = new ArrayList<>();
+    private final HashMap<Integer, List<ChessMove>> moves = new HashMap<>();
 
     @Override
-    public UserData getUser(String username) throws DataAccessException {
+    public synchronized UserData getUser(String username) throws DataAccessException {
         return users.get(username);
     }
 
     @Override
-    public GameData getGame(int gameID) throws DataAccessException {
+    public synchronized GameData getGame(int gameID) throws DataAccessException {
         for (GameData game : games){
             if (game.getGameID() == gameID){
-                return game;
+                return copy(game, game.getGame());
             }
         }
         return null;
     }
 
     @Override
-    public void updateGame(int gameID, ChessGame updatedGame) {
+    public synchronized void updateGame(int gameID, ChessGame updatedGame) {
         for (int i = 0; i < games.size(); i++){
             GameData game = games.get(i);
             if (game.getGameID() == gameID){
-                games.set(i, new GameData(game.getGameID(), game.getWhiteUsername(),
-                        game.getBlackUsername(), game.getGameName(), updatedGame));
+                games.set(i, copy(game, updatedGame));
             }
         }
     }
 
     @Override
-    public void removeUserFromGame(String color, int gameID) throws DataAccessException {
+    public synchronized void addMove(int gameID, ChessMove move, ChessGame updatedGame) {
+        moves.computeIfAbsent(gameID, id -> new ArrayList<>()).add(move);
+        updateGame(gameID, updatedGame);
+    }
+
+    @Override
+    public synchronized List<ChessMove> getMoves(int gameID) {
+        return new ArrayList<>(moves.getOrDefault(gameID, List.of()));
+    }
+
+    @Override
+    public synchronized void removeUserFromGame(String color, int gameID) throws DataAccessException {
         GameData gameData = games.get(gameID);
         if (Objects.equals("WHITE", color)){
             gameData.setWhiteUsername(null);
@@ -50,40 +68,45 @@ public class MemoryDataAccess implements DataAccess {
     }
 
     @Override
-    public void addUser(UserData userData) throws DataAccessException {
+    public synchronized void addUser(UserData userData) throws DataAccessException {
         users.put(userData.username(), userData);
     }
 
     @Override
-    public AuthData addAuthData(AuthData authData) throws DataAccessException {
+    public synchronized AuthData addAuthData(AuthData authData) throws DataAccessException {
         validAuthTokens.put(authData.authToken(), authData.username());
         return authData;
     }
 
-    public void deleteAuthData(String authToken) throws DataAccessException {
+    public synchronized void deleteAuthData(String authToken) throws DataAccessException {
         validAuthTokens.remove(authToken);
     }
 
-    public void clearDatabase() {
+    public synchronized void clearDatabase() {
         validAuthTokens.clear();
         users.clear();
         games.clear();
+        moves.clear();
     }
 
     @Override
-    public Collection<GameData> listGames(String authToken) throws DataAccessException {
-        return games;
+    public synchronized Collection<GameData> listGames(String authToken) throws DataAccessException {
+        ArrayList<GameData> copies = new ArrayList<>(games.size());
+        for (GameData game : games) {
+            copies.add(copy(game, game.getGame()));
+        }
+        return copies;
 
     }
 
     @Override
-    public int createGame(String authToken, int gameID, String gameName) throws DataAccessException {
+    public synchronized int createGame(String authToken, int gameID, String gameName) throws DataAccessException {
         games.add(new GameData(gameID, null, null, gameName, new ChessGame()));
         return gameID;
     }
 
     @Override
-    public void addUserToGame(String authToken, String playerColor, int gameID) throws DataAccessException {
+    public synchronized void addUserToGame(String authToken, String playerColor, int gameID) throws DataAccessException {
         validateFields(authToken, playerColor, gameID);
         int gameIndex = findGameIndex(gameID);
         String playerUsername = validAuthTokens.get(authToken);
@@ -95,7 +118,23 @@ public class MemoryDataAccess implements DataAccess {
     }
 
     @Override
-    public AuthData getAuthData(String authToken) throws DataAccessException {
+    public synchronized void addPlayerToGame(String username, String playerColor, int gameID) throws DataAccessException {
+        GameData game = games.get(findGameIndex(gameID));
+        validatePlayerColor(game, playerColor, username);
+        if (playerColor.equals("WHITE")) {
+            game.setWhiteUsername(username);
+        } else {
+            game.setBlackUsername(username);
+        }
+    }
+
+    @Override
+    public synchronized void setThinkMillis(int gameID, long thinkMillis) throws DataAccessException {
+        games.get(findGameIndex(gameID)).setThinkMillis(thinkMillis);
+    }
+
+    @Override
+    public synchronized AuthData getAuthData(String authToken) throws DataAccessException {
         if (validAuthTokens.containsKey(authToken)) {
             return new AuthData(validAuthTokens.get(authToken), authToken);
         } else {
@@ -103,6 +142,13 @@ public class MemoryDataAccess implements DataAccess {
         }
     }
 
+    private static GameData copy(GameData gameData, ChessGame game) {
+        GameData copy = new GameData(gameData.getGameID(), gameData.getWhiteUsername(), gameData.getBlackUsername(),
+                gameData.getGameName(), new ChessGame(game));
+        copy.setThinkMillis(gameData.getThinkMillis());
+        return copy;
+    }
+
     private void validateFields(String authToken, String playerColor, int gameID) throws DataAccessException{
         int gameIndex = findGameIndex(gameID);
         validatePlayerColor(games.get(gameIndex), playerColor, validAuthTokens.get(authToken));
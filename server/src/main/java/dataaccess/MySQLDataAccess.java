@@ -1,16 +1,27 @@
 package dataaccess;
 
+import chess.Bitboards;
 import chess.ChessGame;
-import com.google.gson.Gson;
+import chess.ChessMove;
+import chess.GameCodec;
+import chess.InvalidMoveException;
+import chess.Move;
 import datamodel.AuthData;
 import datamodel.GameData;
 import datamodel.UserData;
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
 
 public class MySQLDataAccess implements DataAccess {
+    //plies between full game snapshots, and so the longest move tail getGame replays
+    private static final int SNAPSHOT_INTERVAL = 20;
 
+    /**
+     * @throws IllegalStateException if the database's tables can't be brought up
+     * to date, rather than failing on the first read or write
+     */
     public MySQLDataAccess() {
         try {
             configureDatabase();
@@ -90,6 +101,9 @@ public class MySQLDataAccess implements DataAccess {
             try (var preparedStatement = conn.prepareStatement("TRUNCATE TABLE games")){
                 preparedStatement.executeUpdate();
             }
+            try (var preparedStatement = conn.prepareStatement("TRUNCATE TABLE game_moves")){
+                preparedStatement.executeUpdate();
+            }
         } catch (SQLException | DataAccessException ex) {
             throw new DataAccessException("Error: connection interrupted");
         }
@@ -99,12 +113,23 @@ public class MySQLDataAccess implements DataAccess {
     public Collection<GameData> listGames(String authToken) throws DataAccessException {
         GameData thisGameData;
         ArrayList<GameData> listOfGames = new ArrayList<>();
+        HashMap<Integer, ChessGame> gamesByID = new HashMap<>();
         try (var conn = DatabaseManager.getConnection()){
             try (var preparedStatement = conn.prepareStatement("SELECT * FROM games")){
                 var response = preparedStatement.executeQuery();
                 while (response.next()){
                     thisGameData = buildGameFromResultSet(response);
                     listOfGames.add(thisGameData);
+                    gamesByID.put(thisGameData.getGameID(), thisGameData.getGame());
+                }
+            }
+            //every game's moves since its last snapshot, in one query
+            try (var preparedStatement = conn.prepareStatement("""
+                    SELECT m.gameID, m.move FROM game_moves m JOIN games g ON m.gameID = g.gameID
+                    WHERE m.ply > g.snapshotPly ORDER BY m.gameID, m.ply""")){
+                var response = preparedStatement.executeQuery();
+                while (response.next()){
+                    replayMove(gamesByID.get(response.getInt("gameID")), response.getInt("move"));
                 }
             }
         } catch (SQLException ex) {
@@ -118,11 +143,10 @@ public class MySQLDataAccess implements DataAccess {
     public int createGame(String authToken, int gameID, String gameName) throws DataAccessException {
         try (var conn = DatabaseManager.getConnection()) {
             try (var preparedStatement = conn.prepareStatement(
-                    "INSERT INTO games (gameID, gameName, chessGame) VALUES(?, ?, ?)")){
+                    "INSERT INTO games (gameID, gameName, gameState) VALUES(?, ?, ?)")){
                 preparedStatement.setInt(1, gameID);
                 preparedStatement.setString(2, gameName);
-                String chessGameAsJson = serializeChessGame(new ChessGame());
-                preparedStatement.setString(3, chessGameAsJson);
+                preparedStatement.setBytes(3, serializeChessGame(new ChessGame()));
                 preparedStatement.executeUpdate();
                 return gameID;
             }
@@ -133,7 +157,11 @@ public class MySQLDataAccess implements DataAccess {
 
     @Override
     public void addUserToGame(String authToken, String playerColor, int gameID) throws DataAccessException {
-        var username = getAuthData(authToken).username();
+        addPlayerToGame(getAuthData(authToken).username(), playerColor, gameID);
+    }
+
+    @Override
+    public void addPlayerToGame(String username, String playerColor, int gameID) throws DataAccessException {
         try (var conn = DatabaseManager.getConnection()) {
             String userColor;
             if (Objects.equals(playerColor, "WHITE")){
@@ -152,6 +180,19 @@ public class MySQLDataAccess implements DataAccess {
         }
     }
 
+    @Override
+    public void setThinkMillis(int gameID, long thinkMillis) throws DataAccessException {
+        try (var conn = DatabaseManager.getConnection()) {
+            try (var preparedStatement = conn.prepareStatement("UPDATE games SET thinkMillis = ? WHERE gameID = ?")){
+                preparedStatement.setLong(1, thinkMillis);
+                preparedStatement.setInt(2, gameID);
+                preparedStatement.executeUpdate();
+            }
+        } catch (SQLException ex) {
+            throw new ServerConnectionInterruptException("Error: connection interrupted");
+        }
+    }
+
     @Override
     public AuthData getAuthData(String authToken) throws DataAccessException {
         try (var conn = DatabaseManager.getConnection()){
@@ -176,12 +217,9 @@ public class MySQLDataAccess implements DataAccess {
                 preparedStatement.setInt(1, gameID);
                 var result = preparedStatement.executeQuery();
                 if (result.next()) {
-                    int thisGameID = result.getInt("gameID");
-                    String whiteUsername = result.getString("whiteUsername");
-                    String blackUsername = result.getString("blackUsername");
-                    String gameName = result.getString("gameName");
-                    ChessGame chessGame = deserializeChessGame(result.getString("chessGame"));
-                    return new GameData(thisGameID, whiteUsername, blackUsername, gameName, chessGame);
+                    GameData gameData = buildGameFromResultSet(result);
+                    replayMoves(conn, gameID, result.getInt("snapshotPly"), gameData.getGame());
+                    return gameData;
                 } else {
                     return null;
                 }
@@ -194,16 +232,60 @@ public class MySQLDataAccess implements DataAccess {
     @Override
     public void updateGame(int gameID, ChessGame updatedGame) throws ServerConnectionInterruptException {
         try (var conn = DatabaseManager.getConnection()) {
-            try (var preparedStatement = conn.prepareStatement("UPDATE games SET chessGame = ? WHERE gameID = ?")) {
-                preparedStatement.setString(1, serializeChessGame(updatedGame));
-                preparedStatement.setInt(2, gameID);
-                preparedStatement.executeUpdate();
+            writeSnapshot(conn, gameID, updatedGame);
+        } catch (SQLException | DataAccessException ex) {
+            throw new ServerConnectionInterruptException("Error: couldn't connect");
+        }
+    }
+
+    /**
+     * Appends a move to the game's move log rather than rewriting the game. The
+     * whole game is only written every {@value #SNAPSHOT_INTERVAL} plies and when
+     * the game ends, and getGame replays the moves made since then.
+     */
+    @Override
+    public void addMove(int gameID, ChessMove move, ChessGame updatedGame) throws ServerConnectionInterruptException {
+        int ply = updatedGame.getPly();
+        try (var conn = DatabaseManager.getConnection()) {
+            //the move and its snapshot go in together, so the log never runs past a snapshot of a finished game
+            conn.setAutoCommit(false);
+            try {
+                try (var preparedStatement = conn.prepareStatement("INSERT INTO game_moves (gameID, ply, move) VALUES(?, ?, ?)")) {
+                    preparedStatement.setInt(1, gameID);
+                    preparedStatement.setInt(2, ply);
+                    preparedStatement.setInt(3, encodeMove(move));
+                    preparedStatement.executeUpdate();
+                }
+                if (ply % SNAPSHOT_INTERVAL == 0 || updatedGame.isGameOver()) {
+                    writeSnapshot(conn, gameID, updatedGame);
+                }
+                conn.commit();
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
             }
         } catch (SQLException | DataAccessException ex) {
             throw new ServerConnectionInterruptException("Error: couldn't connect");
         }
     }
 
+    @Override
+    public List<ChessMove> getMoves(int gameID) throws DataAccessException {
+        ArrayList<ChessMove> moves = new ArrayList<>();
+        try (var conn = DatabaseManager.getConnection()) {
+            try (var preparedStatement = conn.prepareStatement("SELECT move FROM game_moves WHERE gameID = ? ORDER BY ply")) {
+                preparedStatement.setInt(1, gameID);
+                var result = preparedStatement.executeQuery();
+                while (result.next()) {
+                    moves.add(Move.toChessMove(result.getInt("move")));
+                }
+            }
+        } catch (SQLException ex) {
+            throw new ServerConnectionInterruptException("Error: couldn't connect");
+        }
+        return moves;
+    }
+
     @Override
     public void removeUserFromGame(String color, int gameID) throws DataAccessException {
         try (var conn = DatabaseManager.getConnection()) {
@@ -246,31 +328,78 @@ public class MySQLDataAccess implements DataAccess {
               whiteUsername varchar(256),
               blackUsername varchar(256),
               gameName varchar(256) NOT NULL,
-              chessGame text NOT NULL,
+              gameState blob NOT NULL,
+              snapshotPly int NOT NULL DEFAULT 0,
+              thinkMillis int,
               PRIMARY KEY (gameID)
             );
+            """,
+            """
+            CREATE TABLE IF NOT EXISTS game_moves (
+              gameID int NOT NULL,
+              ply int NOT NULL,
+              move smallint unsigned NOT NULL,
+              playedAt timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+              PRIMARY KEY (gameID, ply)
+            );
             """
     };
 
-    private String serializeChessGame(ChessGame game){
-        Gson serializer = new Gson();
-        return serializer.toJson(game);
+    private byte[] serializeChessGame(ChessGame game){
+        return GameCodec.encode(game);
     }
 
-    private ChessGame deserializeChessGame(String chessGameAsJson){
-        Gson serializer = new Gson();
-        return serializer.fromJson(chessGameAsJson, ChessGame.class);
+    private ChessGame deserializeChessGame(byte[] gameState){
+        return GameCodec.decode(gameState);
+    }
+
+    private void writeSnapshot(Connection conn, int gameID, ChessGame game) throws SQLException {
+        try (var preparedStatement = conn.prepareStatement("UPDATE games SET gameState = ?, snapshotPly = ? WHERE gameID = ?")) {
+            preparedStatement.setBytes(1, serializeChessGame(game));
+            preparedStatement.setInt(2, game.getPly());
+            preparedStatement.setInt(3, gameID);
+            preparedStatement.executeUpdate();
+        }
+    }
+
+    private void replayMoves(Connection conn, int gameID, int snapshotPly, ChessGame game) throws SQLException, DataAccessException {
+        try (var preparedStatement = conn.prepareStatement("SELECT move FROM game_moves WHERE gameID = ? AND ply > ? ORDER BY ply")) {
+            preparedStatement.setInt(1, gameID);
+            preparedStatement.setInt(2, snapshotPly);
+            var result = preparedStatement.executeQuery();
+            while (result.next()) {
+                replayMove(game, result.getInt("move"));
+            }
+        }
+    }
+
+    private void replayMove(ChessGame game, int move) throws DataAccessException {
+        try {
+            game.makeMove(Move.toChessMove(move));
+        } catch (InvalidMoveException ex) {
+            throw new DataAccessException("Error: corrupt move log");
+        }
+    }
+
+    //only what makeMove needs to find the move again: start, end and promotion piece
+    private int encodeMove(ChessMove move){
+        return Move.of(Bitboards.square(move.startPosition()), Bitboards.square(move.endPosition()),
+                Move.promotionFlags(move.promotionPiece()));
     }
 
     private GameData buildGameFromResultSet(ResultSet resultSet) throws DataAccessException {
         try {
-            int gameID = resultSet.getInt(1);
-            String whiteUsername = resultSet.getString(2);
-            String blackUsername = resultSet.getString(3);
-            String gameName = resultSet.getString(4);
-            String chessGameAsJson = resultSet.getString(5);
-            ChessGame chessGame = deserializeChessGame(chessGameAsJson);
-            return new GameData(gameID, whiteUsername, blackUsername, gameName, chessGame);
+            int gameID = resultSet.getInt("gameID");
+            String whiteUsername = resultSet.getString("whiteUsername");
+            String blackUsername = resultSet.getString("blackUsername");
+            String gameName = resultSet.getString("gameName");
+            ChessGame chessGame = deserializeChessGame(resultSet.getBytes("gameState"));
+            GameData gameData = new GameData(gameID, whiteUsername, blackUsername, gameName, chessGame);
+            long thinkMillis = resultSet.getLong("thinkMillis");
+            if (!resultSet.wasNull()) {
+                gameData.setThinkMillis(thinkMillis);
+            }
+            return gameData;
         } catch (SQLException ex){
             throw new ServerConnectionInterruptException("Error: connection interrupted");
 
@@ -280,6 +409,8 @@ public class MySQLDataAccess implements DataAccess {
     private void configureDatabase() throws DataAccessException {
         DatabaseManager.createDatabase();
         try (var conn = DatabaseManager.getConnection()) {
+            //before the tables are created, as CREATE TABLE IF NOT EXISTS leaves an old games table as it is
+            SchemaMigrations.migrate(conn);
             for (var table : tables) {
                 try (var preparedTables = conn.prepareStatement(table)) {
                     preparedTables.executeUpdate();
@@ -0,0 +1,241 @@
+package dataaccess;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.GameCodec;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Brings an existing database's games table up to the layout MySQLDataAccess
+ * reads and writes, converting the games already stored in it. The version is
+ * kept in the schema_version table; a database from before that table existed
+ * has its version worked out from the games table's columns.
+ * <p>
+ * The versions of the games table:
+ * <ol>
+ *     <li>chessGame, the whole game as Gson wrote it</li>
+ *     <li>fen, resigned and positionHistory</li>
+ *     <li>gameState, the game as {@link GameCodec} writes it</li>
+ *     <li>snapshotPly, with the moves since the snapshot in game_moves</li>
+ *     <li>thinkMillis, the computer's time per move</li>
+ * </ol>
+ */
+final class SchemaMigrations {
+
+    static final int CURRENT_VERSION = 5;
+
+    private SchemaMigrations() {
+    }
+
+    /**
+     * Upgrades the games table, if there is one, and records the current version.
+     *
+     * @throws IllegalStateException if the database was written by a newer server,
+     * its games table is one no version wrote, or a game in it can't be converted
+     */
+    static void migrate(Connection conn) throws SQLException {
+        try (var preparedStatement = conn.prepareStatement(
+                "CREATE TABLE IF NOT EXISTS schema_version (version int NOT NULL)")) {
+            preparedStatement.executeUpdate();
+        }
+        Integer recorded = recordedVersion(conn);
+        int version = recorded != null ? recorded : versionFromColumns(gamesColumns(conn));
+        if (version > CURRENT_VERSION) {
+            throw new IllegalStateException("Error: the database is at schema version " + version
+                    + " but this server only knows up to " + CURRENT_VERSION + ". Upgrade the server.");
+        }
+        if (recorded == null) {
+            try (var preparedStatement = conn.prepareStatement("INSERT INTO schema_version (version) VALUES(?)")) {
+                preparedStatement.setInt(1, version);
+                preparedStatement.executeUpdate();
+            }
+        }
+        //a fresh database gets its tables from MySQLDataAccess as they are now
+        if (version == 0) {
+            setVersion(conn, CURRENT_VERSION);
+            return;
+        }
+        try {
+            if (version == 1) {
+                fromGsonColumn(conn);
+                version = 3;
+                setVersion(conn, version);
+            }
+            if (version == 2) {
+                fromFenColumns(conn);
+                version = 3;
+                setVersion(conn, version);
+            }
+            if (version == 3) {
+                addSnapshotPly(conn);
+                version = 4;
+                setVersion(conn, version);
+            }
+            if (version == 4) {
+                execute(conn, "ALTER TABLE games ADD COLUMN thinkMillis int");
+                version = 5;
+                setVersion(conn, version);
+            }
+        } catch (SQLException | IllegalArgumentException | IllegalStateException ex) {
+            throw new IllegalStateException("Error: couldn't upgrade the games table from schema version "
+                    + version + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    private static Integer recordedVersion(Connection conn) throws SQLException {
+        try (var preparedStatement = conn.prepareStatement("SELECT version FROM schema_version")) {
+            ResultSet result = preparedStatement.executeQuery();
+            return result.next() ? result.getInt("version") : null;
+        }
+    }
+
+    private static void setVersion(Connection conn, int version) throws SQLException {
+        try (var preparedStatement = conn.prepareStatement("UPDATE schema_version SET version = ?")) {
+            preparedStatement.setInt(1, version);
+            preparedStatement.executeUpdate();
+        }
+    }
+
+    //the games table's column names in lower case, or none if there is no games table
+    private static Set<String> gamesColumns(Connection conn) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        try (ResultSet result = conn.getMetaData().getColumns(conn.getCatalog(), null, "games", null)) {
+            while (result.next()) {
+                columns.add(result.getString("COLUMN_NAME").toLowerCase(Locale.ROOT));
+            }
+        }
+        return columns;
+    }
+
+    //columns only the older layouts had are looked for first, as the newer layouts each add to the last
+    static int versionFromColumns(Set<String> columns) {
+        if (columns.isEmpty()) {
+            return 0;
+        } else if (columns.contains("chessgame")) {
+            return 1;
+        } else if (columns.contains("fen")) {
+            return 2;
+        } else if (columns.contains("thinkmillis")) {
+            return 5;
+        } else if (columns.contains("snapshotply")) {
+            return 4;
+        } else if (columns.contains("gamestate")) {
+            return 3;
+        }
+        throw new IllegalStateException("Error: the games table has the columns " + columns
+                + ", which no version of this server wrote");
+    }
+
+    private static void fromGsonColumn(Connection conn) throws SQLException {
+        execute(conn, "ALTER TABLE games ADD COLUMN gameState blob");
+        try (var select = conn.prepareStatement("SELECT gameID, chessGame FROM games");
+             var update = conn.prepareStatement("UPDATE games SET gameState = ? WHERE gameID = ?")) {
+            ResultSet result = select.executeQuery();
+            while (result.next()) {
+                update.setBytes(1, GameCodec.encode(fromGson(result.getString("chessGame"))));
+                update.setInt(2, result.getInt("gameID"));
+                update.executeUpdate();
+            }
+        }
+        execute(conn, "ALTER TABLE games DROP COLUMN chessGame, MODIFY gameState blob NOT NULL");
+    }
+
+    private static void fromFenColumns(Connection conn) throws SQLException {
+        execute(conn, "ALTER TABLE games ADD COLUMN gameState blob");
+        try (var select = conn.prepareStatement("SELECT gameID, fen, resigned, positionHistory FROM games");
+             var update = conn.prepareStatement("UPDATE games SET gameState = ? WHERE gameID = ?")) {
+            ResultSet result = select.executeQuery();
+            while (result.next()) {
+                ChessGame game = fromFen(result.getString("fen"), result.getBoolean("resigned"),
+                        result.getString("positionHistory"));
+                update.setBytes(1, GameCodec.encode(game));
+                update.setInt(2, result.getInt("gameID"));
+                update.executeUpdate();
+            }
+        }
+        execute(conn, "ALTER TABLE games DROP COLUMN fen, DROP COLUMN resigned, DROP COLUMN positionHistory, "
+                + "MODIFY gameState blob NOT NULL");
+    }
+
+    //each stored game becomes its own snapshot, with no moves after it
+    private static void addSnapshotPly(Connection conn) throws SQLException {
+        execute(conn, "ALTER TABLE games ADD COLUMN snapshotPly int NOT NULL DEFAULT 0");
+        try (var select = conn.prepareStatement("SELECT gameID, gameState FROM games");
+             var update = conn.prepareStatement("UPDATE games SET snapshotPly = ? WHERE gameID = ?")) {
+            ResultSet result = select.executeQuery();
+            while (result.next()) {
+                update.setInt(1, GameCodec.decode(result.getBytes("gameState")).getPly());
+                update.setInt(2, result.getInt("gameID"));
+                update.executeUpdate();
+            }
+        }
+    }
+
+    private static void execute(Connection conn, String statement) throws SQLException {
+        try (var preparedStatement = conn.prepareStatement(statement)) {
+            preparedStatement.executeUpdate();
+        }
+    }
+
+    /**
+     * Reads a game as the first version stored it: Gson's form of a ChessGame
+     * whose board was an 8 by 8 array of pieces. Castling rights and en passant
+     * are worked out from the boards, as they were then.
+     */
+    static ChessGame fromGson(String json) {
+        JsonObject game = JsonParser.parseString(json).getAsJsonObject();
+        ChessGame.TeamColor turn = game.has("currentTurn")
+                ? ChessGame.TeamColor.valueOf(game.get("currentTurn").getAsString()) : ChessGame.TeamColor.WHITE;
+        boolean gameOver = game.has("gameOver") && game.get("gameOver").getAsBoolean();
+        return new ChessGame(turn, boardFromGson(game.get("board")), boardFromGson(game.get("previousBoard")), gameOver);
+    }
+
+    private static ChessBoard boardFromGson(JsonElement element) {
+        if (element == null || element.isJsonNull()) {
+            return null;
+        }
+        JsonArray rows = element.getAsJsonObject().getAsJsonArray("board");
+        ChessBoard board = new ChessBoard();
+        for (int row = 1; row <= 8; row++) {
+            JsonArray squares = rows.get(row - 1).getAsJsonArray();
+            for (int col = 1; col <= 8; col++) {
+                JsonElement square = squares.get(col - 1);
+                if (square.isJsonNull()) {
+                    continue;
+                }
+                JsonObject piece = square.getAsJsonObject();
+                board.addPiece(ChessPosition.of(row, col),
+                        new ChessPiece(ChessGame.TeamColor.valueOf(piece.get("pieceColor").getAsString()),
+                                ChessPiece.PieceType.valueOf(piece.get("type").getAsString())));
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Reads a game as the second version stored it: its FEN, whether a player
+     * resigned, and its position keys in hex, comma separated.
+     */
+    static ChessGame fromFen(String fen, boolean resigned, String positionHistory) {
+        ChessGame game = ChessGame.fromFen(fen);
+        game.setGameOver(resigned);
+        if (positionHistory != null && !positionHistory.isEmpty()) {
+            game.setPositionHistory(Arrays.stream(positionHistory.split(","))
+                    .mapToLong(key -> Long.parseUnsignedLong(key, 16)).toArray());
+        }
+        return game;
+    }
+}
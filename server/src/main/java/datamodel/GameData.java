@@ -10,6 +10,8 @@ public class GameData {
     private String blackUsername;
     private final String gameName;
     private final ChessGame game;
+    //how long the computer thinks per move, or null for the default or a game without it
+    private Long thinkMillis;
 
     public GameData(int gameID, String whiteUsername, String blackUsername, String gameName, ChessGame game){
         this.gameID = gameID;
@@ -35,6 +37,14 @@ public class GameData {
         return blackUsername;
     }
 
+    public Long getThinkMillis() {
+        return thinkMillis;
+    }
+
+    public void setThinkMillis(Long thinkMillis) {
+        this.thinkMillis = thinkMillis;
+    }
+
     public ChessGame getGame() {
         return game;
     }
@@ -58,12 +68,14 @@ public class GameData {
         boolean hasIdenticalBlackUsername = Objects.equals(blackUsername, gameData.blackUsername);
         boolean hasIdenticalGameName = Objects.equals(gameName, gameData.gameName);
         boolean hasIdenticalGame = Objects.equals(game, gameData.game);
-        return hasIdenticalGameID && hasIdenticalWhiteUsername && hasIdenticalBlackUsername && hasIdenticalGameName && hasIdenticalGame;
+        boolean hasIdenticalThinkMillis = Objects.equals(thinkMillis, gameData.thinkMillis);
+        return hasIdenticalGameID && hasIdenticalWhiteUsername && hasIdenticalBlackUsername && hasIdenticalGameName
+                && hasIdenticalGame && hasIdenticalThinkMillis;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(gameID, whiteUsername, blackUsername, gameName, game);
+        return Objects.hash(gameID, whiteUsername, blackUsername, gameName, game, thinkMillis);
     }
 
     @Override
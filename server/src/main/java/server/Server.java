@@ -1,8 +1,15 @@
 package server;
 
+import chess.ChessGame;
+import chess.FenTypeAdapter;
+import chess.engine.OpeningBook;
+import chess.engine.Tablebase;
+import computer.AnalysisPool;
+import computer.EnginePool;
 import dataaccess.MySQLDataAccess;
 import handler.ExceptionHandler;
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import dataaccess.DataAccess;
 import dataaccess.DataAccessException;
@@ -17,6 +24,9 @@ import service.UserService;
 import service.DataService;
 import websocket.WebSocketHandler;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
 
 public class Server {
@@ -29,17 +39,27 @@ public class Server {
     private final GameService gameService;
     private DataAccess dataAccess;
     private final WebSocketHandler wsHandler;
+    private final EnginePool engines;
+    private final AnalysisPool analyses;
 
     public Server() {
         try {
             dataAccess = new MySQLDataAccess();
+        } catch (IllegalStateException ex) {
+            //a database this server can't use as it is: stop now rather than on the first write
+            throw ex;
         } catch (Exception ex) {
             System.out.println("ouch");
         }
         userService = new UserService(dataAccess);
         dataService = new DataService(dataAccess);
-        gameService = new GameService(dataAccess);
-        wsHandler = new WebSocketHandler(dataAccess);
+        OpeningBook book = openBook();
+        Tablebase tablebase = openTablebase();
+        engines = new EnginePool(EnginePool.defaultWorkers(), EnginePool.DEFAULT_QUEUE_CAPACITY, book, tablebase);
+        analyses = new AnalysisPool(AnalysisPool.defaultWorkers(), AnalysisPool.DEFAULT_QUEUE_CAPACITY,
+                Integer.getInteger("chess.analysis.helpers", AnalysisPool.DEFAULT_HELPERS), book, tablebase);
+        gameService = new GameService(dataAccess, engines);
+        wsHandler = new WebSocketHandler(dataAccess, engines, analyses);
         server = Javalin.create(config -> config.staticFiles.add("web"));
 
         server.ws("/ws", ws -> {
@@ -58,9 +78,38 @@ public class Server {
         server.get("game", this::listGames);
         server.post("game", this::createGame);
         server.put("game", this::joinGame);
+        server.get("game/{id}/pgn", this::exportPgn);
     }
 
 
+    //the book is optional: without one, the computer and analysis search from the first move
+    private static OpeningBook openBook() {
+        Path path = Path.of(System.getProperty("chess.book", "book.bin"));
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            return OpeningBook.open(path);
+        } catch (IOException ex) {
+            System.out.println("Couldn't open the opening book: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    //likewise optional: without tables, endgames are searched like any other position
+    private static Tablebase openTablebase() {
+        Path directory = Path.of(System.getProperty("chess.tablebases", "tablebases"));
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+        try {
+            return Tablebase.open(directory);
+        } catch (IOException ex) {
+            System.out.println("Couldn't open the tablebases: " + ex.getMessage());
+            return null;
+        }
+    }
+
     private void clear(Context ctx) {
         var serializer = new Gson();
         try {
@@ -107,7 +156,7 @@ public class Server {
     }
 
     private void listGames(Context ctx) {
-        var serializer = new Gson();
+        var serializer = new GsonBuilder().registerTypeAdapter(ChessGame.class, new FenTypeAdapter()).create();
         var authToken = ctx.header("authorization");
         try {
             var response = gameService.listGames(authToken);
@@ -120,10 +169,17 @@ public class Server {
     private void createGame(Context ctx) {
         var serializer = new Gson();
         var authToken = ctx.header("authorization");
-        Object gameNameAsObject = serializer.fromJson(ctx.body(), Map.class).get("gameName");
+        Map<?, ?> body = serializer.fromJson(ctx.body(), Map.class);
+        Object gameNameAsObject = body.get("gameName");
 
         try {
-            var gameID = gameService.createGame(authToken, gameNameAsObject);
+            int gameID;
+            if (body.containsKey("computerColor")){
+                gameID = gameService.createComputerGame(authToken, gameNameAsObject,
+                        body.get("computerColor"), body.get("thinkMillis"));
+            } else {
+                gameID = gameService.createGame(authToken, gameNameAsObject);
+            }
             ctx.json(serializer.toJson(Map.of("gameID", gameID)));
         } catch (DataAccessException e){
             ctx.status(ExceptionHandler.getErrorCode(e)).json(serializer.toJson(Map.of("message", e.getMessage())));
@@ -142,6 +198,22 @@ public class Server {
         }
     }
 
+    private void exportPgn(Context ctx) {
+        var serializer = new Gson();
+        var authToken = ctx.header("authorization");
+        try {
+            int gameID;
+            try {
+                gameID = Integer.parseInt(ctx.pathParam("id"));
+            } catch (NumberFormatException ex) {
+                throw new DataAccessException("Error: bad request");
+            }
+            ctx.contentType("application/x-chess-pgn").result(gameService.exportPgn(authToken, gameID));
+        } catch (DataAccessException e) {
+            ctx.status(ExceptionHandler.getErrorCode(e)).json(serializer.toJson(Map.of("message", e.getMessage())));
+        }
+    }
+
 
     public int run(int desiredPort) {
         server.start(desiredPort);
@@ -150,5 +222,7 @@ public class Server {
 
     public void stop() {
         server.stop();
+        engines.close();
+        analyses.close();
     }
 }
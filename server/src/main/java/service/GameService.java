@@ -1,19 +1,35 @@
 package service;
 
+import chess.ChessGame;
+import chess.pgn.PgnGame;
+import chess.pgn.PgnWriter;
+import computer.ComputerPlayer;
+import computer.EnginePool;
 import dataaccess.DataAccess;
 import dataaccess.DataAccessException;
 import datamodel.GameData;
 import datamodel.JoinRequest;
 import handler.ExceptionHandler;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 
 public class GameService {
     private final DataAccess dataAccess;
+    //null when this server doesn't play games against the computer
+    private final EnginePool engines;
     private int gameID = 1;
     public GameService(DataAccess dataAccess) {
+        this(dataAccess, null);
+    }
+
+    public GameService(DataAccess dataAccess, EnginePool engines) {
         this.dataAccess = dataAccess;
+        this.engines = engines;
     }
 
     private void validateAuthToken(String authToken) throws DataAccessException {
@@ -40,6 +56,33 @@ public class GameService {
         return dataAccess.createGame(authToken, thisID, gameName);
     }
 
+    /**
+     * Creates a game with the computer already seated in one color, for the
+     * caller to join in the other.
+     *
+     * @param thinkMillisAsObject how long the computer thinks per move, or null for the default
+     */
+    public int createComputerGame(String authToken, Object gameNameAsObject, Object computerColorAsObject,
+                                  Object thinkMillisAsObject) throws DataAccessException {
+        validateAuthToken(authToken);
+        if (engines == null){
+            throw new DataAccessException("Error: bad request");
+        }
+        String computerColor = computerColorAsObject == null ? null : computerColorAsObject.toString();
+        ExceptionHandler.validateColor(computerColor);
+        long thinkMillis = EnginePool.DEFAULT_THINK_MILLIS;
+        if (thinkMillisAsObject != null){
+            if (!(thinkMillisAsObject instanceof Number number)){
+                throw new DataAccessException("Error: bad request");
+            }
+            thinkMillis = number.longValue();
+        }
+        int thisID = createGame(authToken, gameNameAsObject);
+        dataAccess.addPlayerToGame(ComputerPlayer.USERNAME, computerColor, thisID);
+        dataAccess.setThinkMillis(thisID, EnginePool.clampThinkTime(thinkMillis));
+        return thisID;
+    }
+
     public void joinGame(String authToken, JoinRequest joinRequest) throws DataAccessException {
         validateAuthToken(authToken);
         ExceptionHandler.validateColor(joinRequest.playerColor());
@@ -59,4 +102,29 @@ public class GameService {
         dataAccess.addUserToGame(authToken, joinRequest.playerColor(), joinRequest.gameID());
     }
 
+    public String exportPgn(String authToken, int gameID) throws DataAccessException {
+        validateAuthToken(authToken);
+        GameData game = dataAccess.getGame(gameID);
+        if (game == null){
+            throw new DataAccessException("Error: bad request");
+        }
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("Event", game.getGameName());
+        tags.put("White", Objects.requireNonNullElse(game.getWhiteUsername(), "?"));
+        tags.put("Black", Objects.requireNonNullElse(game.getBlackUsername(), "?"));
+        PgnGame pgn;
+        try {
+            pgn = PgnGame.fromMoves(tags, new ChessGame(), dataAccess.getMoves(gameID));
+        } catch (IllegalArgumentException ex) {
+            throw new DataAccessException("Error: corrupt move log");
+        }
+        StringWriter text = new StringWriter();
+        try (var writer = new PgnWriter(text)) {
+            writer.write(pgn);
+        } catch (IOException ex) {
+            throw new DataAccessException("Error: " + ex.getMessage());
+        }
+        return text.toString();
+    }
+
 }
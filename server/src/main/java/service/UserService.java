@@ -1,5 +1,6 @@
 package service;
 
+import computer.ComputerPlayer;
 import handler.ExceptionHandler;
 import dataaccess.DataAccess;
 import dataaccess.DataAccessException;
@@ -25,7 +26,8 @@ public class UserService {
     public AuthData register(UserData userData) throws DataAccessException {
         ExceptionHandler.verifyFieldsNotEmpty(userData);
         userData = new UserData(userData.username(), obfuscatePassword(userData.password()), userData.email());
-        if (dataAccess.getUser(userData.username()) == null){
+        //the computer's seat in a game is held under its own name, so no one may take it
+        if (dataAccess.getUser(userData.username()) == null && !ComputerPlayer.isComputer(userData.username())){
             dataAccess.addUser(userData);
             return dataAccess.addAuthData(new AuthData(userData.username(), generateAuthToken()));
         } else {
@@ -30,7 +30,7 @@ public class ConnectionManager {
     public void broadcastMessage(ServerMessage serverMessage, Collection<Session> excludedSessions, Integer gameID) throws IOException {
         for (Session session : connections.keySet()){
             if (!excludedSessions.contains(session) && session.isOpen() && Objects.equals(connections.get(session), gameID)){
-                session.getRemote().sendString(new Gson().toJson(serverMessage));
+                send(serverMessage, session);
             }
         }
     }
@@ -38,7 +38,15 @@ public class ConnectionManager {
     //send message to a single user
     public void sendMessage(ServerMessage message, Session session) throws IOException {
         if (session.isOpen()){
-            session.getRemote().sendString(new Gson().toJson(message));
+            send(message, session);
+        }
+    }
+
+    //engine workers send too, and a session can only send one message at a time
+    private void send(ServerMessage message, Session session) throws IOException {
+        String json = new Gson().toJson(message);
+        synchronized (session) {
+            session.getRemote().sendString(json);
         }
     }
 }
@@ -4,15 +4,23 @@ import chess.ChessGame;
 import chess.ChessMove;
 import chess.InvalidMoveException;
 import com.google.gson.Gson;
+import chess.engine.OpeningBook;
+import chess.engine.SearchResult;
+import chess.pgn.San;
+import computer.AnalysisPool;
+import computer.ComputerPlayer;
+import computer.EnginePool;
 import dataaccess.DataAccessException;
 import datamodel.GameData;
 import io.javalin.websocket.*;
 import org.jetbrains.annotations.NotNull;
+import websocket.commands.AnalyzeCommand;
 import websocket.commands.ConnectCommand;
 import websocket.commands.MoveCommand;
 import websocket.commands.UserGameCommand;
 import dataaccess.DataAccess;
 import org.eclipse.jetty.websocket.api.Session;
+import websocket.messages.AnalysisMessage;
 import websocket.messages.ErrorMessage;
 import websocket.messages.GameMessage;
 import websocket.messages.ServerMessage;
@@ -21,18 +29,47 @@ import java.io.IOException;
 
 import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsCloseHandler {
+    //changes to a game are made holding its own lock, so a move, the computer's reply and a
+    //resignation each see the others' results. The lock covers only loading, checking and saving
+    //the game; messages are sent after it is released, so one slow connection holds up no one else.
+    private final ConcurrentHashMap<Integer, Object> gameLocks = new ConcurrentHashMap<>();
+    //the computer's moves are saved and sent from here, leaving the engine workers free to search
+    private final ExecutorService computerMoves =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("computer-move-", 1).factory());
     private final Gson serializer = new Gson();
     private final ConnectionManager connections = new ConnectionManager();
     private final DataAccess dataAccess;
+    private final EnginePool engines;
+    private final AnalysisPool analyses;
 
-    public WebSocketHandler(DataAccess dataAccess){
+    public WebSocketHandler(DataAccess dataAccess, EnginePool engines, AnalysisPool analyses){
         this.dataAccess = dataAccess;
+        this.engines = engines;
+        this.analyses = analyses;
+    }
+
+    private Object lockFor(int gameID) {
+        return gameLocks.computeIfAbsent(gameID, id -> new Object());
+    }
+
+    //a message for everyone watching a game bar some, built while its lock is held and sent after
+    private record Broadcast(ServerMessage message, List<Session> exclude) {
+    }
+
+    private void broadcastAll(List<Broadcast> broadcasts, int gameID) throws IOException {
+        for (Broadcast broadcast : broadcasts) {
+            connections.broadcastMessage(broadcast.message(), broadcast.exclude(), gameID);
+        }
     }
 
 
@@ -94,6 +131,11 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
                     gameID = leaveCommand.getGameID();
                     leave(player, gameID, leaveCommand.getAuthToken(), ctx.session);
                     break;
+                case ANALYZE:
+                    AnalyzeCommand analyzeCommand = serializer.fromJson(ctx.message(), AnalyzeCommand.class);
+                    player = dataAccess.getAuthData(analyzeCommand.getAuthToken()).username();
+                    analyze(player, analyzeCommand, ctx.session);
+                    break;
             }
         } catch (NullPointerException ex){
             ErrorMessage message = new ErrorMessage(ServerMessage.ServerMessageType.ERROR,
@@ -104,6 +146,7 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
 
     @Override
     public void handleClose(@NotNull WsCloseContext ctx) throws Exception {
+        analyses.cancel(ctx.session);
         System.out.println("Websocket connection closed successfully");
     }
 
@@ -112,10 +155,13 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
             if (connections.contains(session)){
                 connections.remove(session);
             }
+            GameData gameData = dataAccess.getGame(gameID);
             GameMessage gameMessage = new GameMessage(ServerMessage.ServerMessageType.LOAD_GAME,
-                    dataAccess.getGame(gameID).getGame());
+                    gameData.getGame());
             connections.add(session, gameID);
             connections.sendMessage(gameMessage, session);
+            //the computer may have the first move, or the server may have restarted while it thought
+            requestComputerMove(gameData);
         } catch (NullPointerException ex){
             ErrorMessage message = new ErrorMessage(ServerMessage.ServerMessageType.ERROR,
                     "Invalid game ID.");
@@ -136,28 +182,24 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
 
     private void makeMove(String player, ChessMove move, int gameID, Session session) throws IOException {
         try {
-            GameData gameData = dataAccess.getGame(gameID);
-            try {
+            GameData gameData;
+            List<Broadcast> broadcasts;
+            synchronized (lockFor(gameID)) {
+                gameData = dataAccess.getGame(gameID);
                 validateIsPlayer(gameData, player);
                 if (gameData.getGame().isGameOver()){
                     throw new DataAccessException("Game Over!");
                 }
                 gameData.getGame().makeMove(move);
-                dataAccess.updateGame(gameID, gameData.getGame());
-            }
-            catch (InvalidMoveException e) {
-                ErrorMessage message = new ErrorMessage(ServerMessage.ServerMessageType.ERROR,
-                        "Got Error Message: " + e.getMessage());
-                connections.sendMessage(message, session);
-                return;
+                dataAccess.addMove(gameID, move, gameData.getGame());
+                broadcasts = moveBroadcasts(gameData, player, move, List.of(session));
             }
-            GameMessage gameMessage = new GameMessage(ServerMessage.ServerMessageType.LOAD_GAME,
-                    gameData.getGame());
-            connections.broadcastMessage(gameMessage, List.of(), gameID);
-            ServerMessage message = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION,
-                    player + " made the move " + move + ".");
-            connections.broadcastMessage(message, List.of(new Session[]{session}), gameID);
-            broadcastBoardState(gameData, gameID);
+            broadcastAll(broadcasts, gameID);
+            requestComputerMove(gameData);
+        } catch (InvalidMoveException e) {
+            ErrorMessage message = new ErrorMessage(ServerMessage.ServerMessageType.ERROR,
+                    "Got Error Message: " + e.getMessage());
+            connections.sendMessage(message, session);
         } catch (IOException ex){
             ErrorMessage message = new ErrorMessage(ServerMessage.ServerMessageType.ERROR,
                     "Server Error.");
@@ -169,33 +211,88 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
         }
     }
 
-    private void broadcastBoardState(GameData gameData, int gameID) throws IOException {
-        ServerMessage message;
-        if (gameData.getGame().isInCheckmate(ChessGame.TeamColor.WHITE)){
-            message = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION,
-                    gameData.getWhiteUsername() + " (white) is in checkmate! Black wins!");
-            connections.broadcastMessage(message, List.of(), gameID);
-
-        } else if (gameData.getGame().isInCheckmate(ChessGame.TeamColor.BLACK)){
-            message = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION,
-                    gameData.getBlackUsername() + " (black) is in checkmate! White wins");
-            connections.broadcastMessage(message, List.of(), gameID);
-        } else if (gameData.getGame().isInCheck(ChessGame.TeamColor.WHITE)){
-             message = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION,
-                     gameData.getWhiteUsername() + " (white) is in check!");
-             connections.broadcastMessage(message, List.of(), gameID);
-
-        } else if (gameData.getGame().isInCheck(ChessGame.TeamColor.BLACK)){
-            message = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION,
-                    gameData.getBlackUsername() + " (black) is in check!");
-            connections.broadcastMessage(message, List.of(), gameID);
-
-        } else if (gameData.getGame().isInStalemate(gameData.getGame().getTeamTurn())){
-            message = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION,
-                    gameData.getGame().getTeamTurn() + " can't make any moves. Stalemate!");
-            connections.broadcastMessage(message, List.of(), gameID);
+    //the new board for everyone, who moved for everyone but those excluded, and any check or end of the game
+    private List<Broadcast> moveBroadcasts(GameData gameData, String player, ChessMove move, List<Session> exclude) {
+        List<Broadcast> broadcasts = new ArrayList<>();
+        broadcasts.add(new Broadcast(new GameMessage(ServerMessage.ServerMessageType.LOAD_GAME, gameData.getGame()),
+                List.of()));
+        broadcasts.add(new Broadcast(new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION,
+                player + " made the move " + move + "."), exclude));
+        ServerMessage boardState = boardState(gameData);
+        if (boardState != null) {
+            broadcasts.add(new Broadcast(boardState, List.of()));
         }
+        return broadcasts;
+    }
 
+    private void requestComputerMove(GameData gameData) {
+        if (!ComputerPlayer.isToMove(gameData)) {
+            return;
+        }
+        int gameID = gameData.getGameID();
+        int ply = gameData.getGame().getPly();
+        if (!engines.requestMove(gameID, gameData.getGame(), ComputerPlayer.thinkMillis(gameData),
+                move -> computerMoves.execute(() -> makeComputerMove(gameID, ply, move)))
+                && !engines.isThinking(gameID)) {
+            try {
+                connections.broadcastMessage(new ErrorMessage(ServerMessage.ServerMessageType.ERROR,
+                        "The computer is busy. Reconnect to try again."), List.of(), gameID);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    //runs on its own virtual thread once the computer has chosen its move
+    private void makeComputerMove(int gameID, int ply, ChessMove move) {
+        try {
+            List<Broadcast> broadcasts;
+            synchronized (lockFor(gameID)) {
+                GameData gameData = dataAccess.getGame(gameID);
+                ChessGame game = gameData.getGame();
+                //a resignation or another search's move got there first; holding the lock, neither
+                //can come between this check and the move being saved
+                if (move == null || !ComputerPlayer.isToMove(gameData) || game.getPly() != ply) {
+                    return;
+                }
+                game.makeMove(move);
+                dataAccess.addMove(gameID, move, game);
+                broadcasts = moveBroadcasts(gameData, ComputerPlayer.USERNAME, move, List.of());
+            }
+            broadcastAll(broadcasts, gameID);
+        } catch (InvalidMoveException | DataAccessException | IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    //the notice of check or of how the game ended, or null if there is none
+    private ServerMessage boardState(GameData gameData) {
+        ChessGame game = gameData.getGame();
+        String player;
+        String winner;
+        if (game.getTeamTurn() == ChessGame.TeamColor.WHITE){
+            player = gameData.getWhiteUsername() + " (white)";
+            winner = "Black wins!";
+        } else {
+            player = gameData.getBlackUsername() + " (black)";
+            winner = "White wins";
+        }
+
+        return switch (game.getGameStatus()){
+            case CHECKMATE -> new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION,
+                    player + " is in checkmate! " + winner);
+            case CHECK -> new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION,
+                    player + " is in check!");
+            case STALEMATE -> new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION,
+                    game.getTeamTurn() + " can't make any moves. Stalemate!");
+            case REPETITION -> new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION,
+                    "The same position has come up three times. Draw by repetition!");
+            case FIFTY_MOVES -> new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION,
+                    "Fifty moves without a capture or pawn move. Draw!");
+            case INSUFFICIENT_MATERIAL -> new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION,
+                    "Neither side has enough pieces left to checkmate. Draw!");
+            default -> null;
+        };
     }
 
     private void validateIsPlayer(GameData gameData, String player) throws InvalidMoveException {
@@ -214,16 +311,19 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
 
     private void resign(String player, int gameID, Session session) throws IOException {
         try {
-            GameData gameData = dataAccess.getGame(gameID);
-            validateIsNotObserver(gameData, player);
-            if (gameData.getGame().isGameOver()){
-                throw new IOException("Game is already over!");
+            synchronized (lockFor(gameID)) {
+                GameData gameData = dataAccess.getGame(gameID);
+                validateIsNotObserver(gameData, player);
+                if (gameData.getGame().isGameOver()){
+                    throw new IOException("Game is already over!");
+                }
+                gameData.getGame().setGameOver(true);
+                engines.cancel(gameID);
+                dataAccess.updateGame(gameID, gameData.getGame());
             }
             ServerMessage message = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION,
                     player + " has resigned. Game over!");
             connections.broadcastMessage(message, List.of(new Session[]{}), gameID);
-            gameData.getGame().setGameOver(true);
-            dataAccess.updateGame(gameID, gameData.getGame());
         } catch (DataAccessException e) {
             ErrorMessage message = new ErrorMessage(ServerMessage.ServerMessageType.ERROR,
                     "Invalid game ID.");
@@ -242,6 +342,7 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
     }
 
     private void leave(String player, int gameID, String authToken, Session session) throws IOException {
+        analyses.cancel(session);
         connections.remove(session);
         try {
             GameData gameData = dataAccess.getGame(gameID);
@@ -252,6 +353,7 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
             if (color.equals("OBSERVER")){
                 return;
             }
+            engines.cancel(gameID);
             dataAccess.removeUserFromGame(color, gameID);
         } catch (IOException ex){
             ex.printStackTrace();
@@ -262,6 +364,99 @@ public class WebSocketHandler implements WsConnectHandler, WsMessageHandler, WsC
         }
     }
 
+    private void analyze(String player, AnalyzeCommand command, Session session) throws IOException {
+        try {
+            GameData gameData = dataAccess.getGame(command.getGameID());
+            if (gameData == null){
+                throw new DataAccessException("Invalid game ID.");
+            }
+            if (!gameData.getGame().isGameOver() && !determinePlayerColor(gameData, player).equals("OBSERVER")){
+                throw new DataAccessException("Players can't analyze a game in progress!");
+            }
+            //a copy of its own, since the game may go on while the analysis runs
+            ChessGame position = positionAt(gameData, command.getPly());
+            int lines = Math.clamp(Objects.requireNonNullElse(command.getLines(), AnalysisPool.DEFAULT_LINES),
+                    1, AnalysisPool.MAX_LINES);
+            //book moves are known at once, so there is no need to search for them
+            List<OpeningBook.Entry> book = analyses.bookMoves(position);
+            if (!book.isEmpty()){
+                analyses.cancel(session);
+                sendBookMoves(position, book.subList(0, Math.min(lines, book.size())), book, session);
+                return;
+            }
+            boolean started = analyses.start(session, player, position, lines,
+                    iteration -> sendAnalysis(ServerMessage.ServerMessageType.ANALYSIS, position, iteration, session),
+                    result -> sendAnalysis(ServerMessage.ServerMessageType.ANALYSIS_COMPLETE, position, result, session));
+            if (!started){
+                throw new DataAccessException("Too many analyses running. Wait for one to finish.");
+            }
+        } catch (DataAccessException ex){
+            ErrorMessage message = new ErrorMessage(ServerMessage.ServerMessageType.ERROR, ex.getMessage());
+            connections.sendMessage(message, session);
+        }
+    }
+
+    //the game as it was after the given number of moves, or as it is now
+    private ChessGame positionAt(GameData gameData, Integer ply) throws DataAccessException {
+        if (ply == null){
+            return new ChessGame(gameData.getGame());
+        }
+        List<ChessMove> moves = dataAccess.getMoves(gameData.getGameID());
+        if (ply < 0 || ply > moves.size()){
+            throw new DataAccessException("Invalid ply.");
+        }
+        ChessGame game = new ChessGame();
+        try {
+            for (ChessMove move : moves.subList(0, ply)){
+                game.makeMove(move);
+            }
+        } catch (InvalidMoveException ex){
+            throw new DataAccessException("Error: corrupt move log");
+        }
+        return game;
+    }
+
+    private void sendBookMoves(ChessGame position, List<OpeningBook.Entry> shown, List<OpeningBook.Entry> book,
+                               Session session) throws IOException {
+        long total = 0;
+        for (OpeningBook.Entry entry : book){
+            total += entry.weight();
+        }
+        List<AnalysisMessage.Line> lines = new ArrayList<>(shown.size());
+        for (OpeningBook.Entry entry : shown){
+            lines.add(new AnalysisMessage.Line(null, null, List.of(San.toSan(position, entry.move())),
+                    (int) Math.round(entry.weight() * 100.0 / total)));
+        }
+        connections.sendMessage(new AnalysisMessage(ServerMessage.ServerMessageType.ANALYSIS_COMPLETE, 0, 0, lines),
+                session);
+    }
+
+    //runs on an analysis worker
+    private void sendAnalysis(ServerMessage.ServerMessageType type, ChessGame position,
+                              List<SearchResult> results, Session session) {
+        List<AnalysisMessage.Line> lines = new ArrayList<>(results.size());
+        for (SearchResult result : results){
+            ChessGame game = new ChessGame(position);
+            List<String> moves = new ArrayList<>(result.pv().size());
+            try {
+                for (ChessMove move : result.pv()){
+                    moves.add(San.toSan(game, move));
+                    game.makeMove(move);
+                }
+            } catch (InvalidMoveException | IllegalArgumentException ex){
+                //a line is only as good as the table entries it came from, so stop at a bad move
+            }
+            lines.add(new AnalysisMessage.Line(result.isMate() ? null : result.score(),
+                    result.isMate() ? result.mateIn() : null, moves, null));
+        }
+        SearchResult best = results.getFirst();
+        try {
+            connections.sendMessage(new AnalysisMessage(type, best.depth(), best.nodes(), lines), session);
+        } catch (IOException ex){
+            ex.printStackTrace();
+        }
+    }
+
     private String determinePlayerColor(GameData gameData, String username) {
         if (Objects.equals(gameData.getWhiteUsername(), username)){
             return "WHITE";
@@ -0,0 +1,69 @@
+package computer;
+
+import chess.ChessGame;
+import chess.engine.SearchResult;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AnalysisPoolTests {
+
+    private static final String MATE_IN_ONE = "6k1/5ppp/8/8/8/8/8/R3K3 w Q - 0 1";
+
+    @Test
+    public void streamsLines() throws InterruptedException {
+        try (AnalysisPool analyses = new AnalysisPool(1, 4)) {
+            List<List<SearchResult>> iterations = new CopyOnWriteArrayList<>();
+            List<List<SearchResult>> complete = new CopyOnWriteArrayList<>();
+            CountDownLatch done = new CountDownLatch(1);
+            Object owner = new Object();
+            //a mate in one ends the search early
+            Assertions.assertTrue(analyses.start(owner, "observer", ChessGame.fromFen(MATE_IN_ONE), 2,
+                    iterations::add, lines -> {
+                        complete.add(lines);
+                        done.countDown();
+                    }));
+            Assertions.assertTrue(done.await(AnalysisPool.ANALYSIS_MILLIS + 5000, TimeUnit.MILLISECONDS));
+            Assertions.assertFalse(iterations.isEmpty());
+            Assertions.assertEquals(2, complete.getFirst().size());
+            Assertions.assertTrue(complete.getFirst().getFirst().isMate());
+            Assertions.assertFalse(analyses.isAnalyzing(owner));
+        }
+    }
+
+    @Test
+    public void limitsPerUser() {
+        try (AnalysisPool analyses = new AnalysisPool(1, 8)) {
+            Object first = new Object();
+            Object second = new Object();
+            Assertions.assertTrue(analyses.start(first, "observer", new ChessGame(), 1, lines -> { }, lines -> { }));
+            Assertions.assertTrue(analyses.start(second, "observer", new ChessGame(), 1, lines -> { }, lines -> { }));
+            Assertions.assertFalse(analyses.start(new Object(), "observer", new ChessGame(), 1, lines -> { }, lines -> { }));
+            //another user isn't held back, and a connection may replace its own analysis
+            Assertions.assertTrue(analyses.start(new Object(), "someone else", new ChessGame(), 1, lines -> { }, lines -> { }));
+            Assertions.assertTrue(analyses.start(first, "observer", new ChessGame(), 1, lines -> { }, lines -> { }));
+
+            analyses.cancel(first);
+            Assertions.assertFalse(analyses.isAnalyzing(first));
+            Assertions.assertTrue(analyses.start(new Object(), "observer", new ChessGame(), 1, lines -> { }, lines -> { }));
+        }
+    }
+
+    @Test
+    public void cancelStopsReports() throws InterruptedException {
+        try (AnalysisPool analyses = new AnalysisPool(1, 4)) {
+            List<List<SearchResult>> complete = new CopyOnWriteArrayList<>();
+            Object owner = new Object();
+            analyses.start(owner, "observer", new ChessGame(), 3, lines -> { }, complete::add);
+            Thread.sleep(200);
+            analyses.cancel(owner);
+            Thread.sleep(300);
+            Assertions.assertTrue(complete.isEmpty());
+            Assertions.assertFalse(analyses.isAnalyzing(owner));
+        }
+    }
+}
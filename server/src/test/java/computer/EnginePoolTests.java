@@ -0,0 +1,103 @@
+package computer;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.engine.OpeningBook;
+import chess.engine.OpeningBookBuilder;
+import chess.pgn.PgnGame;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class EnginePoolTests {
+
+    @Test
+    public void repliesWithLegalMove() throws InterruptedException {
+        try (EnginePool engines = new EnginePool(1, 4)) {
+            ChessGame game = new ChessGame();
+            CountDownLatch done = new CountDownLatch(1);
+            List<ChessMove> moves = new CopyOnWriteArrayList<>();
+            Assertions.assertTrue(engines.requestMove(1, game, 100, move -> {
+                moves.add(move);
+                done.countDown();
+            }));
+            //one search per game at a time
+            Assertions.assertFalse(engines.requestMove(1, game, 100, move -> moves.add(move)));
+            Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(1, moves.size());
+            Assertions.assertTrue(game.legalMoves().contains(moves.getFirst()));
+            Assertions.assertFalse(engines.isThinking(1));
+        }
+    }
+
+    @Test
+    public void cancelDropsMove() throws InterruptedException {
+        try (EnginePool engines = new EnginePool(1, 4)) {
+            List<ChessMove> moves = new CopyOnWriteArrayList<>();
+            engines.requestMove(1, new ChessGame(), 2000, moves::add);
+            engines.requestMove(2, new ChessGame(), 2000, moves::add);
+            Thread.sleep(100);
+            //one running, one waiting
+            Assertions.assertEquals(1, engines.queued());
+            engines.cancel(1);
+            engines.cancel(2);
+            Assertions.assertEquals(0, engines.queued());
+            Assertions.assertFalse(engines.isThinking(1));
+            Thread.sleep(300);
+            Assertions.assertTrue(moves.isEmpty());
+        }
+    }
+
+    @Test
+    public void boundedQueueInOrder() throws InterruptedException {
+        try (EnginePool engines = new EnginePool(1, 2)) {
+            List<Integer> order = new CopyOnWriteArrayList<>();
+            CountDownLatch done = new CountDownLatch(3);
+            Assertions.assertTrue(engines.requestMove(1, new ChessGame(), 100, move -> { order.add(1); done.countDown(); }));
+            Thread.sleep(30);
+            Assertions.assertTrue(engines.requestMove(2, new ChessGame(), 100, move -> { order.add(2); done.countDown(); }));
+            Assertions.assertTrue(engines.requestMove(3, new ChessGame(), 100, move -> { order.add(3); done.countDown(); }));
+            //full: one running and two waiting
+            Assertions.assertFalse(engines.requestMove(4, new ChessGame(), 100, move -> order.add(4)));
+            Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(List.of(1, 2, 3), order);
+        }
+    }
+
+    @Test
+    public void thinkTimeClamped() {
+        Assertions.assertEquals(EnginePool.MIN_THINK_MILLIS, EnginePool.clampThinkTime(1));
+        Assertions.assertEquals(EnginePool.MAX_THINK_MILLIS, EnginePool.clampThinkTime(Long.MAX_VALUE));
+        Assertions.assertEquals(250, EnginePool.clampThinkTime(250));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new EnginePool(0, 1));
+    }
+
+    @Test
+    public void playsBookMove(@TempDir Path directory) throws IOException, InterruptedException {
+        OpeningBookBuilder builder = new OpeningBookBuilder();
+        builder.add(new PgnGame(Map.of(), List.of("d4", "d5"), PgnGame.WHITE_WINS));
+        Path file = directory.resolve("book.bin");
+        builder.write(file);
+        try (EnginePool engines = new EnginePool(1, 4, OpeningBook.open(file), null)) {
+            List<ChessMove> moves = new CopyOnWriteArrayList<>();
+            CountDownLatch done = new CountDownLatch(1);
+            //long enough that a search couldn't finish before the wait below runs out
+            engines.requestMove(1, new ChessGame(), EnginePool.MAX_THINK_MILLIS, move -> {
+                moves.add(move);
+                done.countDown();
+            });
+            Assertions.assertTrue(done.await(2, TimeUnit.SECONDS));
+            Assertions.assertEquals(new ChessMove(new ChessPosition(2, 4), new ChessPosition(4, 4), null),
+                    moves.getFirst());
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package dataaccess;
 
 import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
 import datamodel.GameData;
 import datamodel.JoinRequest;
 import datamodel.LoginData;
@@ -190,4 +192,22 @@ public class SQLDataAccessTests {
         sqlGameService.joinGame(authSQL, new JoinRequest("WHITE", gameID));
         Assertions.assertThrows(DataAccessException.class, () -> sqlGameService.joinGame(auth2, new JoinRequest("WHITE", gameID)));
     }
+
+    @Test
+    public void movesReplayOverSnapshotSQL() throws Exception {
+        authSQL = sqlUserService.login(new LoginData(existingSQLUser.username(), existingSQLUser.password())).authToken();
+        int gameID = sqlGameService.createGame(authSQL, "Game");
+        ChessGame game = new ChessGame();
+        //a pawn move each and the knights out and back, four times, to get past the first snapshot
+        for (int col = 1; col <= 4; col++) {
+            int[][] moves = {{2, col, 3, col}, {7, col, 6, col}, {1, 7, 3, 6}, {8, 7, 6, 6}, {3, 6, 1, 7}, {6, 6, 8, 7}};
+            for (int[] move : moves) {
+                ChessMove chessMove = new ChessMove(ChessPosition.of(move[0], move[1]), ChessPosition.of(move[2], move[3]), null);
+                game.makeMove(chessMove);
+                mySQLDataAccess.addMove(gameID, chessMove, game);
+            }
+        }
+        Assertions.assertEquals(game, mySQLDataAccess.getGame(gameID).getGame());
+        Assertions.assertEquals(game.toFen(), mySQLDataAccess.getGame(gameID).getGame().toFen());
+    }
 }
@@ -0,0 +1,105 @@
+package dataaccess;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.GameCodec;
+import chess.InvalidMoveException;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+public class SchemaMigrationsTests {
+
+    @Test
+    public void versionFromColumns() {
+        Assertions.assertEquals(0, SchemaMigrations.versionFromColumns(Set.of()));
+        Assertions.assertEquals(1, SchemaMigrations.versionFromColumns(
+                Set.of("gameid", "whiteusername", "blackusername", "gamename", "chessgame")));
+        Assertions.assertEquals(2, SchemaMigrations.versionFromColumns(
+                Set.of("gameid", "gamename", "fen", "resigned", "positionhistory")));
+        Assertions.assertEquals(3, SchemaMigrations.versionFromColumns(Set.of("gameid", "gamename", "gamestate")));
+        Assertions.assertEquals(4, SchemaMigrations.versionFromColumns(
+                Set.of("gameid", "gamename", "gamestate", "snapshotply")));
+        Assertions.assertEquals(SchemaMigrations.CURRENT_VERSION, SchemaMigrations.versionFromColumns(
+                Set.of("gameid", "gamename", "gamestate", "snapshotply", "thinkmillis")));
+        //an upgrade from the first layout that stopped partway is still seen as the first
+        Assertions.assertEquals(1, SchemaMigrations.versionFromColumns(Set.of("gameid", "chessgame", "gamestate")));
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> SchemaMigrations.versionFromColumns(Set.of("gameid", "board")));
+    }
+
+    @Test
+    public void gsonGamesConvert() throws InvalidMoveException {
+        ChessGame before = new ChessGame();
+        ChessGame after = new ChessGame();
+        after.makeMove(new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        JsonObject json = new JsonObject();
+        json.addProperty("currentTurn", "BLACK");
+        json.add("board", legacyBoard(after.getBoard()));
+        json.add("previousBoard", legacyBoard(before.getBoard()));
+        json.addProperty("gameOver", false);
+
+        ChessGame game = SchemaMigrations.fromGson(json.toString());
+        //castling rights from where the kings and rooks stand, en passant from the board before
+        Assertions.assertTrue(game.toFen().startsWith("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 "),
+                game.toFen());
+        Assertions.assertFalse(game.isGameOver());
+        //and it survives being stored the way it is now
+        Assertions.assertEquals(game.toFen(), GameCodec.decode(GameCodec.encode(game)).toFen());
+
+        json.add("previousBoard", JsonNull.INSTANCE);
+        json.addProperty("gameOver", true);
+        game = SchemaMigrations.fromGson(json.toString());
+        Assertions.assertTrue(game.toFen().contains(" b KQkq - "), game.toFen());
+        Assertions.assertTrue(game.isGameOver());
+    }
+
+    @Test
+    public void fenGamesConvert() throws InvalidMoveException {
+        ChessGame played = new ChessGame();
+        played.makeMove(new ChessMove(ChessPosition.of(1, 7), ChessPosition.of(3, 6), null));
+        played.makeMove(new ChessMove(ChessPosition.of(8, 7), ChessPosition.of(6, 6), null));
+        StringBuilder history = new StringBuilder();
+        for (long key : played.getPositionHistory()) {
+            history.append(history.isEmpty() ? "" : ",").append(Long.toHexString(key));
+        }
+
+        ChessGame game = SchemaMigrations.fromFen(played.toFen(), true, history.toString());
+        Assertions.assertEquals(played.toFen(), game.toFen());
+        Assertions.assertArrayEquals(played.getPositionHistory(), game.getPositionHistory());
+        Assertions.assertTrue(game.isGameOver());
+
+        Assertions.assertEquals(0, SchemaMigrations.fromFen(played.toFen(), false, null).getPositionHistory().length);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> SchemaMigrations.fromFen("not a fen", false, ""));
+    }
+
+    //the board as Gson wrote the old ChessBoard: rows of columns, empty squares null
+    private static JsonObject legacyBoard(ChessBoard board) {
+        JsonArray rows = new JsonArray();
+        for (int row = 1; row <= 8; row++) {
+            JsonArray squares = new JsonArray();
+            for (int col = 1; col <= 8; col++) {
+                ChessPiece piece = board.getPiece(ChessPosition.of(row, col));
+                if (piece == null) {
+                    squares.add(JsonNull.INSTANCE);
+                    continue;
+                }
+                JsonObject legacy = new JsonObject();
+                legacy.addProperty("pieceColor", piece.getTeamColor().name());
+                legacy.addProperty("type", piece.getPieceType().name());
+                squares.add(legacy);
+            }
+            rows.add(squares);
+        }
+        JsonObject legacy = new JsonObject();
+        legacy.add("board", rows);
+        return legacy;
+    }
+}
@@ -1,6 +1,10 @@
 package service;
 
 import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import computer.ComputerPlayer;
+import computer.EnginePool;
 import dataaccess.DataAccessException;
 import dataaccess.MemoryDataAccess;
 import datamodel.GameData;
@@ -19,7 +23,7 @@ public class ServiceTests {
     MemoryDataAccess dataAccess = new MemoryDataAccess();
     UserService userService = new UserService(dataAccess);
     DataService dataService = new DataService(dataAccess);
-    GameService gameService = new GameService(dataAccess);
+    GameService gameService = new GameService(dataAccess, new EnginePool(1, 16));
     UserData sampleUserData = new UserData("myUsername", "myPassword", "myEmail@cs240.gov");
     UserData existingUser = new UserData("I-exist!", "pa$$w0rd!", "iamironman@cia.gov");
     String auth;
@@ -164,4 +168,63 @@ public class ServiceTests {
         gameService.joinGame(auth, new JoinRequest("WHITE", gameID));
         Assertions.assertThrows(DataAccessException.class, () -> gameService.joinGame(auth2, new JoinRequest("WHITE", gameID)));
     }
+
+    @Test
+    public void exportPgn() throws Exception {
+        auth = userService.login(new LoginData(existingUser.username(), existingUser.password())).authToken();
+        int gameID = gameService.createGame(auth, "Fool's mate");
+        gameService.joinGame(auth, new JoinRequest("WHITE", gameID));
+        ChessGame game = new ChessGame();
+        int[][] moves = {{2, 6, 3, 6}, {7, 5, 5, 5}, {2, 7, 4, 7}, {8, 4, 4, 8}};
+        for (int[] move : moves) {
+            ChessMove chessMove = new ChessMove(ChessPosition.of(move[0], move[1]), ChessPosition.of(move[2], move[3]), null);
+            game.makeMove(chessMove);
+            dataAccess.addMove(gameID, chessMove, game);
+        }
+        String pgn = gameService.exportPgn(auth, gameID);
+        Assertions.assertTrue(pgn.contains("[White \"" + existingUser.username() + "\"]"), pgn);
+        Assertions.assertTrue(pgn.contains("[Black \"?\"]"), pgn);
+        Assertions.assertTrue(pgn.contains("1. f3 e5 2. g4 Qh4# 0-1"), pgn);
+    }
+
+    @Test
+    public void gamesAreCopied() throws Exception {
+        auth = userService.login(new LoginData(existingUser.username(), existingUser.password())).authToken();
+        int gameID = gameService.createGame(auth, "copies");
+        //a game that was loaded but not saved leaves the stored one alone
+        dataAccess.getGame(gameID).getGame().makeMove(
+                new ChessMove(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        Assertions.assertEquals(new ChessGame(), dataAccess.getGame(gameID).getGame());
+    }
+
+    @Test
+    public void createComputerGame() throws DataAccessException {
+        auth = userService.login(new LoginData(existingUser.username(), existingUser.password())).authToken();
+        int gameID = gameService.createComputerGame(auth, "vs computer", "BLACK", 250.0);
+        GameData game = dataAccess.getGame(gameID);
+        Assertions.assertEquals(ComputerPlayer.USERNAME, game.getBlackUsername());
+        Assertions.assertNull(game.getWhiteUsername());
+        //kept with the game, so it survives a restart
+        Assertions.assertEquals(250, ComputerPlayer.thinkMillis(game));
+        gameService.joinGame(auth, new JoinRequest("WHITE", gameID));
+        Assertions.assertThrows(DataAccessException.class, () -> gameService.joinGame(auth, new JoinRequest("BLACK", gameID)));
+    }
+
+    @Test
+    public void createComputerGameBadRequest() throws DataAccessException {
+        auth = userService.login(new LoginData(existingUser.username(), existingUser.password())).authToken();
+        Assertions.assertThrows(DataAccessException.class, () -> gameService.createComputerGame(auth, "game", "GREEN", null));
+        Assertions.assertThrows(DataAccessException.class, () -> gameService.createComputerGame(auth, "game", "WHITE", "fast"));
+        Assertions.assertThrows(DataAccessException.class,
+                () -> new GameService(dataAccess).createComputerGame(auth, "game", "WHITE", null));
+        Assertions.assertThrows(DataAccessException.class,
+                () -> userService.register(new UserData(ComputerPlayer.USERNAME, "password", "bot@cs240.gov")));
+    }
+
+    @Test
+    public void exportPgnBadGame() throws DataAccessException {
+        auth = userService.login(new LoginData(existingUser.username(), existingUser.password())).authToken();
+        Assertions.assertThrows(DataAccessException.class, () -> gameService.exportPgn(auth, 42));
+        Assertions.assertThrows(DataAccessException.class, () -> gameService.exportPgn("not a token", 1));
+    }
 }
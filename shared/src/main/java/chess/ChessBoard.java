@@ -1,7 +1,6 @@
 package chess;
 
 import java.util.Arrays;
-import java.util.Objects;
 import static java.lang.Math.abs;
 
 /**
@@ -13,7 +12,37 @@ import static java.lang.Math.abs;
 
 public class ChessBoard {
 
-    private ChessPiece[][] board = new ChessPiece[8][8];
+    private final long[] pieceBitboards = new long[Bitboards.NUM_PIECE_INDICES];
+    private final long[] teamBitboards = new long[2];
+    private long occupied;
+    private final ChessPiece[] squares = new ChessPiece[64];
+
+    //Zobrist keys of the pieces and of the pawns alone, and the piece-square score and
+    //game phase from PieceSquareTables, all kept up to date by placePiece and clearSquare.
+    //They are not serialized; a board read back from JSON recomputes them on first use.
+    private transient long key;
+    private transient long pawnKey;
+    private transient int pieceSquareScore;
+    private transient int phase;
+    private transient boolean incrementalComputed;
+
+    private transient UndoRecord[] undoStack;
+    private transient int undoCount;
+
+    /**
+     * Everything {@link #unmakeMove()} needs to take a move back. Records are
+     * pooled on the undo stack so making and unmaking moves does not allocate.
+     */
+    private static final class UndoRecord {
+        int from;
+        int to;
+        ChessPiece moved;
+        ChessPiece captured;
+        int capturedSquare;
+        ChessPiece rook;
+        int rookFrom;
+        int rookTo;
+    }
 
     public ChessBoard() {
 
@@ -21,15 +50,25 @@ public class ChessBoard {
 
     //copy constructor
     public ChessBoard(ChessBoard board){
-        for (int row = 1; row <= 8; row ++){
-            for (int col = 1; col <= 8; col++){
-                addPiece(new ChessPosition(row, col), board.getPiece(new ChessPosition(row, col)));
-            }
-        }
+        System.arraycopy(board.pieceBitboards, 0, pieceBitboards, 0, pieceBitboards.length);
+        System.arraycopy(board.teamBitboards, 0, teamBitboards, 0, teamBitboards.length);
+        System.arraycopy(board.squares, 0, squares, 0, squares.length);
+        occupied = board.occupied;
+        key = board.key;
+        pawnKey = board.pawnKey;
+        pieceSquareScore = board.pieceSquareScore;
+        phase = board.phase;
+        incrementalComputed = board.incrementalComputed;
     }
 
     public ChessBoard(ChessPiece[][] board){
-        this.board = board;
+        for (int row = 1; row <= 8; row++){
+            for (int col = 1; col <= 8; col++){
+                if (board[row-1][col-1] != null) {
+                    placePiece(Bitboards.square(row, col), shared(board[row-1][col-1]));
+                }
+            }
+        }
     }
 
     /**
@@ -39,58 +78,277 @@ public class ChessBoard {
      * @param piece    the piece to add
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
-        board[position.getRow()-1][position.getColumn()-1] = piece;
+        int square = Bitboards.square(position);
+        clearSquare(square);
+        if (piece != null) {
+            placePiece(square, shared(piece));
+        }
     }
 
     public void removePiece(ChessPosition position) {
-        board[position.getRow()-1][position.getColumn()-1] = null;
+        clearSquare(Bitboards.square(position));
     }
 
     public void movePiece(ChessMove move){
-        if (getPiece(move.startPosition()).getPieceType() == ChessPiece.PieceType.KING){
-            moveKing(move);
-            return;
+        executeMove(Bitboards.square(move.startPosition()), Bitboards.square(move.endPosition()), move.promotionPiece());
+    }
+
+    /**
+     * Makes a move in place and remembers what it changed, so it can be taken
+     * back with {@link #unmakeMove()}.
+     *
+     * @param move the move to make; it is not checked for legality
+     */
+    public void makeMove(ChessMove move) {
+        makeMove(Bitboards.square(move.startPosition()), Bitboards.square(move.endPosition()), move.promotionPiece());
+    }
+
+    /**
+     * Same as {@link #makeMove(ChessMove)} for a move packed as described in {@link Move}
+     *
+     * @param move the packed move to make; it is not checked for legality
+     */
+    public void makeMove(int move) {
+        makeMove(Move.from(move), Move.to(move), Move.promotionType(move));
+    }
+
+    private void makeMove(int from, int to, ChessPiece.PieceType promotionPiece) {
+        ChessPiece piece = squares[from];
+
+        UndoRecord undo = pushUndoRecord();
+        undo.from = from;
+        undo.to = to;
+        undo.moved = piece;
+        undo.captured = squares[to];
+        undo.capturedSquare = to;
+        undo.rook = null;
+
+        if (piece.getPieceType() == ChessPiece.PieceType.PAWN && squares[to] == null
+                && Bitboards.column(from) != Bitboards.column(to)) {
+            undo.capturedSquare = enPassantCaptureSquare(piece, to);
+            undo.captured = squares[undo.capturedSquare];
+        } else if (isCastle(piece, from, to)) {
+            undo.rookFrom = castlingRookFrom(from, to);
+            undo.rookTo = castlingRookTo(from, to);
+            ChessPiece rook = squares[undo.rookFrom];
+            if (rook != null && rook.getPieceType() == ChessPiece.PieceType.ROOK) {
+                undo.rook = rook;
+            }
+        }
+
+        executeMove(from, to, promotionPiece);
+    }
+
+    /**
+     * Takes back the most recent move made with {@link #makeMove(ChessMove)},
+     * restoring any captured piece.
+     */
+    public void unmakeMove() {
+        UndoRecord undo = undoStack[--undoCount];
+        clearSquare(undo.to);
+        placePiece(undo.from, undo.moved);
+        if (undo.captured != null) {
+            placePiece(undo.capturedSquare, undo.captured);
+        }
+        if (undo.rook != null) {
+            clearSquare(undo.rookTo);
+            placePiece(undo.rookFrom, undo.rook);
+        }
+        undo.moved = null;
+        undo.captured = null;
+        undo.rook = null;
+    }
+
+    private UndoRecord pushUndoRecord() {
+        if (undoStack == null) {
+            undoStack = new UndoRecord[16];
+        } else if (undoCount == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, undoCount * 2);
+        }
+        if (undoStack[undoCount] == null) {
+            undoStack[undoCount] = new UndoRecord();
+        }
+        return undoStack[undoCount++];
+    }
+
+    private void executeMove(int from, int to, ChessPiece.PieceType promotionPiece) {
+        ChessPiece piece = squares[from];
+        if (piece.getPieceType() == ChessPiece.PieceType.PAWN && squares[to] == null
+                && Bitboards.column(from) != Bitboards.column(to)) {
+            clearSquare(enPassantCaptureSquare(piece, to));
         }
-        if (getPiece(move.startPosition()).getPieceType() == ChessPiece.PieceType.PAWN){
-            movePawn(move);
+        if (isCastle(piece, from, to)) {
+            ChessPiece rook = squares[castlingRookFrom(from, to)];
+            if (rook != null && rook.getPieceType() == ChessPiece.PieceType.ROOK) {
+                clearSquare(castlingRookFrom(from, to));
+                placePiece(castlingRookTo(from, to), rook);
+            }
         }
 
-        if (getPiece(move.startPosition()).getPieceType() == ChessPiece.PieceType.PAWN && move.promotionPiece() != null) {
-            addPiece(move.endPosition(), new ChessPiece(getPiece(move.startPosition()).getTeamColor(), move.promotionPiece()));
+        clearSquare(from);
+        clearSquare(to);
+        if (piece.getPieceType() == ChessPiece.PieceType.PAWN && promotionPiece != null) {
+            placePiece(to, ChessPiece.of(piece.getTeamColor(), promotionPiece));
         } else {
-            addPiece(move.endPosition(), getPiece(move.startPosition()));
+            placePiece(to, piece);
         }
+    }
 
-        removePiece(move.startPosition());
+    //a diagonal pawn move onto an empty square is an en passant capture of the pawn behind it
+    private static int enPassantCaptureSquare(ChessPiece pawn, int to) {
+        return pawn.getTeamColor() == ChessGame.TeamColor.WHITE ? to - 8 : to + 8;
     }
 
-    private void movePawn(ChessMove move) {
-        ChessPosition attackedPawn;
-        if (getPiece(move.startPosition()).getTeamColor() == ChessGame.TeamColor.WHITE) {
-            attackedPawn = new ChessPosition(move.endPosition().getRow() - 1, move.endPosition().getColumn());
-        } else {
-            attackedPawn = new ChessPosition(move.endPosition().getRow() + 1, move.endPosition().getColumn());
+    private static boolean isCastle(ChessPiece piece, int from, int to) {
+        return piece.getPieceType() == ChessPiece.PieceType.KING && abs(Bitboards.column(from) - Bitboards.column(to)) > 1;
+    }
+
+    private static int castlingRookFrom(int kingFrom, int kingTo) {
+        return kingTo > kingFrom ? kingTo + 1 : kingTo - 2;
+    }
+
+    private static int castlingRookTo(int kingFrom, int kingTo) {
+        return kingTo > kingFrom ? kingTo - 1 : kingTo + 1;
+    }
+
+    private static ChessPiece shared(ChessPiece piece) {
+        return ChessPiece.of(piece.getTeamColor(), piece.getPieceType());
+    }
+
+    private void placePiece(int square, ChessPiece piece) {
+        long bit = Bitboards.bit(square);
+        squares[square] = piece;
+        pieceBitboards[Bitboards.pieceIndex(piece.getTeamColor(), piece.getPieceType())] |= bit;
+        teamBitboards[piece.getTeamColor().ordinal()] |= bit;
+        occupied |= bit;
+        updateIncremental(piece, square, 1);
+    }
+
+    private void clearSquare(int square) {
+        ChessPiece piece = squares[square];
+        if (piece == null) {
+            return;
         }
+        long bit = Bitboards.bit(square);
+        squares[square] = null;
+        pieceBitboards[Bitboards.pieceIndex(piece.getTeamColor(), piece.getPieceType())] &= ~bit;
+        teamBitboards[piece.getTeamColor().ordinal()] &= ~bit;
+        occupied &= ~bit;
+        updateIncremental(piece, square, -1);
+    }
 
-        if (getPiece(move.endPosition()) == null && move.startPosition().getColumn() != move.endPosition().getColumn()) {
-                removePiece(attackedPawn);
+    //sign is 1 when the piece arrives on the square and -1 when it leaves
+    private void updateIncremental(ChessPiece piece, int square, int sign) {
+        long pieceKey = Zobrist.piece(piece, square);
+        key ^= pieceKey;
+        if (piece.getPieceType() == ChessPiece.PieceType.PAWN) {
+            pawnKey ^= pieceKey;
         }
+        pieceSquareScore += sign * PieceSquareTables.score(piece, square);
+        phase += sign * PieceSquareTables.phase(piece);
+    }
+
+    /**
+     * @return bitboard of every square holding a piece of the given color and type
+     */
+    public long getPieces(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return pieceBitboards[Bitboards.pieceIndex(color, type)];
+    }
+
+    /**
+     * @return bitboard of every square holding a piece of the given color
+     */
+    public long getPieces(ChessGame.TeamColor color) {
+        return teamBitboards[color.ordinal()];
+    }
+
+    /**
+     * @return bitboard of every occupied square
+     */
+    public long getOccupied() {
+        return occupied;
+    }
+
+    /**
+     * @return bitboard of the attacker's pieces that attack square, with sliders
+     * blocked by the given occupancy rather than the board's own
+     */
+    public long attackersOf(int square, ChessGame.TeamColor attacker, long occupancy) {
+        long queens = getPieces(attacker, ChessPiece.PieceType.QUEEN);
+        return (Attacks.pawnAttacks(attacker.opponent(), square) & getPieces(attacker, ChessPiece.PieceType.PAWN))
+                | (Attacks.knightAttacks(square) & getPieces(attacker, ChessPiece.PieceType.KNIGHT))
+                | (Attacks.kingAttacks(square) & getPieces(attacker, ChessPiece.PieceType.KING))
+                | (Attacks.bishopAttacks(square, occupancy) & (getPieces(attacker, ChessPiece.PieceType.BISHOP) | queens))
+                | (Attacks.rookAttacks(square, occupancy) & (getPieces(attacker, ChessPiece.PieceType.ROOK) | queens));
+    }
+
+    /**
+     * @return true if any of the attacker's pieces attack the given square
+     */
+    public boolean isSquareAttacked(int square, ChessGame.TeamColor attacker) {
+        return attackersOf(square, attacker, occupied) != 0;
+    }
+
+    /**
+     * Gets the Zobrist key of the pieces on the board. Side to move, castling
+     * rights and en passant are not part of a board, see
+     * {@link ChessGame#positionKey()} for the key of a whole position.
+     *
+     * @return a 64-bit key that changes whenever a piece is added, removed or moved
+     */
+    public long getKey() {
+        computeIncremental();
+        return key;
     }
 
-    private void moveKing(ChessMove move) {
-        addPiece(move.endPosition(), getPiece(move.startPosition()));
-        removePiece(move.startPosition());
-        if (abs(move.startPosition().getColumn() - move.endPosition().getColumn()) > 1) {
-            if (Objects.equals(move.endPosition(), new ChessPosition(1, 3)) && !getPiece(new ChessPosition(1, 1)).hasMoved) {
-                movePiece(new ChessMove(new ChessPosition(1, 1), new ChessPosition(1, 4), null));
-            } else if (Objects.equals(move.endPosition(), new ChessPosition(1, 7)) && !getPiece(new ChessPosition(1, 8)).hasMoved) {
-                movePiece(new ChessMove(new ChessPosition(1, 8), new ChessPosition(1, 6), null));
-            } else if (Objects.equals(move.endPosition(), new ChessPosition(8, 3)) && !getPiece(new ChessPosition(8, 1)).hasMoved) {
-                movePiece(new ChessMove(new ChessPosition(8, 1), new ChessPosition(8, 4), null));
-            } else if (Objects.equals(move.endPosition(), new ChessPosition(8, 7)) && !getPiece(new ChessPosition(8, 8)).hasMoved) {
-                movePiece(new ChessMove(new ChessPosition(8, 8), new ChessPosition(8, 6), null));
+    /**
+     * @return the Zobrist key of the pawns alone, for caching pawn structure
+     */
+    public long getPawnKey() {
+        computeIncremental();
+        return pawnKey;
+    }
+
+    /**
+     * @return the sum of {@link PieceSquareTables#score(ChessPiece, int)} over
+     * every piece, packed as described there
+     */
+    public int getPieceSquareScore() {
+        computeIncremental();
+        return pieceSquareScore;
+    }
+
+    /**
+     * @return the game phase, see {@link PieceSquareTables}; it can pass
+     * {@link PieceSquareTables#MAX_PHASE} after promotions
+     */
+    public int getPhase() {
+        computeIncremental();
+        return phase;
+    }
+
+    private void computeIncremental() {
+        if (incrementalComputed) {
+            return;
+        }
+        key = 0L;
+        pawnKey = 0L;
+        pieceSquareScore = 0;
+        phase = 0;
+        for (int square = 0; square < squares.length; square++) {
+            if (squares[square] != null) {
+                updateIncremental(squares[square], square, 1);
             }
         }
+        incrementalComputed = true;
+    }
+
+    /**
+     * @return the square index of the given team's king, or -1 if it has none
+     */
+    public int findKing(ChessGame.TeamColor color) {
+        long kings = getPieces(color, ChessPiece.PieceType.KING);
+        return kings == 0 ? -1 : Bitboards.lowestSquare(kings);
     }
 
     @Override
@@ -98,11 +356,11 @@ public class ChessBoard {
         StringBuilder boardString = new StringBuilder();
         for(int i = 7; i >=0; i--){
             for (int n = 0; n < 8; n++){
-                if (board[i][n] == null) {
+                if (squares[i * 8 + n] == null) {
                     boardString.append("-");
                 }
                 else {
-                    boardString.append(board[i][n].toString());
+                    boardString.append(squares[i * 8 + n].toString());
                 }
             }
             boardString.append("\n");
@@ -118,7 +376,17 @@ public class ChessBoard {
      * position
      */
     public ChessPiece getPiece(ChessPosition position) {
-        return board[position.getRow()-1][position.getColumn()-1];
+        return squares[Bitboards.square(position)];
+    }
+
+    /**
+     * Gets the chess piece on a square index
+     *
+     * @param square index of the square, 0 (a1) through 63 (h8)
+     * @return Either the piece on the square, or null if it is empty
+     */
+    public ChessPiece getPiece(int square) {
+        return squares[square];
     }
 
     /**
@@ -127,39 +395,41 @@ public class ChessBoard {
      */
     public void resetBoard() {
         //remove all existing pieces from board
-        for (int i = 0; i < 8; i++){
-            for (int n = 0; n < 8; n++){
-                if (board[i][n] != null){
-                    board[i][n] = null;
-                }
-            }
-        }
+        Arrays.fill(squares, null);
+        Arrays.fill(pieceBitboards, 0L);
+        Arrays.fill(teamBitboards, 0L);
+        occupied = 0L;
+        key = 0L;
+        pawnKey = 0L;
+        pieceSquareScore = 0;
+        phase = 0;
+        incrementalComputed = true;
 
         //pawns
         for (int i = 1; i <= 8; i++){
-            addPiece(new ChessPosition(2, i), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
-            addPiece(new ChessPosition(7, i), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
+            addPiece(ChessPosition.of(2, i), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+            addPiece(ChessPosition.of(7, i), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
         }
 
         //white pieces
-        addPiece(new ChessPosition(1, 1), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
-        addPiece(new ChessPosition(1, 2), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
-        addPiece(new ChessPosition(1, 3), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
-        addPiece(new ChessPosition(1, 4), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN));
-        addPiece(new ChessPosition(1, 5), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
-        addPiece(new ChessPosition(1, 6), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
-        addPiece(new ChessPosition(1, 7), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
-        addPiece(new ChessPosition(1, 8), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        addPiece(ChessPosition.of(1, 1), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        addPiece(ChessPosition.of(1, 2), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
+        addPiece(ChessPosition.of(1, 3), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
+        addPiece(ChessPosition.of(1, 4), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.QUEEN));
+        addPiece(ChessPosition.of(1, 5), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        addPiece(ChessPosition.of(1, 6), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.BISHOP));
+        addPiece(ChessPosition.of(1, 7), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
+        addPiece(ChessPosition.of(1, 8), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
 
         //black pieces
-        addPiece(new ChessPosition(8, 1), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
-        addPiece(new ChessPosition(8, 2), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
-        addPiece(new ChessPosition(8, 3), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
-        addPiece(new ChessPosition(8, 4), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN));
-        addPiece(new ChessPosition(8, 5), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
-        addPiece(new ChessPosition(8, 6), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
-        addPiece(new ChessPosition(8, 7), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
-        addPiece(new ChessPosition(8, 8), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
+        addPiece(ChessPosition.of(8, 1), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
+        addPiece(ChessPosition.of(8, 2), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
+        addPiece(ChessPosition.of(8, 3), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
+        addPiece(ChessPosition.of(8, 4), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN));
+        addPiece(ChessPosition.of(8, 5), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        addPiece(ChessPosition.of(8, 6), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP));
+        addPiece(ChessPosition.of(8, 7), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
+        addPiece(ChessPosition.of(8, 8), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
     }
 
     @Override
@@ -168,11 +438,12 @@ public class ChessBoard {
             return false;
         }
         ChessBoard that = (ChessBoard) o;
-        return Objects.deepEquals(board, that.board);
+        return Arrays.equals(squares, that.squares);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(board);
+        long boardKey = getKey();
+        return (int) (boardKey ^ (boardKey >>> 32));
     }
 }
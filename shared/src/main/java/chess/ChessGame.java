@@ -1,5 +1,5 @@
 package chess;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Objects;
 
@@ -10,10 +10,53 @@ import java.util.Objects;
  * signature of the existing methods.
  */
 public class ChessGame {
+    static final int WHITE_KINGSIDE = 1;
+    static final int WHITE_QUEENSIDE = 2;
+    static final int BLACK_KINGSIDE = 4;
+    static final int BLACK_QUEENSIDE = 8;
+    static final int ALL_CASTLING = WHITE_KINGSIDE | WHITE_QUEENSIDE | BLACK_KINGSIDE | BLACK_QUEENSIDE;
+
+    //the castling rights that survive a move to or from each square
+    private static final int[] CASTLING_MASK = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASK, ALL_CASTLING);
+        CASTLING_MASK[Bitboards.square(1, 1)] &= ~WHITE_QUEENSIDE;
+        CASTLING_MASK[Bitboards.square(1, 8)] &= ~WHITE_KINGSIDE;
+        CASTLING_MASK[Bitboards.square(1, 5)] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASK[Bitboards.square(8, 1)] &= ~BLACK_QUEENSIDE;
+        CASTLING_MASK[Bitboards.square(8, 8)] &= ~BLACK_KINGSIDE;
+        CASTLING_MASK[Bitboards.square(8, 5)] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+    }
+
+    static final int FIFTY_MOVE_LIMIT = 100;
+
+    //a1, c1 and so on; bishops all on these or all off them can never give mate
+    private static final long DARK_SQUARES = 0xAA55_AA55_AA55_AA55L;
+
     TeamColor currentTurn = TeamColor.WHITE;
     ChessBoard board = new ChessBoard();
-    ChessBoard previousBoard;
+    private int castlingRights = ALL_CASTLING;
+    //the square a pawn could capture onto en passant, or -1 if the last move was not a double pawn push
+    private int enPassantSquare = -1;
     private boolean gameOver;
+    private GameStatus status;
+
+    //keys of the positions since the last pawn move or capture, oldest first; the
+    //last entry is the current position. Positions before an irreversible move can
+    //never come up again, so nothing older is kept.
+    private long[] positionHistory;
+    private int historySize;
+    private int halfmoveClock;
+    private int fullmoveNumber = 1;
+
+    //castling rights, en passant square and halfmove clock from before each move made
+    //with makeLegalMove, packed into one int per move, so unmakeMove can put them back
+    private transient int[] undoStack;
+    private transient int undoCount;
+
+    //reused by the status checks and move validation, which only need to look at the moves
+    private transient MoveList scratchMoves;
     
     public ChessGame() {
         board.resetBoard();
@@ -22,19 +65,43 @@ public class ChessGame {
     public ChessGame(TeamColor currentTurn, ChessBoard board){
         this.currentTurn = currentTurn;
         this.board = board;
+        castlingRights = castlingRightsFromPlacement(board);
         gameOver = false;
     }
     public ChessGame(TeamColor currentTurn, ChessBoard board, boolean gameOver){
         this.currentTurn = currentTurn;
         this.board = board;
+        castlingRights = castlingRightsFromPlacement(board);
         this.gameOver = gameOver;
     }
+    //the previous board is only used to work out whether en passant is possible
     public ChessGame(TeamColor currentTurn, ChessBoard board, ChessBoard previousBoard, boolean gameOver){
         this.currentTurn = currentTurn;
         this.board = board;
-        this.previousBoard = previousBoard;
+        castlingRights = castlingRightsFromPlacement(board);
+        if (previousBoard != null) {
+            enPassantSquare = enPassantSquareFrom(previousBoard, board, currentTurn);
+        }
         this.gameOver = gameOver;
     }
+    /**
+     * Copies a game's position, clocks and repetition history, so another thread
+     * can work on the copy. Moves made before the copy can't be unmade on it.
+     */
+    public ChessGame(ChessGame game) {
+        currentTurn = game.currentTurn;
+        board = new ChessBoard(game.board);
+        castlingRights = game.castlingRights;
+        enPassantSquare = game.enPassantSquare;
+        gameOver = game.gameOver;
+        status = game.status;
+        if (game.positionHistory != null) {
+            positionHistory = game.positionHistory.clone();
+        }
+        historySize = game.historySize;
+        halfmoveClock = game.halfmoveClock;
+        fullmoveNumber = game.fullmoveNumber;
+    }
     /**
      * @return Which team's turn it is
      */
@@ -48,6 +115,7 @@ public class ChessGame {
      */
     public void setTeamTurn(TeamColor team) {
         currentTurn = team;
+        status = null;
     }
 
     private void flipTeamTurn(){
@@ -56,120 +124,306 @@ public class ChessGame {
     }
 
     public boolean isGameOver() {
-        return isInCheckmate(TeamColor.WHITE) || isInCheckmate(TeamColor.BLACK) || isInStalemate(currentTurn) || gameOver;
+        return getGameStatus().isOver();
     }
 
-    public void setGameOver(boolean gameOver){ this.gameOver = gameOver;}
+    /**
+     * @return true if the game was ended by {@link #setGameOver(boolean)}, such as
+     * by a player resigning, rather than by the position on the board
+     */
+    public boolean isResigned() {
+        return gameOver;
+    }
 
-    public enum TeamColor { WHITE, BLACK }
+    public void setGameOver(boolean gameOver){
+        this.gameOver = gameOver;
+        status = null;
+    }
 
     /**
-     * Gets a valid moves for a piece at the given location
+     * Gets the status of the current position from the point of view of the team
+     * whose turn it is. The status is computed at most once per position and is
+     * cleared whenever a move is made or the board or turn is replaced.
      *
-     * @param startPosition the piece to get valid moves for
-     * @return Set of valid moves for requested piece, or null if no piece at
-     * startPosition
+     * @return the status of the game
      */
-    public Collection<ChessMove> validMoves(ChessPosition startPosition) {
-        ChessBoard currentBoard = new ChessBoard(board);
-        ArrayList<ChessMove> goodMoves = new ArrayList<>();
-        for (ChessMove move : board.getPiece(startPosition).pieceMoves(board, startPosition)){
-            try {
-                tryMove(move);
-                if (!isInCheck(currentTurn)) { goodMoves.add(move); }
-                board = new ChessBoard(currentBoard);
-            } catch (InvalidMoveException ex) {
-                board = new ChessBoard(currentBoard);
+    public GameStatus getGameStatus() {
+        if (status == null) {
+            status = computeGameStatus();
+        }
+        return status;
+    }
+
+    private GameStatus computeGameStatus() {
+        boolean inCheck = isInCheck(currentTurn);
+        boolean canMove = hasValidMove(currentTurn);
+        if (!canMove) {
+            return inCheck ? GameStatus.CHECKMATE : GameStatus.STALEMATE;
+        }
+        if (gameOver) {
+            return GameStatus.RESIGNED;
+        }
+        if (isThreefoldRepetition()) {
+            return GameStatus.REPETITION;
+        }
+        if (halfmoveClock >= FIFTY_MOVE_LIMIT) {
+            return GameStatus.FIFTY_MOVES;
+        }
+        if (hasInsufficientMaterial()) {
+            return GameStatus.INSUFFICIENT_MATERIAL;
+        }
+        return inCheck ? GameStatus.CHECK : GameStatus.ONGOING;
+    }
+
+    /**
+     * Gets the number of moves made since the last pawn move or capture
+     *
+     * @return the halfmove clock, in plies
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * Gets the number of plies played, counted from the fullmove number and the
+     * side to move, so it increases by one with every move
+     *
+     * @return the ply of the current position, 0 for white's first move
+     */
+    public int getPly() {
+        return (fullmoveNumber - 1) * 2 + (currentTurn == TeamColor.BLACK ? 1 : 0);
+    }
+
+    //same side to move only, so step back two plies at a time, stopping at the last irreversible move
+    private boolean isThreefoldRepetition() {
+        if (historySize < 5 || halfmoveClock < 4) {
+            return false;
+        }
+        long current = positionHistory[historySize - 1];
+        int oldest = Math.max(0, historySize - 1 - halfmoveClock);
+        int repetitions = 1;
+        for (int i = historySize - 3; i >= oldest; i -= 2) {
+            if (positionHistory[i] == current && ++repetitions == 3) {
+                return true;
             }
         }
-        if (board.getPiece(startPosition).getPieceType() == ChessPiece.PieceType.KING) {
-            goodMoves.addAll(checkCastling(board.getPiece(startPosition).getTeamColor()));
+        return false;
+    }
+
+    /**
+     * Determines if the current position has come up before, with the same side
+     * to move, since the last pawn move or capture. A search can treat such a
+     * position as drawn, since whichever side benefits could repeat it again.
+     *
+     * @return true if the position is a repetition
+     */
+    public boolean isRepeated() {
+        if (historySize < 5 || halfmoveClock < 4) {
+            return false;
         }
-        if (board.getPiece(startPosition).getPieceType() == ChessPiece.PieceType.PAWN){
-            goodMoves.addAll(enPassant(board.getPiece(startPosition).getTeamColor()));
+        long current = positionHistory[historySize - 1];
+        int oldest = Math.max(0, historySize - 1 - halfmoveClock);
+        for (int i = historySize - 5; i >= oldest; i -= 2) {
+            if (positionHistory[i] == current) {
+                return true;
+            }
         }
-        return goodMoves;
+        return false;
     }
 
-    private Collection<ChessMove> enPassant(TeamColor teamColor) {
-        ArrayList<ChessMove> possibleEnPassants = new ArrayList<>();
-        int row;
-        int moveRow;
-        if(teamColor == TeamColor.WHITE) {
-            row = 5;
-            moveRow = 6;
+    /**
+     * Determines if neither team has the material to checkmate by any series of
+     * legal moves: kings alone, a king and one knight or bishop against a lone
+     * king, or kings and bishops that all stand on squares of one color.
+     *
+     * @return true if the position is a dead draw by material
+     */
+    public boolean hasInsufficientMaterial() {
+        long majorsAndPawns = 0;
+        long knights = 0;
+        long bishops = 0;
+        for (TeamColor color : TeamColor.values()) {
+            majorsAndPawns |= board.getPieces(color, ChessPiece.PieceType.QUEEN)
+                    | board.getPieces(color, ChessPiece.PieceType.ROOK)
+                    | board.getPieces(color, ChessPiece.PieceType.PAWN);
+            knights |= board.getPieces(color, ChessPiece.PieceType.KNIGHT);
+            bishops |= board.getPieces(color, ChessPiece.PieceType.BISHOP);
+        }
+        if (majorsAndPawns != 0) {
+            return false;
+        }
+        if (Long.bitCount(knights | bishops) <= 1) {
+            return true;
+        }
+        return knights == 0 && ((bishops & DARK_SQUARES) == 0 || (bishops & ~DARK_SQUARES) == 0);
+    }
+
+    //records the position after a move, dropping the history if the move can't be undone
+    private void recordPosition(boolean irreversible) {
+        if (irreversible) {
+            halfmoveClock = 0;
+            historySize = 0;
         } else {
-            row = 4;
-            moveRow = 3;
+            halfmoveClock++;
         }
+        appendPosition();
+    }
 
-        for (int col = 1; col <= 8; col++){
-            ChessPiece thisPiece = board.getPiece(new ChessPosition(row, col));
-            if (thisPiece == null || thisPiece.getPieceType() != ChessPiece.PieceType.PAWN || thisPiece.getTeamColor() != teamColor) { continue; }
+    private void appendPosition() {
+        if (positionHistory == null) {
+            positionHistory = new long[16];
+        } else if (historySize == positionHistory.length) {
+            positionHistory = Arrays.copyOf(positionHistory, historySize * 2);
+        }
+        positionHistory[historySize++] = positionKey();
+    }
 
-            if(checkPassantRight(new ChessPosition(row, col), teamColor)){
-                possibleEnPassants.add(new ChessMove(new ChessPosition(row, col), new ChessPosition(moveRow, col+1), null));
-            }
-            if (checkPassantLeft(new ChessPosition(row, col), teamColor)) {
-                possibleEnPassants.add(new ChessMove(new ChessPosition(row, col), new ChessPosition(moveRow, col-1), null));
+    /**
+     * The state of a game. CHECK, CHECKMATE and STALEMATE describe the team
+     * whose turn it is. REPETITION is a draw by the same position coming up
+     * three times, FIFTY_MOVES a draw after fifty moves by each side
+     * without a pawn move or capture, and INSUFFICIENT_MATERIAL a draw because
+     * neither side has the pieces left to mate.
+     */
+    public enum GameStatus {
+        ONGOING,
+        CHECK,
+        CHECKMATE,
+        STALEMATE,
+        RESIGNED,
+        REPETITION,
+        FIFTY_MOVES,
+        INSUFFICIENT_MATERIAL;
+
+        public boolean isOver() {
+            return this != ONGOING && this != CHECK;
+        }
+    }
 
-            }
+    public enum TeamColor {
+        WHITE,
+        BLACK;
+
+        public TeamColor opponent() {
+            return this == WHITE ? BLACK : WHITE;
+        }
+    }
+
+    /**
+     * Gets a valid moves for a piece at the given location
+     *
+     * @param startPosition the piece to get valid moves for
+     * @return Set of valid moves for requested piece, or null if no piece at
+     * startPosition
+     */
+    public Collection<ChessMove> validMoves(ChessPosition startPosition) {
+        ChessPiece piece = board.getPiece(startPosition);
+        if (piece == null) {
+            return null;
         }
+        MoveList moves = new MoveList(32);
+        generateMoves(piece.getTeamColor(), Bitboards.bit(Bitboards.square(startPosition)), moves);
+        return moves.toChessMoves();
+    }
 
-        return possibleEnPassants;
+    /**
+     * Gets every legal move for the team whose turn it is
+     *
+     * @return all legal moves, empty if the team is checkmated or stalemated
+     */
+    public Collection<ChessMove> legalMoves() {
+        return legalMoves(currentTurn);
     }
 
-    boolean checkPassantRight(ChessPosition pawnPosition, TeamColor teamColor){
-        return pawnMovedTwoSpaces(pawnPosition.getColumn()+1, teamColor);
+    private Collection<ChessMove> legalMoves(TeamColor teamColor) {
+        MoveList moves = new MoveList();
+        generateMoves(teamColor, -1L, moves);
+        return moves.toChessMoves();
     }
 
+    /**
+     * Fills a list with every legal move for the team whose turn it is, packed as
+     * described in {@link Move}. The list is cleared first, so one list can be
+     * reused from position to position without allocating.
+     *
+     * @param moves the list to fill
+     */
+    public void legalMoves(MoveList moves) {
+        moves.clear();
+        generateMoves(currentTurn, -1L, moves);
+    }
 
-    boolean checkPassantLeft(ChessPosition pawnPosition, TeamColor teamColor){
-        return pawnMovedTwoSpaces(pawnPosition.getColumn()-1, teamColor);
+    private void generateMoves(TeamColor teamColor, long fromMask, MoveList moves) {
+        MoveGenerator.generate(board, teamColor, castlingRights, enPassantSquare(teamColor), fromMask, moves);
     }
 
-    boolean pawnMovedTwoSpaces(int pawnColumn, TeamColor teamColor){
-        if (pawnColumn < 1 || pawnColumn > 8) { return false; }
-        ChessPosition thisPawnPosition;
-        ChessPosition pawnStartPosition;
-        ChessPiece.PieceType pawn = ChessPiece.PieceType.PAWN;
+    private MoveList scratchMoves() {
+        if (scratchMoves == null) {
+            scratchMoves = new MoveList();
+        }
+        scratchMoves.clear();
+        return scratchMoves;
+    }
 
-        if (teamColor == TeamColor.WHITE) {
-            thisPawnPosition = new ChessPosition(5, pawnColumn);
-            pawnStartPosition = new ChessPosition(7, pawnColumn);
-        } else {
-            thisPawnPosition = new ChessPosition(4, pawnColumn);
-            pawnStartPosition = new ChessPosition(2, pawnColumn);
+    //only the opponent of the pawn that just moved can capture en passant: white onto row 6, black onto row 3
+    private int enPassantSquare(TeamColor teamColor) {
+        if (enPassantSquare < 0 || Bitboards.row(enPassantSquare) != (teamColor == TeamColor.WHITE ? 6 : 3)) {
+            return -1;
         }
+        return enPassantSquare;
+    }
 
-        if (board.getPiece(thisPawnPosition) == null || previousBoard.getPiece(pawnStartPosition) == null) {
-            return false;
+    //with no move history to go on, castling is allowed while the king and the rook are on their home squares
+    private static int castlingRightsFromPlacement(ChessBoard board) {
+        int rights = 0;
+        if (isOnSquare(board, 1, 5, TeamColor.WHITE, ChessPiece.PieceType.KING)) {
+            if (isOnSquare(board, 1, 8, TeamColor.WHITE, ChessPiece.PieceType.ROOK)) { rights |= WHITE_KINGSIDE; }
+            if (isOnSquare(board, 1, 1, TeamColor.WHITE, ChessPiece.PieceType.ROOK)) { rights |= WHITE_QUEENSIDE; }
         }
-        ChessPiece pawnAtStart = previousBoard.getPiece(pawnStartPosition);
-        if (board.getPiece(thisPawnPosition).getPieceType() == pawn && board.getPiece(thisPawnPosition).getTeamColor() != teamColor){
-            if (pawnAtStart.getPieceType() == pawn && previousBoard.getPiece(pawnStartPosition).getTeamColor() != teamColor) {
-                return board.getPiece(pawnStartPosition) == null && previousBoard.getPiece(thisPawnPosition) == null;
-            }
+        if (isOnSquare(board, 8, 5, TeamColor.BLACK, ChessPiece.PieceType.KING)) {
+            if (isOnSquare(board, 8, 8, TeamColor.BLACK, ChessPiece.PieceType.ROOK)) { rights |= BLACK_KINGSIDE; }
+            if (isOnSquare(board, 8, 1, TeamColor.BLACK, ChessPiece.PieceType.ROOK)) { rights |= BLACK_QUEENSIDE; }
         }
+        return rights;
+    }
 
-        return false;
+    private static boolean isOnSquare(ChessBoard board, int row, int col, TeamColor color, ChessPiece.PieceType type) {
+        ChessPiece piece = board.getPiece(Bitboards.square(row, col));
+        return piece != null && piece.getTeamColor() == color && piece.getPieceType() == type;
     }
 
-    private void tryMove(ChessMove move) throws InvalidMoveException {
-        if(board.getPiece(move.startPosition()) == null) { throw new InvalidMoveException("There's no piece there!"); }
-//        if (board.getPiece(move.startPosition()).getPieceType() != ChessPiece.PieceType.KING) {
-            Collection<ChessMove> moveList = board.getPiece(move.startPosition()).pieceMoves(board, move.startPosition());
-            moveList.addAll(enPassant(getTeamTurn()));
-            moveList.addAll(checkCastling(getTeamTurn()));
-            if (!moveList.contains(move)) {
-                throw new InvalidMoveException("Invalid move!");
+    //looks for an opponent pawn that went from its start row to two rows ahead between the two boards
+    private static int enPassantSquareFrom(ChessBoard previousBoard, ChessBoard board, TeamColor teamToMove) {
+        TeamColor pawnColor = teamToMove.opponent();
+        int startRow = pawnColor == TeamColor.WHITE ? 2 : 7;
+        int landingRow = pawnColor == TeamColor.WHITE ? 4 : 5;
+        int skippedRow = pawnColor == TeamColor.WHITE ? 3 : 6;
+        ChessPiece pawn = new ChessPiece(pawnColor, ChessPiece.PieceType.PAWN);
+        for (int col = 1; col <= 8; col++) {
+            int start = Bitboards.square(startRow, col);
+            int landing = Bitboards.square(landingRow, col);
+            if (pawn.equals(previousBoard.getPiece(start)) && previousBoard.getPiece(landing) == null
+                    && board.getPiece(start) == null && pawn.equals(board.getPiece(landing))) {
+                return Bitboards.square(skippedRow, col);
             }
-//        }
+        }
+        return -1;
+    }
 
-        board.movePiece(move);
-        if(isInCheck(board.getPiece(move.endPosition()).getTeamColor())) {
+    private static boolean isOnBoard(ChessPosition position) {
+        return position != null && ChessPiece.checkRowAndCol(position.getRow(), position.getColumn());
+    }
 
-            throw new InvalidMoveException("That move puts you in check!");
+    private void validateMove(ChessMove move) throws InvalidMoveException {
+        ChessPiece piece = board.getPiece(move.startPosition());
+        if(piece == null) { throw new InvalidMoveException("There's no piece there!"); }
+        MoveList moves = scratchMoves();
+        generateMoves(piece.getTeamColor(), Bitboards.bit(Bitboards.square(move.startPosition())), moves);
+        if (moves.find(move) == Move.NONE) {
+            if (piece.pieceMoves(board, move.startPosition()).contains(move)) {
+                throw new InvalidMoveException("That move puts you in check!");
+            }
+            throw new InvalidMoveException("Invalid move!");
         }
     }
 
@@ -181,178 +435,123 @@ public class ChessGame {
      */
 
     public void makeMove(ChessMove move) throws InvalidMoveException {
-        if (gameOver){
+        if (gameOver || getGameStatus().isOver()){
             throw new InvalidMoveException("Game is over!");
         }
-        ChessBoard willBePreviousBoard = new ChessBoard(board);
-        tryMove(move);
-        if(board.getPiece(move.endPosition()).getTeamColor() != getTeamTurn()) {
+        if (!isOnBoard(move.startPosition()) || !isOnBoard(move.endPosition())) {
+            throw new InvalidMoveException("That square isn't on the board!");
+        }
+        ChessPiece piece = board.getPiece(move.startPosition());
+        if (piece != null && piece.getTeamColor() != getTeamTurn()) {
             throw new InvalidMoveException("That's not your piece!");
         }
+        validateMove(move);
+        //nothing changes until the move is known to be legal; seeding the history doesn't touch
+        //the clock, which a game loaded from a FEN or a snapshot already has
+        if (historySize == 0) {
+            appendPosition();
+        }
+        boolean irreversible = piece.getPieceType() == ChessPiece.PieceType.PAWN
+                || board.getPiece(move.endPosition()) != null;
+        board.movePiece(move);
+        int from = Bitboards.square(move.startPosition());
+        int to = Bitboards.square(move.endPosition());
+        castlingRights &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        enPassantSquare = piece.getPieceType() == ChessPiece.PieceType.PAWN && Math.abs(to - from) == 16
+                ? (from + to) / 2 : -1;
+        if (currentTurn == TeamColor.BLACK) {
+            fullmoveNumber++;
+        }
         flipTeamTurn();
-        board.getPiece(move.endPosition()).hasMoved = true;
-        previousBoard = willBePreviousBoard;
+        status = null;
+        recordPosition(irreversible);
     }
 
     /**
-     * Determines if the given team is in check
+     * Makes a move without checking it, so it can be taken back with
+     * {@link #unmakeMove()}. This is the fast path for searching and counting
+     * positions; the move must come from {@link #legalMoves()}. Positions reached
+     * this way are kept in the history, so repetitions are still detected.
      *
-     * @param teamColor which team to check for check
-     * @return True if the specified team is in check
+     * @param move a legal move for the team whose turn it is
      */
-    public boolean isInCheck(TeamColor teamColor) {
-        try {
-            ChessPosition kingPos = findKing(teamColor);
-            return checkForAttackers(teamColor, kingPos);
-        } catch (Exception ex){
-            return false;
-        }
-    }
-
-    private boolean checkForAttackers(TeamColor teamColor, ChessPosition myPos){
-        return checkKing(myPos) || checkDiagonally(teamColor, myPos) || checkCardinals(teamColor, myPos) || checkKnight(teamColor, myPos);
+    public void makeLegalMove(ChessMove move) {
+        makeLegalMove(Move.of(Bitboards.square(move.startPosition()), Bitboards.square(move.endPosition()),
+                Move.promotionFlags(move.promotionPiece())));
     }
 
-    private boolean checkKing(ChessPosition myPos) {
-        int row = myPos.getRow();
-        int col = myPos.getColumn();
-
-        var piecesFound = new ArrayList<ChessPiece>();
-
-        for (int rowOffset : new int[] {-1,0,1}){
-            for (int colOffset : new int[] {-1,0,1}){
-                if (rowOffset == 0 && colOffset == 0){continue;}
-                if (ChessPiece.checkRowAndCol(row + rowOffset, col + colOffset)){
-                    piecesFound.add(board.getPiece(new ChessPosition(row+rowOffset, col+colOffset)));
-                }
-            }
+    /**
+     * Same as {@link #makeLegalMove(ChessMove)} for a move packed as described in
+     * {@link Move}. Only the squares and the promotion piece are read, so the
+     * other flags don't have to be set.
+     *
+     * @param move a legal move for the team whose turn it is
+     */
+    public void makeLegalMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        ChessPiece piece = board.getPiece(from);
+        boolean irreversible = piece.getPieceType() == ChessPiece.PieceType.PAWN || board.getPiece(to) != null;
+        if (historySize == 0) {
+            appendPosition();
         }
-        for (ChessPiece piece : piecesFound){
-            if (piece != null && piece.getPieceType() == ChessPiece.PieceType.KING) {return true;}
+        pushUndoState();
+
+        board.makeMove(move);
+        castlingRights &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        enPassantSquare = piece.getPieceType() == ChessPiece.PieceType.PAWN && Math.abs(to - from) == 16
+                ? (from + to) / 2 : -1;
+        halfmoveClock = irreversible ? 0 : halfmoveClock + 1;
+        if (currentTurn == TeamColor.BLACK) {
+            fullmoveNumber++;
         }
-        return false;
+        flipTeamTurn();
+        status = null;
+        appendPosition();
     }
 
-    private boolean checkDiagonally(TeamColor teamColor, ChessPosition myPos){
-        int row;
-        int col;
-        ArrayList<ChessPiece> piecesFound = new ArrayList<>();
-
-        for (int rowOffset : new int[] {-1,1}){
-            for (int colOffset : new int[] {-1,1}){
-                row = myPos.getRow() + rowOffset;
-                col = myPos.getColumn() + colOffset;
-                while (ChessPiece.checkRowAndCol(row, col)){
-                    if(board.getPiece(new ChessPosition(row, col)) != null){
-                        piecesFound.add(board.getPiece(new ChessPosition(row, col)));
-                        break;
-                    } else {
-                        row += rowOffset;
-                        col += colOffset;
-                    }
-                }
-            }
-        }
-
-        //check to see if any collected pieces put the king in danger
-        row = myPos.getRow();
-        col = myPos.getColumn();
-        int pawnRowOffset;
-
-        if(TeamColor.WHITE == teamColor){
-            pawnRowOffset = 1;
-        } else {
-            pawnRowOffset = -1;
-        }
-
-        for (var piece : piecesFound){
-            if (piece.getTeamColor() != teamColor){
-                switch (piece.getPieceType()){
-                    case QUEEN, BISHOP:
-                        return true;
-                    case PAWN:
-                        if (board.getPiece(new ChessPosition(row + pawnRowOffset, col + 1)) == piece ||
-                                board.getPiece(new ChessPosition(row + pawnRowOffset, col - 1)) == piece) {
-                            return true;
-                        }
-                }
-            }
+    /**
+     * Takes back the most recent move made with {@link #makeLegalMove(ChessMove)}
+     */
+    public void unmakeMove() {
+        int state = undoStack[--undoCount];
+        board.unmakeMove();
+        castlingRights = state & 0xF;
+        enPassantSquare = ((state >>> 4) & 0x7F) - 1;
+        halfmoveClock = state >>> 11;
+        flipTeamTurn();
+        if (currentTurn == TeamColor.BLACK) {
+            fullmoveNumber--;
         }
-
-        //found no enemy pieces in striking range
-        return false;
+        status = null;
+        historySize--;
     }
 
-    private boolean checkCardinals(TeamColor teamColor, ChessPosition myPos){
-        int row = myPos.getRow();
-        int col = myPos.getColumn();
-        ArrayList<ChessPiece> piecesFound = new ArrayList<>();
-        for (int offset : new int[] {-1,1}){
-            row += offset;
-            while (ChessPiece.checkRowAndCol(row, col)){
-                if (board.getPiece(new ChessPosition(row, col)) != null){
-                    piecesFound.add(board.getPiece(new ChessPosition(row, col)));
-                    break;
-                } else {
-                    row += offset;
-                }
-            }
-            row = myPos.getRow();
-            col = myPos.getColumn() + offset;
-            while (ChessPiece.checkRowAndCol(row, col)){
-                if(board.getPiece(new ChessPosition(row, col)) != null){
-                    piecesFound.add(board.getPiece(new ChessPosition(row, col)));
-                    break;
-                } else {
-                    col += offset;
-                }
-            }
-            col = myPos.getColumn();
-        }
-        //check to see if any collected pieces put the king in danger
-        for (var piece : piecesFound){
-            if ((piece.getPieceType() == ChessPiece.PieceType.ROOK || piece.getPieceType() == ChessPiece.PieceType.QUEEN)
-                    && piece.getTeamColor() != teamColor){
-                return true;
-            }
+    private void pushUndoState() {
+        if (undoStack == null) {
+            undoStack = new int[16];
+        } else if (undoCount == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, undoCount * 2);
         }
-        return false;
+        undoStack[undoCount++] = (halfmoveClock << 11) | ((enPassantSquare + 1) << 4) | castlingRights;
     }
 
-    private boolean checkKnight(TeamColor teamColor, ChessPosition myPos){
-        int row = myPos.getRow();
-        int col = myPos.getColumn();
-        //list all possible locations for an enemy knight to attack the King from
-        var possibleKnights = new ArrayList<ChessPiece>();
-        for (int rowOffset : new int[] {-2, -1, 1, 2}) {
-            for (int colOffset : new int[] {-2, -1, 1, 2}){
-                if (Math.abs(colOffset) == Math.abs(rowOffset)) {continue;}
-                if (ChessPiece.checkRowAndCol(row+rowOffset, col+colOffset)) {
-                    possibleKnights.add(board.getPiece(new ChessPosition(row + rowOffset, col + colOffset)));
-                }
-            }
-        }
-        //make sure none of those locations has an enemy knight
-        for (var piece : possibleKnights){
-            if (piece == null) {continue;}
-            if (piece.getTeamColor() != teamColor && piece.getPieceType() == ChessPiece.PieceType.KNIGHT){
-                return true;
-            }
-        }
-        return false;
+    /**
+     * Determines if the given team is in check
+     *
+     * @param teamColor which team to check for check
+     * @return True if the specified team is in check
+     */
+    public boolean isInCheck(TeamColor teamColor) {
+        int kingSquare = board.findKing(teamColor);
+        return kingSquare >= 0 && board.isSquareAttacked(kingSquare, teamColor.opponent());
     }
 
     public boolean isInCheckmate(TeamColor teamColor) {
-        for (int row = 1; row <=8; row++){
-            for (int col = 1; col <=8; col++){
-                ChessPosition thisPosition = new ChessPosition(row, col);
-                if (!(board.getPiece(thisPosition) == null) && board.getPiece(thisPosition).getTeamColor() == teamColor) {
-                    Collection<ChessMove> potentialMoves = validMoves(thisPosition);
-                    if (!potentialMoves.isEmpty()) {return false;}
-                }
-            }
+        if (teamColor == currentTurn) {
+            return getGameStatus() == GameStatus.CHECKMATE;
         }
-        return true;
+        return isInCheck(teamColor) && !hasValidMove(teamColor);
     }
 
     /**
@@ -363,116 +562,223 @@ public class ChessGame {
      * @return True if the specified team is in stalemate, otherwise false
      */
     public boolean isInStalemate(TeamColor teamColor) {
-        if (isInCheck(teamColor)) {return false;}
-        for(int row = 1; row <= 8; row++){
-            for (int col = 1; col <= 8; col++){
-                var thisPos = new ChessPosition(row, col);
-                if(board.getPiece(thisPos) != null && board.getPiece(thisPos).getTeamColor() == teamColor && !validMoves(thisPos).isEmpty()) {
-                    return false;
-                }
-            }
+        if (teamColor == currentTurn) {
+            return getGameStatus() == GameStatus.STALEMATE;
         }
-        gameOver = true;
-        return true;
+        return !isInCheck(teamColor) && !hasValidMove(teamColor);
     }
 
-    private Collection<ChessMove> checkCastling (TeamColor teamColor){
-        ChessBoard currentBoard = new ChessBoard(board);
-        ArrayList<ChessMove> validCastlingMoves = new ArrayList<>();
-        ChessPosition kingPos;
-        try {
-            kingPos = findKing(teamColor);
-        } catch (Exception ex) {
-            return validCastlingMoves;
-        }
-        if (board.getPiece(kingPos).hasMoved || kingPos.getColumn() != 5) {
-            return validCastlingMoves;
+    private boolean hasValidMove(TeamColor teamColor) {
+        MoveList moves = scratchMoves();
+        generateMoves(teamColor, -1L, moves);
+        return !moves.isEmpty();
+    }
+
+    /**
+     * Gets the Zobrist key of the current position: the pieces, the team to move,
+     * the castling rights and the en passant file. The en passant file only counts
+     * when a pawn of the team to move could actually capture onto it, so positions
+     * that play the same get the same key.
+     *
+     * @return a 64-bit key identifying the position
+     */
+    public long positionKey() {
+        long key = board.getKey() ^ Zobrist.castling(castlingRights);
+        if (currentTurn == TeamColor.BLACK) {
+            key ^= Zobrist.blackToMove();
         }
-        if ((teamColor == TeamColor.BLACK && kingPos.getRow() != 8) || (teamColor == TeamColor.WHITE && kingPos.getRow() != 1)) {
-            return validCastlingMoves;
+        if (enPassantSquare >= 0 && (Attacks.pawnAttacks(currentTurn.opponent(), enPassantSquare)
+                & board.getPieces(currentTurn, ChessPiece.PieceType.PAWN)) != 0) {
+            key ^= Zobrist.enPassant(Bitboards.column(enPassantSquare));
         }
-        ChessPosition queensRookPos = new ChessPosition(kingPos.getRow(), 1);
-        ChessPosition kingsRookPos = new ChessPosition(kingPos.getRow(), 8);
+        return key;
+    }
 
-        if (board.getPiece(queensRookPos) != null && !board.getPiece(queensRookPos).hasMoved) {
-            boolean queenSideClear = true;
-            for (int i = 1; i < 4; i++){
-                if (board.getPiece(new ChessPosition(kingPos.getRow(), kingPos.getColumn()-i)) != null){
-                    queenSideClear = false;
-                    break;
-                }
-            }
-            if (queenSideClear && !isInCheck(getTeamTurn())) {
-                boolean queenCastleIsLegal = false;
-                for (int i = 1; i < 3; i++) {
-                    var move = new ChessMove(kingPos, new ChessPosition(kingPos.getRow(), kingPos.getColumn()-i), null);
-                    board.movePiece(move);
-                    if(isInCheck(board.getPiece(move.endPosition()).getTeamColor())) {
-                        board = new ChessBoard(currentBoard);
-                        queenCastleIsLegal = false;
-                        break;
+    /**
+     * Gets the keys of the positions since the last pawn move or capture, oldest
+     * first and ending with the current position. This is everything repetition
+     * detection needs, for storing alongside a {@link #toFen() FEN}.
+     *
+     * @return a copy of the position history, possibly empty
+     */
+    public long[] getPositionHistory() {
+        return positionHistory == null ? new long[0] : Arrays.copyOf(positionHistory, historySize);
+    }
+
+    /**
+     * Replaces the position history, as returned by {@link #getPositionHistory()}
+     *
+     * @param history position keys, oldest first, ending with the current position
+     */
+    public void setPositionHistory(long[] history) {
+        positionHistory = Arrays.copyOf(history, Math.max(history.length, 16));
+        historySize = history.length;
+        status = null;
+    }
+
+    int getCastlingRights() {
+        return castlingRights;
+    }
+
+    int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    //for readers that rebuild a game from stored state, see GameCodec
+    void restoreState(int castlingRights, int enPassantSquare, int halfmoveClock, int fullmoveNumber) {
+        this.castlingRights = castlingRights;
+        this.enPassantSquare = enPassantSquare;
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+        status = null;
+    }
+
+    /**
+     * Reads a game from Forsyth-Edwards Notation: piece placement, team to move,
+     * castling rights, en passant square and the two move clocks. The clocks may
+     * be left off, in which case they start at 0 and 1.
+     *
+     * @param fen the position in FEN
+     * @return a game at that position
+     * @throws IllegalArgumentException if fen is not valid FEN
+     */
+    public static ChessGame fromFen(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length != 4 && fields.length != 6) {
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+        ChessBoard board = new ChessBoard();
+        String[] rows = fields[0].split("/");
+        if (rows.length != 8) {
+            throw new IllegalArgumentException("Invalid FEN placement: " + fields[0]);
+        }
+        for (int i = 0; i < 8; i++) {
+            int row = 8 - i;
+            int col = 1;
+            for (char c : rows[i].toCharArray()) {
+                if (c >= '1' && c <= '8') {
+                    col += c - '0';
+                } else {
+                    ChessPiece piece = ChessPiece.fromSymbol(c);
+                    if (piece == null || col > 8) {
+                        throw new IllegalArgumentException("Invalid FEN placement: " + fields[0]);
                     }
-                    board = new ChessBoard(currentBoard);
-                    queenCastleIsLegal = true;
-                }
-                if (queenCastleIsLegal) {
-                    validCastlingMoves.add(new ChessMove(kingPos, new ChessPosition(kingPos.getRow(), kingPos.getColumn()-2), null));
+                    board.addPiece(ChessPosition.of(row, col++), piece);
                 }
             }
+            if (col != 9) {
+                throw new IllegalArgumentException("Invalid FEN placement: " + fields[0]);
+            }
         }
 
-        if (board.getPiece(kingsRookPos) != null && !board.getPiece(kingsRookPos).hasMoved) {
-            boolean kingSideClear = true;
-            for (int i = 1; i < 3; i++){
-                if (board.getPiece(new ChessPosition(kingPos.getRow(), kingPos.getColumn()+i)) != null){
-                    kingSideClear = false;
-                }
+        TeamColor turn = switch (fields[1]) {
+            case "w" -> TeamColor.WHITE;
+            case "b" -> TeamColor.BLACK;
+            default -> throw new IllegalArgumentException("Invalid FEN team to move: " + fields[1]);
+        };
+        ChessGame game = new ChessGame(turn, board);
+
+        int rights = 0;
+        if (!fields[2].equals("-")) {
+            for (char c : fields[2].toCharArray()) {
+                rights |= switch (c) {
+                    case 'K' -> WHITE_KINGSIDE;
+                    case 'Q' -> WHITE_QUEENSIDE;
+                    case 'k' -> BLACK_KINGSIDE;
+                    case 'q' -> BLACK_QUEENSIDE;
+                    default -> throw new IllegalArgumentException("Invalid FEN castling rights: " + fields[2]);
+                };
             }
+        }
+        //a right is only usable while its king and rook are still in place
+        game.castlingRights = rights & castlingRightsFromPlacement(board);
 
-            if (kingSideClear && !isInCheck(getTeamTurn())) {
-                boolean kingCastleIsLegal = false;
-                for (int i = 1; i < 3; i++) {
-                    var move = new ChessMove(kingPos, new ChessPosition(kingPos.getRow(), kingPos.getColumn()+i), null);
-                    board.movePiece(move);
-                    if(isInCheck(board.getPiece(move.endPosition()).getTeamColor())) {
-                        board = new ChessBoard(currentBoard);
-                        kingCastleIsLegal = false;
-                        break;
-                    }
-                    board = new ChessBoard(currentBoard);
-                    kingCastleIsLegal = true;
-                }
-                if (kingCastleIsLegal) {
-                    validCastlingMoves.add(new ChessMove(kingPos, new ChessPosition(kingPos.getRow(), kingPos.getColumn() + 2), null));
-                }
+        if (!fields[3].equals("-")) {
+            if (fields[3].length() != 2 || fields[3].charAt(0) < 'a' || fields[3].charAt(0) > 'h'
+                    || (fields[3].charAt(1) != '3' && fields[3].charAt(1) != '6')) {
+                throw new IllegalArgumentException("Invalid FEN en passant square: " + fields[3]);
             }
+            game.enPassantSquare = Bitboards.square(fields[3].charAt(1) - '0', fields[3].charAt(0) - 'a' + 1);
         }
 
-        return validCastlingMoves;
+        if (fields.length == 6) {
+            try {
+                game.halfmoveClock = Integer.parseInt(fields[4]);
+                game.fullmoveNumber = Integer.parseInt(fields[5]);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid FEN move clocks: " + fields[4] + " " + fields[5]);
+            }
+            if (game.halfmoveClock < 0 || game.fullmoveNumber < 1) {
+                throw new IllegalArgumentException("Invalid FEN move clocks: " + fields[4] + " " + fields[5]);
+            }
+        }
+        return game;
     }
 
-    private ChessPosition findKing(TeamColor teamColor) throws Exception {
-        ChessPosition kingPos = null;
-        for (int col = 1; col <= 8; col++) {
-            for (int row = 1; row <= 8; row++) {
-                var thisPiece = board.getPiece(new ChessPosition(row, col));
-                if (thisPiece == null) {continue;}
-                if (thisPiece.getPieceType() == ChessPiece.PieceType.KING && thisPiece.getTeamColor() == teamColor) {
-                    kingPos = new ChessPosition(row, col);
+    /**
+     * Writes the current position in Forsyth-Edwards Notation
+     *
+     * @return the position in FEN, including both move clocks
+     */
+    public String toFen() {
+        StringBuilder fen = new StringBuilder(90);
+        for (int row = 8; row >= 1; row--) {
+            int empty = 0;
+            for (int col = 1; col <= 8; col++) {
+                ChessPiece piece = board.getPiece(Bitboards.square(row, col));
+                if (piece == null) {
+                    empty++;
+                    continue;
                 }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                fen.append(piece);
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (row > 1) {
+                fen.append('/');
             }
         }
-        if (kingPos == null) {throw new Exception("there's no king on the board?");}
-        return kingPos;
+
+        fen.append(currentTurn == TeamColor.WHITE ? " w " : " b ");
+        if (castlingRights == 0) {
+            fen.append('-');
+        } else {
+            if ((castlingRights & WHITE_KINGSIDE) != 0) { fen.append('K'); }
+            if ((castlingRights & WHITE_QUEENSIDE) != 0) { fen.append('Q'); }
+            if ((castlingRights & BLACK_KINGSIDE) != 0) { fen.append('k'); }
+            if ((castlingRights & BLACK_QUEENSIDE) != 0) { fen.append('q'); }
+        }
+
+        fen.append(' ');
+        if (enPassantSquare < 0) {
+            fen.append('-');
+        } else {
+            fen.append((char) ('a' + Bitboards.column(enPassantSquare) - 1)).append(Bitboards.row(enPassantSquare));
+        }
+        return fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber).toString();
     }
+
     /**
      * Sets this game's chessboard with a given board
      *
      * @param board the new board to use
      */
     public void setBoard(ChessBoard board) {
-        previousBoard = this.board;
         this.board = board;
+        castlingRights = castlingRightsFromPlacement(board);
+        enPassantSquare = -1;
+        status = null;
+        historySize = 0;
+        halfmoveClock = 0;
     }
 
     /**
@@ -493,6 +799,7 @@ public class ChessGame {
     }
     @Override
     public int hashCode() {
-        return Objects.hash(currentTurn, board);
+        long key = board.getKey() ^ (currentTurn == TeamColor.BLACK ? Zobrist.blackToMove() : 0L);
+        return (int) (key ^ (key >>> 32));
     }
 }
@@ -10,19 +10,54 @@ import java.util.*;
  * signature of the existing methods.
  */
 public class ChessPiece {
+    //one shared instance per color and type, indexed like Bitboards.pieceIndex
+    private static final ChessPiece[] PIECES = new ChessPiece[Bitboards.NUM_PIECE_INDICES];
+
+    static {
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            for (PieceType type : PieceType.values()) {
+                PIECES[Bitboards.pieceIndex(color, type)] = new ChessPiece(color, type);
+            }
+        }
+    }
+
     private final ChessGame.TeamColor pieceColor;
     private final PieceType type;
-    public boolean hasMoved;
 
     public ChessPiece(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type) {
         this.pieceColor = pieceColor;
         this.type = type;
     }
 
-    public ChessPiece(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type, boolean hasMoved){
-        this.pieceColor = pieceColor;
-        this.type = type;
-        this.hasMoved = hasMoved;
+    /**
+     * Gets the shared piece of a color and type. Pieces are immutable, so every
+     * board can hold the same twelve instances; whether a king or rook has moved
+     * is tracked by the game's castling rights instead.
+     *
+     * @return the piece of the given color and type
+     */
+    public static ChessPiece of(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type) {
+        return PIECES[Bitboards.pieceIndex(pieceColor, type)];
+    }
+
+    /**
+     * Gets the shared piece for a letter as written in FEN and {@link #toString()}:
+     * uppercase for white and lowercase for black
+     *
+     * @return the piece, or null if c is not a piece letter
+     */
+    public static ChessPiece fromSymbol(char c) {
+        ChessGame.TeamColor color = Character.isUpperCase(c) ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+        PieceType type = switch (Character.toLowerCase(c)) {
+            case 'k' -> PieceType.KING;
+            case 'q' -> PieceType.QUEEN;
+            case 'b' -> PieceType.BISHOP;
+            case 'n' -> PieceType.KNIGHT;
+            case 'r' -> PieceType.ROOK;
+            case 'p' -> PieceType.PAWN;
+            default -> null;
+        };
+        return type == null ? null : of(color, type);
     }
 
     /**
@@ -59,253 +94,56 @@ public class ChessPiece {
      * @return Collection of valid moves
      */
     public Collection<ChessMove> pieceMoves(ChessBoard board, ChessPosition myPosition) {
-        switch (type) {
-            case KING ->  {
-                return kingMoves(board, myPosition);
-            }
-            case PAWN -> {
-                return pawnMoves(board, myPosition);
-            }
-            case ROOK -> {
-                return rookMoves(board, myPosition);
-            }
-            case BISHOP -> {
-                return bishopMoves(board, myPosition);
-            }
-            case KNIGHT -> {
-                return knightMoves(board, myPosition);
-            }
-            case QUEEN -> {
-                return queenMoves(board, myPosition);
-            }
-            case null, default -> {
-                return new ArrayList<>();
-            }
+        int from = Bitboards.square(myPosition);
+        if (type == PieceType.PAWN) {
+            return pawnMoves(board, from);
         }
-    }
-
-    private Collection<ChessMove> pawnMoves(ChessBoard board, ChessPosition myPosition){
-        ArrayList<ChessMove> legalMoves = new ArrayList<ChessMove>();
-
-        int row = myPosition.getRow();
-        int col = myPosition.getColumn();
-        ChessGame.TeamColor teamColor = board.getPiece(myPosition).getTeamColor();
-
-        int startingRow;
-        int movementDirection;
-        int promotionRow;
-
-        if(teamColor == ChessGame.TeamColor.WHITE){
-            startingRow = 2;
-            movementDirection = 1;
-            promotionRow = 8;
-        } else {
-            startingRow = 7;
-            movementDirection = -1;
-            promotionRow = 1;
-        }
-
-        //forward
-        if (board.getPiece(new ChessPosition(row + movementDirection, col)) == null) {
-            legalMoves.add(new ChessMove(myPosition, new ChessPosition(row + movementDirection, col), null));
-            //forward 2 spaces
-            if (row == startingRow && board.getPiece(new ChessPosition(row + 2*movementDirection, col)) == null){
-                legalMoves.add(new ChessMove(myPosition, new ChessPosition(row + 2*movementDirection, col), null));
-            }
-        }
-
-
-        //pawn captures
-        for (int colOffset : new int[] {1,-1}) {
-            if (checkRowAndCol(row + movementDirection, col + colOffset)) {
-                ChessPiece pieceAtDestination = board.getPiece(new ChessPosition(row + movementDirection, col + colOffset));
-                if (pieceAtDestination != null && pieceAtDestination.getTeamColor() != teamColor) {
-                    legalMoves.add(new ChessMove(myPosition, new ChessPosition(row + movementDirection, col + colOffset), null));
-                }
-            }
-        }
-
-        //Add promotion options, if applicable
-        ArrayList<ChessMove> currentMovesList = new ArrayList<>(legalMoves);
-        for (ChessMove move : currentMovesList){
-            if (move.endPosition().getRow() == promotionRow){
-                for (PieceType promotionPiece : PieceType.values()) {
-                    if (promotionPiece != PieceType.KING && promotionPiece != PieceType.PAWN) {
-                        legalMoves.add(new ChessMove(myPosition, move.endPosition(), promotionPiece));
-                    }
-                }
-                legalMoves.remove(move);
-            }
-        }
-
+        long targets = Attacks.attacks(type, from, board.getOccupied()) & ~board.getPieces(pieceColor);
+        ArrayList<ChessMove> legalMoves = new ArrayList<>(Long.bitCount(targets));
+        addMoves(legalMoves, from, targets, false);
         return legalMoves;
     }
 
-    private Collection<ChessMove> moveCardinally(ChessBoard board, ChessPosition myPos){
+    private Collection<ChessMove> pawnMoves(ChessBoard board, int from){
         ArrayList<ChessMove> legalMoves = new ArrayList<>();
-
-        int col = myPos.getColumn();
-        int row = myPos.getRow()+1;
-
-        //up
-        while (row <= 8){
-            legalMoves.add(valMove(board, myPos, new ChessPosition(row, col)));
-            if (board.getPiece(new ChessPosition(row, col)) != null) { break; }
-            row++;
-        }
-
-        //right
-        row = myPos.getRow(); col = myPos.getColumn()+1;
-        while (col <= 8){
-            legalMoves.add(valMove(board, myPos, new ChessPosition(row, col)));
-            if (board.getPiece(new ChessPosition(row, col)) != null) { break; }
-            col++;
-        }
-
-        //down
-        row = myPos.getRow()-1; col = myPos.getColumn();
-        while (row >=1){
-            legalMoves.add(valMove(board, myPos, new ChessPosition(row, col)));
-            if (board.getPiece(new ChessPosition(row, col)) != null) { break; }
-            row--;
-        }
-
-        //left
-        row = myPos.getRow(); col = myPos.getColumn()-1;
-        while (col >= 1){
-            legalMoves.add(valMove(board, myPos, new ChessPosition(row, col)));
-            if (board.getPiece(new ChessPosition(row, col)) != null) { break; }
-            col--;
-        }
-
-        removeNull(legalMoves);
-        return legalMoves;
-
-    }
-
-    private Collection<ChessMove> rookMoves(ChessBoard board, ChessPosition myPos){
-            return moveCardinally(board, myPos);
-    }
-
-
-    private Collection<ChessMove> moveDiagonally(ChessBoard board, ChessPosition myPos){
-        ArrayList<ChessMove> legalMoves = new ArrayList<ChessMove>();
-        int row = myPos.getRow();
-        int col = myPos.getColumn();
-
-        //moving up and right
-        while (row + 1 < 9 && col + 1 < 9){
-            row++;
-            col++;
-            legalMoves.add(valMove(board, myPos, new ChessPosition(row, col)));
-            if (board.getPiece(new ChessPosition(row, col)) != null){
-                break;
-            }
-        }
-
-        row = myPos.getRow();
-        col = myPos.getColumn();
-
-        //moving down and right
-        while (row - 1 > 0 && col + 1 < 9){
-            row--;
-            col++;
-            legalMoves.add(valMove(board, myPos, new ChessPosition(row, col)));
-            if (board.getPiece(new ChessPosition(row, col)) != null){
-                break;
-            }
-        }
-        row = myPos.getRow();
-        col = myPos.getColumn();
-
-        //moving down and left
-
-        while (row - 1 > 0 && col - 1 > 0) {
-            row--;
-            col--;
-            legalMoves.add(valMove(board, myPos, new ChessPosition(row, col)));
-            if (board.getPiece(new ChessPosition(row, col)) != null){
-                break;
-            }
-        }
-
-        row = myPos.getRow();
-        col = myPos.getColumn();
-
-        //moving up and left
-        while (row + 1 < 9 && col - 1 > 0){
-            row ++;
-            col --;
-            legalMoves.add(valMove(board, myPos, new ChessPosition(row, col)));
-            if (board.getPiece(new ChessPosition(row, col)) != null){
-                break;
-            }
+        long empty = ~board.getOccupied();
+        long pawn = Bitboards.bit(from);
+        long targets;
+        boolean promotes;
+
+        if (pieceColor == ChessGame.TeamColor.WHITE) {
+            long singlePush = (pawn << 8) & empty;
+            //forward 2 spaces from row 2, only if the square in between is empty
+            long doublePush = ((singlePush & 0x0000000000FF0000L) << 8) & empty;
+            targets = singlePush | doublePush;
+            promotes = from >= 48;
+        } else {
+            long singlePush = (pawn >>> 8) & empty;
+            long doublePush = ((singlePush & 0x0000FF0000000000L) >>> 8) & empty;
+            targets = singlePush | doublePush;
+            promotes = from < 16;
         }
 
-        legalMoves.removeIf(Objects::isNull);
-
-        return legalMoves;
-    }
-
-    private Collection<ChessMove> bishopMoves(ChessBoard board, ChessPosition myPos){
-        return moveDiagonally(board, myPos);
-    }
+        //pawn captures
+        targets |= Attacks.pawnAttacks(pieceColor, from) & board.getPieces(pieceColor.opponent());
 
-    private Collection<ChessMove> knightMoves(ChessBoard board, ChessPosition myPosition){
-        ArrayList<ChessMove> legalMoves = new ArrayList<ChessMove>();
-        int row = myPosition.getRow();
-        int col = myPosition.getColumn();
-        for (int rowOffset : new int[]{-2, -1, 1, 2}) {
-            for (int colOffset : new int[]{-2, -1, 1, 2}) {
-                if (Math.abs(rowOffset) != Math.abs(colOffset)){
-                    legalMoves.add(valMove(board, myPosition, new ChessPosition(row+rowOffset, col+colOffset)));
-                }
-            }
-        }
-        removeNull(legalMoves);
+        addMoves(legalMoves, from, targets, promotes);
         return legalMoves;
     }
 
-    private Collection<ChessMove> kingMoves(ChessBoard board, ChessPosition myPosition){
-        int row = myPosition.getRow();
-        int col = myPosition.getColumn();
-        List<ChessMove> legalMoves = new ArrayList<ChessMove>();
-
-        for (int rowOffset : new int[]{-1, 0, 1}){
-            for (int colOffset : new int[]{-1,0,1}){
-                legalMoves.add(valMove(board, myPosition, new ChessPosition(row + rowOffset, col + colOffset)));
+    private static void addMoves(Collection<ChessMove> moves, int from, long targets, boolean promotes) {
+        ChessPosition start = Bitboards.position(from);
+        for (; targets != 0; targets &= targets - 1) {
+            ChessPosition end = Bitboards.position(Bitboards.lowestSquare(targets));
+            if (promotes) {
+                moves.add(new ChessMove(start, end, PieceType.QUEEN));
+                moves.add(new ChessMove(start, end, PieceType.BISHOP));
+                moves.add(new ChessMove(start, end, PieceType.KNIGHT));
+                moves.add(new ChessMove(start, end, PieceType.ROOK));
+            } else {
+                moves.add(new ChessMove(start, end, null));
             }
         }
-        legalMoves.removeIf(Objects::isNull);
-
-        return legalMoves;
-    }
-
-
-
-    private Collection<ChessMove> queenMoves(ChessBoard board, ChessPosition myPos){
-        ArrayList<ChessMove> legalMoves = new ArrayList<>();
-
-        legalMoves.addAll(moveCardinally(board, myPos));
-        legalMoves.addAll(moveDiagonally(board, myPos));
-
-        return legalMoves;
-    }
-
-
-    private ChessMove valMove(ChessBoard board, ChessPosition myPosition, ChessPosition newPosition){
-        if (newPosition.getRow() > 8 || newPosition.getColumn() > 8 || newPosition.getRow() < 1 || newPosition.getColumn() < 1){
-            return null;
-        }
-        if(board.getPiece(newPosition) == null || board.getPiece(newPosition).getTeamColor() != board.getPiece(myPosition).getTeamColor()){
-            return new ChessMove(myPosition, newPosition, null);
-        } else {
-            return null;
-        }
-    }
-
-    private void removeNull(ArrayList<ChessMove> legalMoves){
-        legalMoves.removeIf(Objects::isNull);
     }
 
     public static boolean checkRowAndCol(int row, int col){
@@ -337,6 +175,9 @@ public class ChessPiece {
 
     @Override
     public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
         if (o == null || getClass() != o.getClass()) {
             return false;
         }
@@ -1,7 +1,5 @@
 package chess;
 
-import java.util.Objects;
-
 /**
  * Represents a single square position on a chess board
  * <p>
@@ -9,6 +7,15 @@ import java.util.Objects;
  * signature of the existing methods.
  */
 public class ChessPosition {
+    //one shared instance per square, indexed by square index
+    private static final ChessPosition[] SQUARES = new ChessPosition[64];
+
+    static {
+        for (int square = 0; square < SQUARES.length; square++) {
+            SQUARES[square] = new ChessPosition(Bitboards.row(square), Bitboards.column(square));
+        }
+    }
+
     private final int row;
     private final int col;
 
@@ -17,6 +24,43 @@ public class ChessPosition {
         this.col = col;
     }
 
+    /**
+     * Gets the shared position for a square, so probing the board does not
+     * allocate. Coordinates off the board get a new position of their own.
+     *
+     * @param row 1-based row
+     * @param col 1-based column
+     * @return the position at row and col
+     */
+    public static ChessPosition of(int row, int col) {
+        if (!ChessPiece.checkRowAndCol(row, col)) {
+            return new ChessPosition(row, col);
+        }
+        return SQUARES[Bitboards.square(row, col)];
+    }
+
+    /**
+     * @param square index of the square, 0 (a1) through 63 (h8)
+     * @return the shared position for that square
+     */
+    public static ChessPosition ofIndex(int square) {
+        return SQUARES[square];
+    }
+
+    /**
+     * The index is worked out from the row and column rather than stored, since
+     * positions read back by Gson skip the constructor.
+     *
+     * @return the square index, 0 (a1) through 63 (h8)
+     * @throws IllegalArgumentException if the position is off the board
+     */
+    public int index() {
+        if (!ChessPiece.checkRowAndCol(row, col)) {
+            throw new IllegalArgumentException("Not a square on the board: " + this);
+        }
+        return ((row - 1) << 3) | (col - 1);
+    }
+
     /**
      * @return which row this position is in
      * 1 codes for the bottom row
@@ -27,6 +71,9 @@ public class ChessPosition {
 
     @Override
     public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
         if (o == null || getClass() != o.getClass()) {
             return false;
         }
@@ -36,7 +83,7 @@ public class ChessPosition {
 
     @Override
     public int hashCode() {
-        return Objects.hash(row, col);
+        return (row << 4) | (col & 0xF);
     }
 
     @Override
@@ -0,0 +1,43 @@
+package chess;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Writes a ChessGame as its FEN string rather than the whole object graph.
+ * Reading also accepts the older object form, so messages and records written
+ * before the switch still load.
+ */
+public class FenTypeAdapter extends TypeAdapter<ChessGame> {
+    @Override
+    public void write(JsonWriter jsonWriter, ChessGame game) throws IOException {
+        if (game == null) {
+            jsonWriter.nullValue();
+        } else {
+            jsonWriter.value(game.toFen());
+        }
+    }
+
+    @Override
+    public ChessGame read(JsonReader jsonReader) throws IOException {
+        JsonToken token = jsonReader.peek();
+        if (token == JsonToken.NULL) {
+            jsonReader.nextNull();
+            return null;
+        }
+        if (token == JsonToken.STRING) {
+            try {
+                return ChessGame.fromFen(jsonReader.nextString());
+            } catch (IllegalArgumentException ex) {
+                throw new JsonSyntaxException(ex.getMessage(), ex);
+            }
+        }
+        return new Gson().fromJson(jsonReader, ChessGame.class);
+    }
+}
@@ -0,0 +1,161 @@
+package chess;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads and writes a ChessGame in a compact binary form, for storage.
+ * <p>
+ * Version 1 layout, big-endian:
+ * <pre>
+ *   byte    version (1)
+ *   byte    flags: 1 = black to move, 2 = resigned
+ *   byte    castling rights, as the ChessGame bits
+ *   byte    en passant square + 1, or 0 for none
+ *   short   halfmove clock
+ *   short   fullmove number
+ *   long    occupied squares
+ *   bytes   one nibble per occupied square, lowest square first, holding
+ *           its piece index from {@link Bitboards#pieceIndex}; padded to a byte
+ *   short   number of position history keys
+ *   long[]  position history keys, oldest first
+ * </pre>
+ * The starting position takes 34 bytes plus 8 for each position in the
+ * repetition history, which never goes back past the last pawn move or capture.
+ */
+public final class GameCodec {
+
+    public static final byte VERSION = 1;
+
+    private static final int FIXED_SIZE = 1 + 1 + 1 + 1 + 2 + 2 + 8 + 2;
+    private static final int BLACK_TO_MOVE = 1;
+    private static final int RESIGNED = 2;
+
+    private static final ChessGame.TeamColor[] COLORS = ChessGame.TeamColor.values();
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private GameCodec() {
+    }
+
+    /**
+     * @return the number of bytes {@link #write(ChessGame, ByteBuffer)} will use for game
+     */
+    public static int encodedSize(ChessGame game) {
+        int pieces = Long.bitCount(game.getBoard().getOccupied());
+        return FIXED_SIZE + (pieces + 1) / 2 + 8 * game.getPositionHistory().length;
+    }
+
+    /**
+     * Writes game at the buffer's position, advancing it
+     *
+     * @throws java.nio.BufferOverflowException if the buffer has less than
+     *                                          {@link #encodedSize(ChessGame)} bytes left
+     */
+    public static void write(ChessGame game, ByteBuffer buffer) {
+        ChessBoard board = game.getBoard();
+        buffer.put(VERSION);
+        int flags = (game.getTeamTurn() == ChessGame.TeamColor.BLACK ? BLACK_TO_MOVE : 0)
+                | (game.isResigned() ? RESIGNED : 0);
+        buffer.put((byte) flags);
+        buffer.put((byte) game.getCastlingRights());
+        buffer.put((byte) (game.getEnPassantSquare() + 1));
+        buffer.putShort((short) game.getHalfmoveClock());
+        buffer.putShort((short) game.getFullmoveNumber());
+
+        long occupied = board.getOccupied();
+        buffer.putLong(occupied);
+        int pending = -1;
+        for (long squares = occupied; squares != 0; squares &= squares - 1) {
+            ChessPiece piece = board.getPiece(Bitboards.lowestSquare(squares));
+            int index = Bitboards.pieceIndex(piece.getTeamColor(), piece.getPieceType());
+            if (pending < 0) {
+                pending = index;
+            } else {
+                buffer.put((byte) ((pending << 4) | index));
+                pending = -1;
+            }
+        }
+        if (pending >= 0) {
+            buffer.put((byte) (pending << 4));
+        }
+
+        long[] history = game.getPositionHistory();
+        buffer.putShort((short) history.length);
+        for (long key : history) {
+            buffer.putLong(key);
+        }
+    }
+
+    /**
+     * @return a new byte array holding game
+     */
+    public static byte[] encode(ChessGame game) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(game));
+        write(game, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Reads a game from the buffer's position, advancing it
+     *
+     * @throws IllegalArgumentException if the buffer doesn't hold a game this
+     *                                  version of the codec can read
+     */
+    public static ChessGame read(ByteBuffer buffer) {
+        try {
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported game state version " + version);
+            }
+            int flags = buffer.get();
+            int castlingRights = buffer.get() & ChessGame.ALL_CASTLING;
+            int enPassantSquare = buffer.get() - 1;
+            int halfmoveClock = buffer.getShort();
+            int fullmoveNumber = buffer.getShort();
+
+            ChessBoard board = new ChessBoard();
+            long occupied = buffer.getLong();
+            int packed = 0;
+            boolean highNibble = true;
+            for (long squares = occupied; squares != 0; squares &= squares - 1) {
+                int index;
+                if (highNibble) {
+                    packed = buffer.get() & 0xFF;
+                    index = packed >>> 4;
+                } else {
+                    index = packed & 0xF;
+                }
+                highNibble = !highNibble;
+                if (index >= Bitboards.NUM_PIECE_INDICES) {
+                    throw new IllegalArgumentException("Bad piece index " + index);
+                }
+                board.addPiece(ChessPosition.ofIndex(Bitboards.lowestSquare(squares)), pieceFromIndex(index));
+            }
+
+            int historySize = buffer.getShort();
+            if (historySize < 0) {
+                throw new IllegalArgumentException("Bad position history size " + historySize);
+            }
+            long[] history = new long[historySize];
+            for (int i = 0; i < history.length; i++) {
+                history[i] = buffer.getLong();
+            }
+
+            ChessGame game = new ChessGame((flags & BLACK_TO_MOVE) != 0 ? ChessGame.TeamColor.BLACK
+                    : ChessGame.TeamColor.WHITE, board, (flags & RESIGNED) != 0);
+            game.restoreState(castlingRights, enPassantSquare, halfmoveClock, fullmoveNumber);
+            game.setPositionHistory(history);
+            return game;
+        } catch (BufferUnderflowException ex) {
+            throw new IllegalArgumentException("Truncated game state", ex);
+        }
+    }
+
+    public static ChessGame decode(byte[] bytes) {
+        return read(ByteBuffer.wrap(bytes));
+    }
+
+    private static ChessPiece pieceFromIndex(int index) {
+        return ChessPiece.of(COLORS[index / 6], TYPES[index % 6]);
+    }
+}
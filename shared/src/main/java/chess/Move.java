@@ -0,0 +1,94 @@
+package chess;
+
+/**
+ * Moves packed into the low 16 bits of an int, for the move generator and
+ * anything else that handles moves in bulk.
+ * <p>
+ * Bits 0-5 hold the start square and bits 6-11 the end square, both as
+ * indices from {@link Bitboards}. Bits 12-15 hold a flag describing the kind
+ * of move: a capture sets the 4 bit and a promotion sets the 8 bit, with the
+ * promotion piece in the low two bits. Moves are turned into {@link ChessMove}
+ * objects only where they leave the rules code.
+ */
+public final class Move {
+
+    /** Not a move: a1 to a1 can never be generated. */
+    public static final int NONE = 0;
+
+    public static final int QUIET = 0;
+    public static final int DOUBLE_PAWN_PUSH = 1;
+    public static final int KING_CASTLE = 2;
+    public static final int QUEEN_CASTLE = 3;
+    public static final int CAPTURE = 4;
+    public static final int EN_PASSANT = 5;
+    public static final int PROMOTION = 8;
+
+    //promotion pieces by the low two bits of a promotion flag
+    private static final ChessPiece.PieceType[] PROMOTION_TYPES = {
+            ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.ROOK, ChessPiece.PieceType.QUEEN
+    };
+
+    private Move() {
+    }
+
+    public static int of(int from, int to, int flags) {
+        return from | (to << 6) | (flags << 12);
+    }
+
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    public static int flags(int move) {
+        return (move >>> 12) & 0xF;
+    }
+
+    public static boolean isCapture(int move) {
+        return (flags(move) & CAPTURE) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (flags(move) & PROMOTION) != 0;
+    }
+
+    /**
+     * @return the flag bits for promoting to the given piece, or 0 for null
+     */
+    public static int promotionFlags(ChessPiece.PieceType type) {
+        if (type == null) {
+            return 0;
+        }
+        return switch (type) {
+            case KNIGHT -> PROMOTION;
+            case BISHOP -> PROMOTION | 1;
+            case ROOK -> PROMOTION | 2;
+            case QUEEN -> PROMOTION | 3;
+            default -> throw new IllegalArgumentException("Can't promote to " + type);
+        };
+    }
+
+    /**
+     * @return the piece a pawn promotes to, or null if the move is not a promotion
+     */
+    public static ChessPiece.PieceType promotionType(int move) {
+        return isPromotion(move) ? PROMOTION_TYPES[flags(move) & 3] : null;
+    }
+
+    public static ChessMove toChessMove(int move) {
+        return new ChessMove(ChessPosition.ofIndex(from(move)), ChessPosition.ofIndex(to(move)), promotionType(move));
+    }
+
+    /**
+     * @return true if the packed move starts, ends and promotes the same as the given move
+     */
+    public static boolean matches(int move, ChessMove chessMove) {
+        return from(move) == Bitboards.square(chessMove.startPosition())
+                && to(move) == Bitboards.square(chessMove.endPosition())
+                && promotionType(move) == chessMove.promotionPiece();
+    }
+}
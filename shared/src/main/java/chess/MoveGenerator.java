@@ -0,0 +1,180 @@
+package chess;
+
+/**
+ * Generates strictly legal moves for one side.
+ * <p>
+ * Checkers and pinned pieces are worked out once per position. When the king
+ * is in double check only king moves are produced; in single check every other
+ * piece must capture the checker or block the check, and a pinned piece may
+ * only move along the ray between its king and the pinning piece. King moves
+ * are tested against attacks with the king lifted off the board, so it cannot
+ * step backwards along a slider's line. En passant is the one move that is
+ * verified by looking at the resulting occupancy, since it removes two pieces
+ * from a row at once.
+ */
+final class MoveGenerator {
+
+    private static final int[] PROMOTION_FLAGS = {
+            Move.promotionFlags(ChessPiece.PieceType.QUEEN), Move.promotionFlags(ChessPiece.PieceType.BISHOP),
+            Move.promotionFlags(ChessPiece.PieceType.KNIGHT), Move.promotionFlags(ChessPiece.PieceType.ROOK)
+    };
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Adds every legal move for the given team to moves, packed as described in {@link Move}.
+     *
+     * @param castlingRights     which castling moves are still allowed, see ChessGame
+     * @param enPassantSquare    square a pawn could capture onto en passant, or -1
+     * @param fromMask           only generate moves for pieces on these squares
+     */
+    static void generate(ChessBoard board, ChessGame.TeamColor us, int castlingRights, int enPassantSquare,
+                         long fromMask, MoveList moves) {
+        ChessGame.TeamColor them = us.opponent();
+        long own = board.getPieces(us);
+        long enemy = board.getPieces(them);
+        long occupied = board.getOccupied();
+        int king = board.findKing(us);
+
+        long checkers = 0L;
+        long pinned = 0L;
+        if (king >= 0) {
+            checkers = board.attackersOf(king, them, occupied);
+            pinned = pinnedPieces(board, king, us);
+            if ((fromMask & Bitboards.bit(king)) != 0) {
+                generateKingMoves(board, king, them, own, enemy, occupied, moves);
+                if (checkers == 0) {
+                    generateCastling(board, king, us, castlingRights, occupied, moves);
+                }
+            }
+        }
+
+        if (Long.bitCount(checkers) > 1) {
+            return;
+        }
+        long targetMask = ~own;
+        if (checkers != 0) {
+            targetMask = checkers | Attacks.between(king, Bitboards.lowestSquare(checkers));
+        }
+
+        for (ChessPiece.PieceType type : new ChessPiece.PieceType[] {ChessPiece.PieceType.QUEEN,
+                ChessPiece.PieceType.ROOK, ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.KNIGHT}) {
+            for (long pieces = board.getPieces(us, type) & fromMask; pieces != 0; pieces &= pieces - 1) {
+                int from = Bitboards.lowestSquare(pieces);
+                long targets = Attacks.attacks(type, from, occupied) & ~own & targetMask;
+                if ((pinned & Bitboards.bit(from)) != 0) {
+                    targets &= Attacks.line(king, from);
+                }
+                addMoves(from, targets, enemy, moves);
+            }
+        }
+
+        for (long pawns = board.getPieces(us, ChessPiece.PieceType.PAWN) & fromMask; pawns != 0; pawns &= pawns - 1) {
+            int from = Bitboards.lowestSquare(pawns);
+            long targets = pawnPushes(from, us, occupied) | (Attacks.pawnAttacks(us, from) & enemy);
+            targets &= targetMask;
+            if ((pinned & Bitboards.bit(from)) != 0) {
+                targets &= Attacks.line(king, from);
+            }
+            boolean promotes = us == ChessGame.TeamColor.WHITE ? from >= 48 : from < 16;
+            addPawnMoves(from, targets, enemy, promotes, moves);
+
+            if (enPassantSquare >= 0 && (Attacks.pawnAttacks(us, from) & Bitboards.bit(enPassantSquare)) != 0
+                    && isLegalEnPassant(board, from, enPassantSquare, us, king)) {
+                moves.add(Move.of(from, enPassantSquare, Move.EN_PASSANT));
+            }
+        }
+    }
+
+    private static long pinnedPieces(ChessBoard board, int king, ChessGame.TeamColor us) {
+        ChessGame.TeamColor them = us.opponent();
+        long occupied = board.getOccupied();
+        long queens = board.getPieces(them, ChessPiece.PieceType.QUEEN);
+        long snipers = (Attacks.rookAttacks(king, 0L) & (board.getPieces(them, ChessPiece.PieceType.ROOK) | queens))
+                | (Attacks.bishopAttacks(king, 0L) & (board.getPieces(them, ChessPiece.PieceType.BISHOP) | queens));
+        long pinned = 0L;
+        for (; snipers != 0; snipers &= snipers - 1) {
+            long blockers = Attacks.between(king, Bitboards.lowestSquare(snipers)) & occupied;
+            if (Long.bitCount(blockers) == 1) {
+                pinned |= blockers & board.getPieces(us);
+            }
+        }
+        return pinned;
+    }
+
+    private static void generateKingMoves(ChessBoard board, int king, ChessGame.TeamColor them, long own,
+                                          long enemy, long occupied, MoveList moves) {
+        long withoutKing = occupied & ~Bitboards.bit(king);
+        for (long targets = Attacks.kingAttacks(king) & ~own; targets != 0; targets &= targets - 1) {
+            int to = Bitboards.lowestSquare(targets);
+            if (board.attackersOf(to, them, withoutKing) == 0) {
+                moves.add(Move.of(king, to, Bitboards.isSet(enemy, to) ? Move.CAPTURE : Move.QUIET));
+            }
+        }
+    }
+
+    private static void generateCastling(ChessBoard board, int king, ChessGame.TeamColor us, int castlingRights,
+                                         long occupied, MoveList moves) {
+        int kingSide = us == ChessGame.TeamColor.WHITE ? ChessGame.WHITE_KINGSIDE : ChessGame.BLACK_KINGSIDE;
+        int queenSide = us == ChessGame.TeamColor.WHITE ? ChessGame.WHITE_QUEENSIDE : ChessGame.BLACK_QUEENSIDE;
+        int home = us == ChessGame.TeamColor.WHITE ? 4 : 60;
+        if (king != home) {
+            return;
+        }
+        //king side: f and g must be empty and safe
+        if ((castlingRights & kingSide) != 0 && (occupied & Attacks.between(home, home + 3)) == 0
+                && !board.isSquareAttacked(home + 1, us.opponent()) && !board.isSquareAttacked(home + 2, us.opponent())) {
+            moves.add(Move.of(home, home + 2, Move.KING_CASTLE));
+        }
+        //queen side: b, c and d must be empty, and the king crosses d and lands on c
+        if ((castlingRights & queenSide) != 0 && (occupied & Attacks.between(home, home - 4)) == 0
+                && !board.isSquareAttacked(home - 1, us.opponent()) && !board.isSquareAttacked(home - 2, us.opponent())) {
+            moves.add(Move.of(home, home - 2, Move.QUEEN_CASTLE));
+        }
+    }
+
+    private static long pawnPushes(int from, ChessGame.TeamColor us, long occupied) {
+        long empty = ~occupied;
+        long pawn = Bitboards.bit(from);
+        if (us == ChessGame.TeamColor.WHITE) {
+            long singlePush = (pawn << 8) & empty;
+            return singlePush | (((singlePush & 0x0000000000FF0000L) << 8) & empty);
+        }
+        long singlePush = (pawn >>> 8) & empty;
+        return singlePush | (((singlePush & 0x0000FF0000000000L) >>> 8) & empty);
+    }
+
+    private static boolean isLegalEnPassant(ChessBoard board, int from, int to, ChessGame.TeamColor us, int king) {
+        if (king < 0) {
+            return true;
+        }
+        int captured = us == ChessGame.TeamColor.WHITE ? to - 8 : to + 8;
+        long occupied = (board.getOccupied() ^ Bitboards.bit(from) ^ Bitboards.bit(captured)) | Bitboards.bit(to);
+        return (board.attackersOf(king, us.opponent(), occupied) & ~Bitboards.bit(captured)) == 0;
+    }
+
+    private static void addMoves(int from, long targets, long enemy, MoveList moves) {
+        for (; targets != 0; targets &= targets - 1) {
+            int to = Bitboards.lowestSquare(targets);
+            moves.add(Move.of(from, to, Bitboards.isSet(enemy, to) ? Move.CAPTURE : Move.QUIET));
+        }
+    }
+
+    private static void addPawnMoves(int from, long targets, long enemy, boolean promotes, MoveList moves) {
+        for (; targets != 0; targets &= targets - 1) {
+            int to = Bitboards.lowestSquare(targets);
+            int flags = Bitboards.isSet(enemy, to) ? Move.CAPTURE : Move.QUIET;
+            if (promotes) {
+                for (int promotionFlags : PROMOTION_FLAGS) {
+                    moves.add(Move.of(from, to, flags | promotionFlags));
+                }
+            } else {
+                if (Math.abs(to - from) == 16) {
+                    flags = Move.DOUBLE_PAWN_PUSH;
+                }
+                moves.add(Move.of(from, to, flags));
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package chess;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts the leaf nodes of the legal move tree to a fixed depth.
+ * <p>
+ * The counts for well-known positions are published, so comparing against
+ * them checks the move generator, including castling, en passant and
+ * promotion, far more thoroughly than hand-picked test positions. Moves one
+ * ply from the leaves are counted rather than made, and moves are kept packed
+ * in one reused list per ply.
+ * <p>
+ * Run from the command line as {@code Perft <depth> [divide] [fen]}, starting
+ * from the given position or else the standard starting position.
+ */
+public final class Perft {
+
+    private Perft() {
+    }
+
+    /**
+     * @return the number of move sequences of exactly depth plies from the game's position
+     * @throws IllegalArgumentException if depth is negative
+     */
+    public static long perft(ChessGame game, int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Perft depth can't be negative: " + depth);
+        }
+        if (depth == 0) {
+            return 1;
+        }
+        MoveList[] movesByPly = new MoveList[depth];
+        for (int ply = 0; ply < depth; ply++) {
+            movesByPly[ply] = new MoveList();
+        }
+        return perft(game, depth, movesByPly);
+    }
+
+    //one move list per remaining depth, filled afresh at each node
+    private static long perft(ChessGame game, int depth, MoveList[] movesByPly) {
+        MoveList moves = movesByPly[depth - 1];
+        game.legalMoves(moves);
+        if (depth == 1) {
+            return moves.size();
+        }
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            game.makeLegalMove(moves.get(i));
+            nodes += perft(game, depth - 1, movesByPly);
+            game.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Breaks a perft count down by root move, which narrows a wrong total down
+     * to the move that causes it.
+     *
+     * @return the node count below each legal root move, in generation order, or
+     * nothing for a depth below 1, which has no root moves to break down by
+     */
+    public static Map<ChessMove, Long> divide(ChessGame game, int depth) {
+        Map<ChessMove, Long> counts = new LinkedHashMap<>();
+        if (depth < 1) {
+            return counts;
+        }
+        for (ChessMove move : game.legalMoves()) {
+            game.makeLegalMove(move);
+            counts.put(move, perft(game, depth - 1));
+            game.unmakeMove();
+        }
+        return counts;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: Perft <depth> [divide] [fen]");
+            return;
+        }
+        int depth = Integer.parseInt(args[0]);
+        if (depth < 0) {
+            System.out.println("Depth can't be negative: " + depth);
+            return;
+        }
+        boolean divide = args.length > 1 && args[1].equals("divide");
+        int fenStart = divide ? 2 : 1;
+        ChessGame game = args.length > fenStart
+                ? ChessGame.fromFen(String.join(" ", Arrays.copyOfRange(args, fenStart, args.length)))
+                : new ChessGame();
+
+        long start = System.nanoTime();
+        long nodes;
+        if (divide) {
+            nodes = 0;
+            for (Map.Entry<ChessMove, Long> entry : divide(game, depth).entrySet()) {
+                System.out.println(entry.getKey() + ": " + entry.getValue());
+                nodes += entry.getValue();
+            }
+        } else {
+            nodes = perft(game, depth);
+        }
+        long elapsed = Math.max(1, System.nanoTime() - start);
+
+        System.out.printf("Nodes: %d%n", nodes);
+        System.out.printf("Time: %.3f s%n", elapsed / 1e9);
+        //in floating point, since nodes times a billion overflows a long on long runs
+        System.out.printf("NPS: %.0f%n", nodes / (elapsed / 1e9));
+    }
+}
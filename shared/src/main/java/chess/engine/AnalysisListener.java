@@ -0,0 +1,16 @@
+package chess.engine;
+
+import java.util.List;
+
+/**
+ * Receives the lines found by each iteration of a multi-PV search as it
+ * finishes, see {@link Search#analyze}.
+ */
+@FunctionalInterface
+public interface AnalysisListener {
+
+    /**
+     * @param lines the iteration's results, best first
+     */
+    void onIteration(List<SearchResult> lines);
+}
@@ -0,0 +1,144 @@
+package chess.engine;
+
+import chess.Attacks;
+import chess.Bitboards;
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.PieceSquareTables;
+
+/**
+ * Static evaluation of a position, in centipawns from the point of view of
+ * the side to move.
+ * <p>
+ * Material and piece placement come from the piece-square score the board
+ * keeps as pieces move, so they cost nothing to look up. Pawn structure
+ * (doubled, isolated, supported and passed pawns) depends only on where the
+ * pawns are, which changes far less often than the rest of the position, so
+ * it is cached by the board's pawn key. The middlegame and endgame scores are
+ * blended by how much material is left.
+ * <p>
+ * The pawn cache is not thread-safe, so each thread should have its own
+ * Evaluator.
+ */
+public final class Evaluator {
+
+    //by PieceType ordinal: KING, QUEEN, BISHOP, KNIGHT, ROOK, PAWN; for ordering captures
+    static final int[] PIECE_VALUES = {0, 900, 330, 320, 500, 100};
+
+    public static final int DEFAULT_PAWN_TABLE_ENTRIES = 1 << 14;
+
+    private static final int DOUBLED = PieceSquareTables.pack(-10, -25);
+    private static final int ISOLATED = PieceSquareTables.pack(-8, -15);
+    private static final int SUPPORTED = PieceSquareTables.pack(7, 8);
+    //by rank counted from the pawn's own side, 0 to 7
+    private static final int[] PASSED = {
+            0,
+            0,
+            PieceSquareTables.pack(5, 10),
+            PieceSquareTables.pack(10, 20),
+            PieceSquareTables.pack(20, 40),
+            PieceSquareTables.pack(35, 70),
+            PieceSquareTables.pack(60, 110),
+            0,
+    };
+
+    private static final long[] FILES = new long[8];
+    private static final long[] ADJACENT_FILES = new long[8];
+    //squares in front of a pawn, on its own and the adjacent files, where an enemy pawn would stop it
+    private static final long[][] PASSED_SPANS = new long[2][64];
+
+    static {
+        for (int file = 0; file < 8; file++) {
+            FILES[file] = 0x0101_0101_0101_0101L << file;
+        }
+        for (int file = 0; file < 8; file++) {
+            ADJACENT_FILES[file] = (file > 0 ? FILES[file - 1] : 0) | (file < 7 ? FILES[file + 1] : 0);
+        }
+        for (int square = 0; square < 64; square++) {
+            long span = FILES[square & 7] | ADJACENT_FILES[square & 7];
+            int rank = square >>> 3;
+            long above = rank == 7 ? 0 : -1L << ((rank + 1) * 8);
+            long below = (1L << (rank * 8)) - 1;
+            PASSED_SPANS[ChessGame.TeamColor.WHITE.ordinal()][square] = span & above;
+            PASSED_SPANS[ChessGame.TeamColor.BLACK.ordinal()][square] = span & below;
+        }
+    }
+
+    //an empty slot has key 0 and score 0, which is right for a board with no pawns
+    private final long[] pawnKeys;
+    private final int[] pawnScores;
+    private final int pawnMask;
+
+    public Evaluator() {
+        this(DEFAULT_PAWN_TABLE_ENTRIES);
+    }
+
+    /**
+     * @param pawnTableEntries how many pawn structures to cache, a power of two
+     */
+    public Evaluator(int pawnTableEntries) {
+        if (pawnTableEntries < 1 || Integer.bitCount(pawnTableEntries) != 1) {
+            throw new IllegalArgumentException("Pawn table size must be a power of two: " + pawnTableEntries);
+        }
+        pawnKeys = new long[pawnTableEntries];
+        pawnScores = new int[pawnTableEntries];
+        pawnMask = pawnTableEntries - 1;
+    }
+
+    /**
+     * @return the score, positive if the side to move is ahead
+     */
+    public int evaluate(ChessGame game) {
+        ChessBoard board = game.getBoard();
+        int packed = board.getPieceSquareScore() + pawnStructure(board);
+        int phase = Math.min(board.getPhase(), PieceSquareTables.MAX_PHASE);
+        int score = (PieceSquareTables.middlegame(packed) * phase
+                + PieceSquareTables.endgame(packed) * (PieceSquareTables.MAX_PHASE - phase))
+                / PieceSquareTables.MAX_PHASE;
+        return game.getTeamTurn() == ChessGame.TeamColor.WHITE ? score : -score;
+    }
+
+    private int pawnStructure(ChessBoard board) {
+        long key = board.getPawnKey();
+        int slot = (int) key & pawnMask;
+        if (pawnKeys[slot] != key) {
+            pawnKeys[slot] = key;
+            pawnScores[slot] = pawnStructure(board, ChessGame.TeamColor.WHITE)
+                    - pawnStructure(board, ChessGame.TeamColor.BLACK);
+        }
+        return pawnScores[slot];
+    }
+
+    //packed score of one side's pawns, positive for that side
+    static int pawnStructure(ChessBoard board, ChessGame.TeamColor color) {
+        long own = board.getPieces(color, ChessPiece.PieceType.PAWN);
+        long enemy = board.getPieces(color.opponent(), ChessPiece.PieceType.PAWN);
+        int score = 0;
+        for (int file = 0; file < 8; file++) {
+            int count = Long.bitCount(own & FILES[file]);
+            if (count > 1) {
+                score += (count - 1) * DOUBLED;
+            }
+        }
+        for (long pawns = own; pawns != 0; pawns &= pawns - 1) {
+            int square = Bitboards.lowestSquare(pawns);
+            if ((own & ADJACENT_FILES[square & 7]) == 0) {
+                score += ISOLATED;
+            }
+            //own pawns on the squares an enemy pawn here would attack are the ones defending it
+            if ((Attacks.pawnAttacks(color.opponent(), square) & own) != 0) {
+                score += SUPPORTED;
+            }
+            if ((PASSED_SPANS[color.ordinal()][square] & enemy) == 0) {
+                int rank = color == ChessGame.TeamColor.WHITE ? square >>> 3 : 7 - (square >>> 3);
+                score += PASSED[rank];
+            }
+        }
+        return score;
+    }
+
+    static int value(ChessPiece piece) {
+        return PIECE_VALUES[piece.getPieceType().ordinal()];
+    }
+}
@@ -0,0 +1,192 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.Move;
+import chess.MoveList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Moves to play in known opening positions, read from a book file without
+ * loading it.
+ * <p>
+ * The entries are laid out as in a Polyglot book: 16-byte big-endian entries
+ * of a position key, a move, a weight and four unused bytes, sorted by key as
+ * an unsigned number. Moves are packed the Polyglot way, with the end square
+ * in bits 0-5, the start square in bits 6-11 and the promotion piece in bits
+ * 12-14, and castling is written as the king taking its own rook. The keys
+ * are this engine's {@link ChessGame#positionKey()}, not Polyglot's, so the
+ * entries follow a 16-byte header of {@link #MAGIC} and {@link #VERSION}, and
+ * a Polyglot book, which would never match a position, is refused on opening.
+ * Books must be made with {@link OpeningBookBuilder}.
+ * <p>
+ * The file is memory-mapped and probed by binary search, so a lookup reads a
+ * few pages the operating system caches, whatever size the book is. One
+ * instance may be shared by any number of threads.
+ */
+public final class OpeningBook {
+
+    public static final int ENTRY_BYTES = 16;
+    /** The header's size, one entry's, so the entries after it stay aligned. */
+    public static final int HEADER_BYTES = ENTRY_BYTES;
+    /** "CHESSBOK", the first eight bytes of every book. */
+    public static final long MAGIC = 0x4348455353424F4BL;
+    /** The layout of the entries, the four bytes after the magic; the other four are unused. */
+    public static final int VERSION = 1;
+
+    //read only with absolute gets, which leave the buffer's position alone, so threads can share it
+    private final ByteBuffer entries;
+    private final int size;
+
+    /**
+     * A move the book gives for a position.
+     *
+     * @param weight how strongly the book recommends the move; a move is picked
+     *               in proportion to its weight
+     */
+    public record Entry(ChessMove move, int weight) {
+    }
+
+    private OpeningBook(ByteBuffer entries) {
+        this.entries = entries;
+        size = entries.capacity() / ENTRY_BYTES;
+    }
+
+    /**
+     * Maps a book file into memory. The mapping outlives the file being closed,
+     * and is released when the book is garbage collected.
+     *
+     * @throws IOException if the file can't be read, doesn't start with this
+     * engine's header, as a Polyglot book doesn't, or isn't a whole number of entries
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            if (length < HEADER_BYTES || channel.read(header, 0) != HEADER_BYTES || header.getLong(0) != MAGIC) {
+                throw new IOException("Not an opening book made by OpeningBookBuilder (a Polyglot book?): " + path);
+            }
+            if (header.getInt(8) != VERSION) {
+                throw new IOException("Opening book version " + header.getInt(8) + " isn't " + VERSION + ": " + path);
+            }
+            long entryLength = length - HEADER_BYTES;
+            if (entryLength % ENTRY_BYTES != 0 || entryLength > Integer.MAX_VALUE) {
+                throw new IOException("Not an opening book: " + path);
+            }
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, entryLength));
+        }
+    }
+
+    /**
+     * @return how many entries the book has, counting every move of every position
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Looks up the game's current position. Entries whose move isn't legal
+     * there, which can only come from a key collision, are left out.
+     *
+     * @return the book moves, highest weight first, or an empty list if the
+     * position isn't in the book
+     */
+    public List<Entry> lookup(ChessGame game) {
+        long key = game.positionKey();
+        int index = firstIndex(key);
+        if (index == size || keyAt(index) != key) {
+            return List.of();
+        }
+        MoveList legal = new MoveList();
+        game.legalMoves(legal);
+        List<Entry> found = new ArrayList<>();
+        for (; index < size && keyAt(index) == key; index++) {
+            int bookMove = Short.toUnsignedInt(entries.getShort(index * ENTRY_BYTES + 8));
+            int weight = Short.toUnsignedInt(entries.getShort(index * ENTRY_BYTES + 10));
+            int move = findLegal(legal, bookMove);
+            if (move != Move.NONE && weight > 0) {
+                found.add(new Entry(Move.toChessMove(move), weight));
+            }
+        }
+        found.sort((a, b) -> Integer.compare(b.weight(), a.weight()));
+        return found;
+    }
+
+    /**
+     * Picks a book move for the game's current position, at random in
+     * proportion to the moves' weights, so the computer doesn't play the same
+     * opening every game.
+     *
+     * @return a legal move, or null if the position isn't in the book
+     */
+    public ChessMove choose(ChessGame game, RandomGenerator random) {
+        List<Entry> found = lookup(game);
+        if (found.isEmpty()) {
+            return null;
+        }
+        long total = 0;
+        for (Entry entry : found) {
+            total += entry.weight();
+        }
+        long pick = random.nextLong(total);
+        for (Entry entry : found) {
+            pick -= entry.weight();
+            if (pick < 0) {
+                return entry.move();
+            }
+        }
+        return found.getFirst().move();
+    }
+
+    /**
+     * @return the move in the book's packing, for a legal move in the game's current position
+     */
+    static int encode(int move) {
+        int from = Move.from(move);
+        int to = switch (Move.flags(move)) {
+            case Move.KING_CASTLE -> from + 3;
+            case Move.QUEEN_CASTLE -> from - 4;
+            default -> Move.to(move);
+        };
+        //knight through queen, 1 to 4, where ours are 0 to 3
+        int promotion = Move.isPromotion(move) ? (Move.flags(move) & 3) + 1 : 0;
+        return to | (from << 6) | (promotion << 12);
+    }
+
+    private static int findLegal(MoveList legal, int bookMove) {
+        for (int i = 0; i < legal.size(); i++) {
+            int move = legal.get(i);
+            if (encode(move) == bookMove) {
+                return move;
+            }
+        }
+        return Move.NONE;
+    }
+
+    //the first entry whose key isn't below the given one, or size if there is none
+    private int firstIndex(long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(keyAt(middle), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long keyAt(int index) {
+        return entries.getLong(index * ENTRY_BYTES);
+    }
+}
@@ -0,0 +1,151 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.MoveList;
+import chess.pgn.PgnGame;
+import chess.pgn.PgnReader;
+import chess.pgn.San;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Makes an {@link OpeningBook} file from the opening moves of PGN games.
+ * <p>
+ * Each move made in the first plies of a game counts for the side that made
+ * it: two for a win, one for a draw and nothing for a loss, as Polyglot does.
+ * Moves that only ever lost are left out, so the book never suggests them.
+ * A position's weights are scaled down together if any would overflow the
+ * file's 16 bits.
+ * <p>
+ * Run from the command line as {@code OpeningBookBuilder <book> <plies> <pgn>...}
+ * to write a book of the given depth from the games in the PGN files.
+ */
+public class OpeningBookBuilder {
+
+    public static final int DEFAULT_PLIES = 16;
+
+    private static final int MAX_WEIGHT = 0xFFFF;
+
+    private final int maxPly;
+    //position key to book move to weight
+    private final Map<Long, Map<Integer, Long>> weights = new HashMap<>();
+    private int games;
+
+    public OpeningBookBuilder() {
+        this(DEFAULT_PLIES);
+    }
+
+    /**
+     * @param maxPly how many plies of each game to take moves from
+     */
+    public OpeningBookBuilder(int maxPly) {
+        if (maxPly < 1) {
+            throw new IllegalArgumentException("Book depth must be positive: " + maxPly);
+        }
+        this.maxPly = maxPly;
+    }
+
+    /**
+     * Counts the opening moves of a game. Unfinished games, and games that
+     * don't start from the standard position, are skipped; a game with an
+     * illegal move counts only up to it.
+     *
+     * @return true if the game was counted
+     */
+    public boolean add(PgnGame game) {
+        int whiteWeight = switch (game.result()) {
+            case PgnGame.WHITE_WINS -> 2;
+            case PgnGame.DRAW -> 1;
+            case PgnGame.BLACK_WINS -> 0;
+            default -> -1;
+        };
+        if (whiteWeight < 0 || game.tags().containsKey("FEN")) {
+            return false;
+        }
+        ChessGame position = new ChessGame();
+        MoveList legal = new MoveList();
+        for (String san : game.moves().subList(0, Math.min(maxPly, game.moves().size()))) {
+            ChessMove move;
+            try {
+                move = San.parse(position, san);
+            } catch (IllegalArgumentException ex) {
+                break;
+            }
+            position.legalMoves(legal);
+            int packed = legal.find(move);
+            int weight = position.getTeamTurn() == ChessGame.TeamColor.WHITE ? whiteWeight : 2 - whiteWeight;
+            weights.computeIfAbsent(position.positionKey(), key -> new HashMap<>())
+                    .merge(OpeningBook.encode(packed), (long) weight, Long::sum);
+            position.makeLegalMove(packed);
+        }
+        games++;
+        return true;
+    }
+
+    /**
+     * @return how many games have been counted
+     */
+    public int games() {
+        return games;
+    }
+
+    /**
+     * Writes the book, replacing the file if there is one.
+     *
+     * @return how many entries were written
+     */
+    public int write(Path path) throws IOException {
+        List<long[]> entries = new ArrayList<>();
+        for (Map.Entry<Long, Map<Integer, Long>> position : weights.entrySet()) {
+            long most = position.getValue().values().stream().mapToLong(Long::longValue).max().orElse(0);
+            for (Map.Entry<Integer, Long> move : position.getValue().entrySet()) {
+                long weight = most > MAX_WEIGHT ? move.getValue() * MAX_WEIGHT / most : move.getValue();
+                if (weight > 0) {
+                    entries.add(new long[]{position.getKey(), move.getKey(), weight});
+                }
+            }
+        }
+        //by key as the book searches them, then best move first
+        entries.sort((a, b) -> a[0] != b[0] ? Long.compareUnsigned(a[0], b[0]) : Long.compare(b[2], a[2]));
+        try (OutputStream file = Files.newOutputStream(path);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeLong(OpeningBook.MAGIC);
+            out.writeInt(OpeningBook.VERSION);
+            out.writeInt(0);
+            for (long[] entry : entries) {
+                out.writeLong(entry[0]);
+                out.writeShort((int) entry[1]);
+                out.writeShort((int) entry[2]);
+                out.writeInt(0);
+            }
+        }
+        return entries.size();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: OpeningBookBuilder <book> <plies> <pgn>...");
+            return;
+        }
+        OpeningBookBuilder builder = new OpeningBookBuilder(Integer.parseInt(args[1]));
+        for (int i = 2; i < args.length; i++) {
+            try (PgnReader reader = new PgnReader(Files.newBufferedReader(Path.of(args[i])))) {
+                while (reader.hasNext()) {
+                    builder.add(reader.next());
+                }
+            }
+        }
+        int entries = builder.write(Path.of(args[0]));
+        System.out.printf("%d games, %d entries%n", builder.games(), entries);
+    }
+}
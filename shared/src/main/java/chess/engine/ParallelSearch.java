@@ -0,0 +1,193 @@
+package chess.engine;
+
+import chess.ChessGame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Searches on several threads at once that share one {@link TranspositionTable}
+ * (lazy SMP).
+ * <p>
+ * Each helper thread runs an ordinary {@link Search} on its own copy of the
+ * game and shares nothing but the table. Results one thread stores cut off or
+ * reorder the others' searches, so together they reach a given depth sooner
+ * than one thread would. Half the helpers start a ply deeper than the main
+ * thread, so the threads spread over two depths instead of all repeating the
+ * same tree in step. The main thread's result is the one returned; the
+ * helpers are stopped as soon as it has finished. Multi-PV analysis works the
+ * same way, with every thread looking for all the lines.
+ * <p>
+ * The helper threads are kept between searches, so close the search when done
+ * with it. Only one search may run at a time, but {@link #stop()} may be
+ * called from any thread.
+ */
+public class ParallelSearch implements AutoCloseable {
+
+    private final TranspositionTable table;
+    private final Search[] searches;
+    private final ExecutorService helpers;
+
+    public ParallelSearch(int threads) {
+        this(threads, new TranspositionTable(Search.DEFAULT_TABLE_MEGABYTES));
+    }
+
+    /**
+     * @param threads how many threads to search on, counting the caller's
+     * @param table where all the threads cache results
+     */
+    public ParallelSearch(int threads, TranspositionTable table) {
+        this(threads, table, null);
+    }
+
+    /**
+     * @param threads how many threads to search on, counting the caller's
+     * @param table where all the threads cache results
+     * @param tablebase exact endgame results for every thread, may be null
+     */
+    public ParallelSearch(int threads, TranspositionTable table, Tablebase tablebase) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+        this.table = table;
+        searches = new Search[threads];
+        for (int i = 0; i < threads; i++) {
+            searches[i] = new Search(table, tablebase);
+        }
+        helpers = threads == 1 ? null
+                : Executors.newFixedThreadPool(threads - 1, Thread.ofPlatform().name("search-helper-", 1).daemon().factory());
+    }
+
+    /**
+     * @return one thread per available processor
+     */
+    public static int defaultThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    public int getThreads() {
+        return searches.length;
+    }
+
+    public SearchResult search(ChessGame game, SearchLimits limits) {
+        return search(game, limits, null);
+    }
+
+    /**
+     * Searches the game's current position, on the calling thread and the
+     * helpers. As with {@link Search#search(ChessGame, SearchLimits, SearchListener)},
+     * the game is used while searching and left as it was. A node limit is
+     * split evenly between the threads.
+     *
+     * @param listener told about each of the main thread's finished iterations, may be null
+     * @return the main thread's result, with the nodes searched by every thread
+     */
+    public SearchResult search(ChessGame game, SearchLimits limits, SearchListener listener) {
+        return run(game, limits, 1, listener == null ? null : lines -> listener.onIteration(lines.getFirst()),
+                Search.NOT_CANCELLED).getFirst();
+    }
+
+    /**
+     * Finds the position's best few moves, as
+     * {@link Search#analyze(ChessGame, SearchLimits, int, AnalysisListener, BooleanSupplier)}
+     * does, on the calling thread and the helpers.
+     *
+     * @param listener told about each of the main thread's finished iterations, may be null
+     * @param cancelled checked by the main thread, which stops the helpers when it returns
+     * @return the main thread's lines, each with the nodes searched by every thread
+     */
+    public List<SearchResult> analyze(ChessGame game, SearchLimits limits, int lines, AnalysisListener listener,
+                                      BooleanSupplier cancelled) {
+        if (lines < 1) {
+            throw new IllegalArgumentException("Line count must be positive: " + lines);
+        }
+        return run(game, limits, lines, listener, cancelled);
+    }
+
+    private List<SearchResult> run(ChessGame game, SearchLimits limits, int lines, AnalysisListener listener,
+                                   BooleanSupplier cancelled) {
+        SearchLimits threadLimits = limits.nodes() == Long.MAX_VALUE ? limits
+                : new SearchLimits(limits.depth(), Math.max(1, limits.nodes() / searches.length), limits.millis());
+        table.newSearch();
+        for (Search search : searches) {
+            search.clearStop();
+        }
+        List<Future<?>> running = new ArrayList<>(searches.length - 1);
+        for (int i = 1; i < searches.length; i++) {
+            Search helper = searches[i];
+            ChessGame copy = new ChessGame(game);
+            int firstDepth = 1 + i % 2;
+            running.add(helpers.submit(() -> helper.run(copy, threadLimits, lines, null, firstDepth, Search.NOT_CANCELLED)));
+        }
+
+        List<SearchResult> results;
+        try {
+            results = searches[0].run(game, threadLimits, lines,
+                    listener == null ? null : iteration -> listener.onIteration(withAllNodes(iteration)), 1, cancelled);
+        } finally {
+            for (int i = 1; i < searches.length; i++) {
+                searches[i].stop();
+            }
+            awaitHelpers(running);
+        }
+        return withAllNodes(results);
+    }
+
+    /**
+     * Asks a running search to return as soon as it can. Safe to call from any thread.
+     */
+    public void stop() {
+        for (Search search : searches) {
+            search.stop();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (helpers != null) {
+            stop();
+            helpers.shutdownNow();
+        }
+    }
+
+    private static void awaitHelpers(List<Future<?>> running) {
+        boolean interrupted = false;
+        for (Future<?> helper : running) {
+            while (true) {
+                try {
+                    helper.get();
+                    break;
+                } catch (InterruptedException ex) {
+                    //the helpers are already stopping, so wait for them anyway
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof RuntimeException cause) {
+                        throw cause;
+                    }
+                    throw new IllegalStateException("Helper search failed", ex.getCause());
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<SearchResult> withAllNodes(List<SearchResult> results) {
+        long helperNodes = 0;
+        for (int i = 1; i < searches.length; i++) {
+            helperNodes += searches[i].nodesSoFar();
+        }
+        List<SearchResult> withNodes = new ArrayList<>(results.size());
+        for (SearchResult result : results) {
+            withNodes.add(new SearchResult(result.bestMove(), result.score(), result.depth(),
+                    result.nodes() + helperNodes, result.nanos(), result.pv()));
+        }
+        return withNodes;
+    }
+}
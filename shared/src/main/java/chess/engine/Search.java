@@ -0,0 +1,596 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.Move;
+import chess.MoveList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Finds the best move in a position by alpha-beta search.
+ * <p>
+ * The search deepens one ply at a time, searching the previous iteration's
+ * principal variation first, and each node after the first move uses a null
+ * window (principal variation search). Leaves are resolved by a quiescence
+ * search over captures and promotions so they aren't scored in the middle of
+ * an exchange. Captures are tried most valuable victim first, then killer
+ * moves that caused a cutoff at the same ply, then other quiet moves by how
+ * often they have caused cutoffs before. Results are cached in a
+ * {@link TranspositionTable}, which cuts off positions already searched deep
+ * enough and supplies the best move found last time to try first. With a
+ * {@link Tablebase}, positions it covers are scored exactly instead of being
+ * searched.
+ * <p>
+ * A Search keeps its move lists and ordering tables between searches, so one
+ * instance should be reused for one thread's searches. It is not thread-safe,
+ * apart from {@link #stop()}, which ends whichever search is running. A caller
+ * that queues searches for later should pass each one a cancellation
+ * condition instead, since a stop that comes before a search starts is
+ * forgotten when it does.
+ * <p>
+ * Run from the command line as {@code Search <millis> [fen]} to print each
+ * iteration.
+ */
+public class Search {
+
+    public static final int DEFAULT_TABLE_MEGABYTES = 16;
+
+    public static final int INFINITY = 32000;
+    public static final int MATE = 31000;
+    static final int MAX_PLY = 128;
+
+    //how many nodes between checks of the clock and the stop flag
+    private static final int CHECK_INTERVAL = 1024;
+
+    private static final int PV_SCORE = 2_000_000;
+    private static final int HASH_MOVE_SCORE = 1_500_000;
+    private static final int CAPTURE_SCORE = 1_000_000;
+    private static final int FIRST_KILLER_SCORE = 900_000;
+    private static final int SECOND_KILLER_SCORE = 800_000;
+    private static final int HISTORY_LIMIT = 100_000;
+    private static final int NO_SCORE = Integer.MIN_VALUE;
+    static final BooleanSupplier NOT_CANCELLED = () -> false;
+
+    //attacker order for least valuable attacker, by PieceType ordinal
+    private static final int[] ATTACKER_ORDER = {6, 5, 3, 2, 4, 1};
+
+    private final MoveList[] movesByPly = new MoveList[MAX_PLY];
+    private final int[][] moveScores = new int[MAX_PLY][];
+    private final int[][] killers = new int[MAX_PLY][2];
+    private final int[][][] history = new int[2][64][64];
+    private final int[][] pv = new int[MAX_PLY][MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY];
+    private int[] previousPv = new int[0];
+    //root moves leading the lines already found this iteration, which the next line leaves out
+    private int[] rootExcluded = new int[0];
+    private int excludedCount;
+    private final TranspositionTable table;
+    private final Tablebase tablebase;
+    private final Evaluator evaluator = new Evaluator();
+
+    private ChessGame game;
+    private long nodes;
+    private long maxNodes;
+    private long startTime;
+    private long deadline;
+    private boolean aborted;
+    private BooleanSupplier cancelled = NOT_CANCELLED;
+    private volatile boolean stopRequested;
+    private volatile long nodesSoFar;
+
+    public Search() {
+        this(new TranspositionTable(DEFAULT_TABLE_MEGABYTES));
+    }
+
+    /**
+     * @param table where to cache results, which may be shared with other searches
+     */
+    public Search(TranspositionTable table) {
+        this(table, null);
+    }
+
+    /**
+     * @param table where to cache results, which may be shared with other searches
+     * @param tablebase exact results for endgames it covers, may be null
+     */
+    public Search(TranspositionTable table, Tablebase tablebase) {
+        this.table = table;
+        this.tablebase = tablebase;
+        for (int ply = 0; ply < MAX_PLY; ply++) {
+            movesByPly[ply] = new MoveList();
+            moveScores[ply] = new int[256];
+        }
+    }
+
+    public SearchResult search(ChessGame game, SearchLimits limits) {
+        return search(game, limits, null);
+    }
+
+    /**
+     * Searches the game's current position. Moves are made and taken back in
+     * the game while searching, so it must not be used elsewhere until the
+     * search returns; it is left as it was.
+     *
+     * @param listener told about each finished iteration, may be null
+     * @return the result of the deepest finished iteration, or of the first
+     * iteration as far as it got if not even that one finished
+     */
+    public SearchResult search(ChessGame game, SearchLimits limits, SearchListener listener) {
+        return search(game, limits, listener, NOT_CANCELLED);
+    }
+
+    /**
+     * As {@link #search(ChessGame, SearchLimits, SearchListener)}, also
+     * returning early once the condition is true. It is checked as often as
+     * the clock, from the searching thread, so it can be set before the
+     * search starts, and only ever ends this search.
+     */
+    public SearchResult search(ChessGame game, SearchLimits limits, SearchListener listener, BooleanSupplier cancelled) {
+        stopRequested = false;
+        table.newSearch();
+        return run(game, limits, 1, listener == null ? null : lines -> listener.onIteration(lines.getFirst()), 1,
+                cancelled).getFirst();
+    }
+
+    /**
+     * Searches the game's current position for its best few moves rather than
+     * just the best one (multi-PV). Each iteration searches the position once
+     * per line, leaving out the moves that lead the lines already found, so
+     * this costs roughly one search per line.
+     *
+     * @param lines how many moves to find lines for; fewer come back if there
+     *              aren't that many legal moves
+     * @param listener told about each finished iteration, may be null
+     * @return the lines of the deepest finished iteration, best first, or a
+     * single line as for {@link #search(ChessGame, SearchLimits, SearchListener)}
+     * if there are no moves or not even the first iteration finished
+     */
+    public List<SearchResult> analyze(ChessGame game, SearchLimits limits, int lines, AnalysisListener listener) {
+        return analyze(game, limits, lines, listener, NOT_CANCELLED);
+    }
+
+    /**
+     * As {@link #analyze(ChessGame, SearchLimits, int, AnalysisListener)},
+     * also returning early once the condition is true, as for
+     * {@link #search(ChessGame, SearchLimits, SearchListener, BooleanSupplier)}.
+     */
+    public List<SearchResult> analyze(ChessGame game, SearchLimits limits, int lines, AnalysisListener listener,
+                                      BooleanSupplier cancelled) {
+        if (lines < 1) {
+            throw new IllegalArgumentException("Line count must be positive: " + lines);
+        }
+        stopRequested = false;
+        table.newSearch();
+        return run(game, limits, lines, listener, 1, cancelled);
+    }
+
+    //the search proper, for callers that age the table and clear the stop flag themselves,
+    //so a stop that comes before a helper thread gets going still counts; see ParallelSearch
+    List<SearchResult> run(ChessGame game, SearchLimits limits, int lines, AnalysisListener listener, int firstDepth,
+                           BooleanSupplier cancelled) {
+        this.game = game;
+        this.cancelled = cancelled;
+        nodes = 0;
+        nodesSoFar = 0;
+        maxNodes = limits.nodes();
+        startTime = System.nanoTime();
+        deadline = limits.millis() >= Long.MAX_VALUE / 1_000_000
+                ? Long.MAX_VALUE : startTime + limits.millis() * 1_000_000;
+        aborted = false;
+        previousPv = new int[0];
+        for (int[] plyKillers : killers) {
+            Arrays.fill(plyKillers, Move.NONE);
+        }
+        ageHistory();
+        game.legalMoves(movesByPly[0]);
+        lines = Math.min(lines, movesByPly[0].size());
+        rootExcluded = new int[lines];
+        int[][] previousPvs = new int[lines][0];
+
+        List<SearchResult> results = List.of();
+        for (int depth = Math.min(firstDepth, limits.depth()); depth <= limits.depth(); depth++) {
+            List<SearchResult> iteration = new ArrayList<>(lines);
+            for (int line = 0; line < lines && !aborted; line++) {
+                excludedCount = line;
+                previousPv = previousPvs[line];
+                int score = search(depth, 0, -INFINITY, INFINITY, true);
+                if (aborted && (!results.isEmpty() || pvLength[0] == 0)) {
+                    break;
+                }
+                previousPvs[line] = Arrays.copyOf(pv[0], pvLength[0]);
+                rootExcluded[line] = previousPvs[line][0];
+                iteration.add(result(previousPvs[line], score, depth));
+            }
+            //an unfinished iteration only counts if there is nothing better
+            if (aborted && !results.isEmpty() || iteration.isEmpty()) {
+                break;
+            }
+            //a later line can come out ahead when the search is unstable
+            iteration.sort(Comparator.comparingInt(SearchResult::score).reversed());
+            results = iteration;
+            if (listener != null) {
+                listener.onIteration(results);
+            }
+            SearchResult best = results.getFirst();
+            if (aborted || best.isMate() && Search.MATE - Math.abs(best.score()) <= depth) {
+                break;
+            }
+        }
+        if (results.isEmpty()) {
+            //not even one root move was searched
+            results = List.of(fallbackResult());
+        }
+        this.game = null;
+        this.cancelled = NOT_CANCELLED;
+        excludedCount = 0;
+        nodesSoFar = nodes;
+        return results;
+    }
+
+    /**
+     * Asks a running search to return as soon as it can. Safe to call from any thread.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    void clearStop() {
+        stopRequested = false;
+    }
+
+    //nodes searched so far, for reading from another thread; lags by up to CHECK_INTERVAL
+    long nodesSoFar() {
+        return nodesSoFar;
+    }
+
+    private SearchResult result(int[] pvMoves, int score, int depth) {
+        List<ChessMove> line = new ArrayList<>(pvMoves.length);
+        for (int move : pvMoves) {
+            line.add(Move.toChessMove(move));
+        }
+        ChessMove best = line.isEmpty() ? null : line.getFirst();
+        return new SearchResult(best, score, depth, nodes, System.nanoTime() - startTime, line);
+    }
+
+    private SearchResult fallbackResult() {
+        MoveList moves = movesByPly[0];
+        game.legalMoves(moves);
+        long nanos = System.nanoTime() - startTime;
+        if (moves.isEmpty()) {
+            int score = game.isInCheck(game.getTeamTurn()) ? -MATE : 0;
+            return new SearchResult(null, score, 0, nodes, nanos, List.of());
+        }
+        ChessMove move = Move.toChessMove(moves.get(0));
+        return new SearchResult(move, evaluator.evaluate(game), 0, nodes, nanos, List.of(move));
+    }
+
+    private int search(int depth, int ply, int alpha, int beta, boolean onPv) {
+        pvLength[ply] = 0;
+        if (ply > 0) {
+            if (game.isRepeated() || game.getHalfmoveClock() >= 100 || game.hasInsufficientMaterial()) {
+                return 0;
+            }
+            int known = probeTablebase(ply);
+            if (known != NO_SCORE) {
+                return known;
+            }
+        }
+        boolean inCheck = game.isInCheck(game.getTeamTurn());
+        if (inCheck) {
+            depth++;
+        }
+        if (depth <= 0 || ply >= MAX_PLY - 1) {
+            return quiesce(ply, alpha, beta);
+        }
+        if (countNode()) {
+            return 0;
+        }
+
+        long key = game.positionKey();
+        long entry = table.probe(key);
+        int hashMove = Move.NONE;
+        if (entry != 0) {
+            hashMove = TranspositionTable.move(entry);
+            //only off the principal variation, so the PV stays whole
+            if (beta - alpha == 1 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || bound == TranspositionTable.LOWER_BOUND && score >= beta
+                        || bound == TranspositionTable.UPPER_BOUND && score <= alpha) {
+                    return score;
+                }
+            }
+        }
+
+        MoveList moves = movesByPly[ply];
+        game.legalMoves(moves);
+        if (moves.isEmpty()) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        int pvMove = onPv && ply < previousPv.length ? previousPv[ply] : Move.NONE;
+        scoreMoves(ply, moves, pvMove, hashMove, false);
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = Move.NONE;
+        int searched = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = nextMove(ply, moves, i);
+            if (ply == 0 && isExcluded(move)) {
+                continue;
+            }
+            game.makeLegalMove(move);
+            int score;
+            if (searched++ == 0) {
+                score = -search(depth - 1, ply + 1, -beta, -alpha, move == pvMove);
+            } else {
+                score = -search(depth - 1, ply + 1, -alpha - 1, -alpha, false);
+                if (score > alpha && score < beta) {
+                    score = -search(depth - 1, ply + 1, -beta, -alpha, false);
+                }
+            }
+            game.unmakeMove();
+            if (aborted) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    bestMove = move;
+                    updatePv(ply, move);
+                    if (score >= beta) {
+                        if (isQuiet(move)) {
+                            rememberCutoff(ply, move, depth);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = best >= beta ? TranspositionTable.LOWER_BOUND
+                : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER_BOUND;
+        //a root searched without some of its moves hasn't really been scored
+        if (ply > 0 || excludedCount == 0) {
+            table.store(key, bestMove, toTable(best, ply), depth, bound);
+        }
+        return best;
+    }
+
+    private boolean isExcluded(int move) {
+        for (int i = 0; i < excludedCount; i++) {
+            if (rootExcluded[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //the exact score of a position the tablebase covers, as a mate score from the root, or NO_SCORE
+    private int probeTablebase(int ply) {
+        if (tablebase == null || Long.bitCount(game.getBoard().getOccupied()) > Tablebase.MAX_PIECES) {
+            return NO_SCORE;
+        }
+        int value = tablebase.probe(game);
+        if (value == Tablebase.UNKNOWN) {
+            return NO_SCORE;
+        }
+        int plies = ply + Tablebase.plies(value);
+        return Tablebase.isWin(value) ? MATE - plies : Tablebase.isLoss(value) ? -MATE + plies : 0;
+    }
+
+    //mate scores are stored as distance from the position rather than from the root
+    private static int toTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score + ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score - ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    //captures and promotions only, unless in check, so the score settles
+    private int quiesce(int ply, int alpha, int beta) {
+        pvLength[ply] = 0;
+        //a capture is what usually brings a position down to the tablebase's few pieces
+        int known = probeTablebase(ply);
+        if (known != NO_SCORE) {
+            return known;
+        }
+        if (countNode()) {
+            return 0;
+        }
+        boolean inCheck = game.isInCheck(game.getTeamTurn());
+        int best = -INFINITY;
+        if (!inCheck) {
+            best = evaluator.evaluate(game);
+            if (best >= beta || ply >= MAX_PLY - 1) {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+        }
+
+        MoveList moves = movesByPly[ply];
+        game.legalMoves(moves);
+        if (moves.isEmpty()) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        if (ply >= MAX_PLY - 1) {
+            return evaluator.evaluate(game);
+        }
+        scoreMoves(ply, moves, Move.NONE, Move.NONE, true);
+
+        for (int i = 0; i < moves.size(); i++) {
+            int move = nextMove(ply, moves, i);
+            if (!inCheck && isQuiet(move)) {
+                //moves are in order, so the rest are quiet too
+                break;
+            }
+            game.makeLegalMove(move);
+            int score = -quiesce(ply + 1, -beta, -alpha);
+            game.unmakeMove();
+            if (aborted) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    updatePv(ply, move);
+                    if (score >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    //true once the search has to stop
+    private boolean countNode() {
+        nodes++;
+        if (nodes >= maxNodes) {
+            aborted = true;
+        } else if (nodes % CHECK_INTERVAL == 0) {
+            nodesSoFar = nodes;
+            aborted = stopRequested || cancelled.getAsBoolean() || System.nanoTime() >= deadline;
+        }
+        return aborted;
+    }
+
+    private void scoreMoves(int ply, MoveList moves, int pvMove, int hashMove, boolean tacticalOnly) {
+        ChessBoard board = game.getBoard();
+        int side = game.getTeamTurn().ordinal();
+        int[] scores = moveScores[ply];
+        if (scores.length < moves.size()) {
+            scores = moveScores[ply] = new int[moves.size()];
+        }
+        int[] plyKillers = killers[ply];
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int score;
+            if (move == pvMove) {
+                score = PV_SCORE;
+            } else if (move == hashMove) {
+                score = HASH_MOVE_SCORE;
+            } else if (!isQuiet(move)) {
+                score = CAPTURE_SCORE + mvvLva(board, move);
+            } else if (tacticalOnly) {
+                score = 0;
+            } else if (move == plyKillers[0]) {
+                score = FIRST_KILLER_SCORE;
+            } else if (move == plyKillers[1]) {
+                score = SECOND_KILLER_SCORE;
+            } else {
+                score = history[side][Move.from(move)][Move.to(move)];
+            }
+            scores[i] = score;
+        }
+    }
+
+    private static int mvvLva(ChessBoard board, int move) {
+        ChessPiece victim = board.getPiece(Move.to(move));
+        int victimValue = victim == null ? 0 : Evaluator.value(victim);
+        if (Move.flags(move) == Move.EN_PASSANT) {
+            victimValue = Evaluator.PIECE_VALUES[ChessPiece.PieceType.PAWN.ordinal()];
+        }
+        if (Move.isPromotion(move)) {
+            victimValue += Evaluator.PIECE_VALUES[Move.promotionType(move).ordinal()];
+        }
+        ChessPiece attacker = board.getPiece(Move.from(move));
+        return victimValue * 8 - ATTACKER_ORDER[attacker.getPieceType().ordinal()];
+    }
+
+    //selection sort, one step at a time, since a cutoff often comes before the list is done
+    private int nextMove(int ply, MoveList moves, int index) {
+        int[] scores = moveScores[ply];
+        int bestIndex = index;
+        for (int i = index + 1; i < moves.size(); i++) {
+            if (scores[i] > scores[bestIndex]) {
+                bestIndex = i;
+            }
+        }
+        int move = moves.get(bestIndex);
+        if (bestIndex != index) {
+            moves.set(bestIndex, moves.get(index));
+            moves.set(index, move);
+            int score = scores[bestIndex];
+            scores[bestIndex] = scores[index];
+            scores[index] = score;
+        }
+        return move;
+    }
+
+    private static boolean isQuiet(int move) {
+        return !Move.isCapture(move) && !Move.isPromotion(move);
+    }
+
+    private void rememberCutoff(int ply, int move, int depth) {
+        int[] plyKillers = killers[ply];
+        if (plyKillers[0] != move) {
+            plyKillers[1] = plyKillers[0];
+            plyKillers[0] = move;
+        }
+        int[][] sideHistory = history[game.getTeamTurn().ordinal()];
+        int score = sideHistory[Move.from(move)][Move.to(move)] + depth * depth;
+        sideHistory[Move.from(move)][Move.to(move)] = score;
+        if (score > HISTORY_LIMIT) {
+            ageHistory();
+        }
+    }
+
+    //halve rather than clear, so what was learned carries over but fades
+    private void ageHistory() {
+        for (int[][] sideHistory : history) {
+            for (int[] fromHistory : sideHistory) {
+                for (int to = 0; to < fromHistory.length; to++) {
+                    fromHistory[to] >>= 1;
+                }
+            }
+        }
+    }
+
+    private void updatePv(int ply, int move) {
+        int[] line = pv[ply];
+        line[0] = move;
+        int childLength = Math.min(pvLength[ply + 1], MAX_PLY - 1);
+        System.arraycopy(pv[ply + 1], 0, line, 1, childLength);
+        pvLength[ply] = childLength + 1;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("Usage: Search <millis> [fen]");
+            return;
+        }
+        long millis = Long.parseLong(args[0]);
+        ChessGame game = args.length > 1
+                ? ChessGame.fromFen(String.join(" ", Arrays.copyOfRange(args, 1, args.length)))
+                : new ChessGame();
+        TranspositionTable table = new TranspositionTable(DEFAULT_TABLE_MEGABYTES);
+        SearchResult result = new Search(table).search(game, SearchLimits.time(millis), System.out::println);
+        System.out.printf("table %d MB hits %.1f%% full %d permille%n",
+                table.sizeBytes() >> 20, table.hitRate() * 100, table.hashfull());
+        System.out.println("bestmove " + (result.bestMove() == null ? "none" : SearchResult.coordinates(result.bestMove())));
+    }
+}
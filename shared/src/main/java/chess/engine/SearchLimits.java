@@ -0,0 +1,35 @@
+package chess.engine;
+
+/**
+ * How far a search may go before it must return. The search stops at
+ * whichever limit it reaches first, and the node and time limits are hard:
+ * they cut off the iteration in progress, and the result of the last
+ * finished iteration is returned.
+ *
+ * @param depth the deepest iteration to search, in plies
+ * @param nodes the most positions to visit
+ * @param millis the most wall-clock time to take
+ */
+public record SearchLimits(int depth, long nodes, long millis) {
+
+    public static final int MAX_DEPTH = 64;
+
+    public SearchLimits {
+        if (depth < 1 || nodes < 1 || millis < 1) {
+            throw new IllegalArgumentException("Search limits must be positive");
+        }
+        depth = Math.min(depth, MAX_DEPTH);
+    }
+
+    public static SearchLimits depth(int depth) {
+        return new SearchLimits(depth, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    public static SearchLimits nodes(long nodes) {
+        return new SearchLimits(MAX_DEPTH, nodes, Long.MAX_VALUE);
+    }
+
+    public static SearchLimits time(long millis) {
+        return new SearchLimits(MAX_DEPTH, Long.MAX_VALUE, millis);
+    }
+}
@@ -0,0 +1,11 @@
+package chess.engine;
+
+/**
+ * Receives the result of each iteration of a search as it finishes, for
+ * showing progress while the search deepens.
+ */
+@FunctionalInterface
+public interface SearchListener {
+
+    void onIteration(SearchResult result);
+}
@@ -0,0 +1,90 @@
+package chess.engine;
+
+import chess.ChessMove;
+import chess.ChessPosition;
+
+import java.util.List;
+
+/**
+ * The outcome of one iteration of a search.
+ *
+ * @param bestMove the move to play, or null if the side to move has no legal move
+ * @param score centipawns from the side to move's point of view, or a mate
+ *              score, see {@link #isMate()}
+ * @param depth the depth the iteration searched to, in plies
+ * @param nodes positions visited by the whole search so far
+ * @param nanos time taken by the whole search so far
+ * @param pv the principal variation: the line both sides are expected to play,
+ *           starting with the best move
+ */
+public record SearchResult(ChessMove bestMove, int score, int depth, long nodes, long nanos, List<ChessMove> pv) {
+
+    /**
+     * @return true if the score is a forced mate, for the side to move if positive
+     */
+    public boolean isMate() {
+        return Math.abs(score) >= Search.MATE - Search.MAX_PLY;
+    }
+
+    /**
+     * @return moves until mate, negative when the side to move is getting mated
+     */
+    public int mateIn() {
+        int plies = Search.MATE - Math.abs(score);
+        return score > 0 ? (plies + 1) / 2 : -(plies / 2);
+    }
+
+    public long millis() {
+        return nanos / 1_000_000;
+    }
+
+    /**
+     * @return nodes searched per second
+     */
+    public long nps() {
+        //in floating point, as nodes times a billion overflows a long past about 9.2e9 nodes
+        return (long) (nodes * 1e9 / Math.max(1, nanos));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder();
+        line.append("depth ").append(depth)
+                .append(" score ").append(isMate() ? "mate " + mateIn() : "cp " + score)
+                .append(" nodes ").append(nodes)
+                .append(" nps ").append(nps())
+                .append(" time ").append(millis())
+                .append(" pv");
+        for (ChessMove move : pv) {
+            line.append(' ');
+            appendMove(line, move);
+        }
+        return line.toString();
+    }
+
+    /**
+     * @return the move in coordinate notation, as in e2e4 or e7e8q
+     */
+    static String coordinates(ChessMove move) {
+        StringBuilder text = new StringBuilder(5);
+        appendMove(text, move);
+        return text.toString();
+    }
+
+    private static void appendMove(StringBuilder line, ChessMove move) {
+        appendSquare(line, move.startPosition());
+        appendSquare(line, move.endPosition());
+        if (move.promotionPiece() != null) {
+            line.append(switch (move.promotionPiece()) {
+                case QUEEN -> 'q';
+                case ROOK -> 'r';
+                case BISHOP -> 'b';
+                default -> 'n';
+            });
+        }
+    }
+
+    private static void appendSquare(StringBuilder line, ChessPosition position) {
+        line.append((char) ('a' + position.getColumn() - 1)).append(position.getRow());
+    }
+}
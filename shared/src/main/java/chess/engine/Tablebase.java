@@ -0,0 +1,215 @@
+package chess.engine;
+
+import chess.Bitboards;
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exact results for endgames of three and four pieces, read from table files
+ * without loading them: a king and a queen, rook or pawn against a lone king,
+ * king and queen against king and rook, and king, bishop and knight against
+ * a lone king.
+ * <p>
+ * There is one file per ending, named as in {@code KQKR.tb}, made by
+ * {@link TablebaseGenerator}. The name lists the pieces of the side the
+ * table counts as white, then those of the side it counts as black; games
+ * where the colors are the other way round are looked up with the board
+ * turned around. A file holds one byte for every placement of the pieces and
+ * side to move, indexed by the side to move and then each piece's square,
+ * six bits apiece, in the order of the name. A byte is the side to move's
+ * distance to mate: 0 for a draw, a positive number of plies for a win and,
+ * for a loss, the plies until it is mated plus one, negated.
+ * <p>
+ * The files are memory-mapped, so a probe is a few arithmetic operations and
+ * one read, and one instance may be shared by any number of threads.
+ */
+public final class Tablebase {
+
+    /** What {@link #probe(ChessGame)} gives for a position the tables don't cover. */
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    public static final String EXTENSION = ".tb";
+
+    /** The most pieces, kings included, of any ending with a table. */
+    public static final int MAX_PIECES = 4;
+
+    //every ending with a table, each after the endings its captures and promotions lead to
+    static final List<Ending> ENDINGS = List.of(
+            Ending.of("KQK"), Ending.of("KRK"), Ending.of("KPK"), Ending.of("KQKR"), Ending.of("KBNK"));
+
+    /**
+     * The pieces of an ending, besides the kings, of the side counted as white
+     * ("strong") and the side counted as black ("weak").
+     */
+    record Ending(String name, List<ChessPiece.PieceType> strong, List<ChessPiece.PieceType> weak) {
+
+        static Ending of(String name) {
+            int weakKing = name.indexOf('K', 1);
+            if (!name.startsWith("K") || weakKing < 0) {
+                throw new IllegalArgumentException("Not an ending: " + name);
+            }
+            return new Ending(name, types(name.substring(1, weakKing)), types(name.substring(weakKing + 1)));
+        }
+
+        private static List<ChessPiece.PieceType> types(String letters) {
+            List<ChessPiece.PieceType> types = new ArrayList<>();
+            for (char letter : letters.toCharArray()) {
+                types.add(switch (letter) {
+                    case 'Q' -> ChessPiece.PieceType.QUEEN;
+                    case 'R' -> ChessPiece.PieceType.ROOK;
+                    case 'B' -> ChessPiece.PieceType.BISHOP;
+                    case 'N' -> ChessPiece.PieceType.KNIGHT;
+                    case 'P' -> ChessPiece.PieceType.PAWN;
+                    default -> throw new IllegalArgumentException("Not a piece: " + letter);
+                });
+            }
+            return types;
+        }
+
+        int pieces() {
+            return 2 + strong.size() + weak.size();
+        }
+
+        //side to move, then six bits for each piece's square
+        int positions() {
+            return 1 << (6 * pieces() + 1);
+        }
+    }
+
+    private final ByteBuffer[] tables;
+
+    private Tablebase(ByteBuffer[] tables) {
+        this.tables = tables;
+    }
+
+    /**
+     * Maps the tables found in a directory. Endings without a file there are
+     * left unknown.
+     *
+     * @throws IOException if a table can't be read or is the wrong size
+     */
+    public static Tablebase open(Path directory) throws IOException {
+        ByteBuffer[] tables = new ByteBuffer[ENDINGS.size()];
+        for (int i = 0; i < ENDINGS.size(); i++) {
+            Ending ending = ENDINGS.get(i);
+            Path path = directory.resolve(ending.name() + EXTENSION);
+            if (!Files.exists(path)) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (channel.size() != ending.positions()) {
+                    throw new IOException("Not a tablebase: " + path);
+                }
+                tables[i] = channel.map(FileChannel.MapMode.READ_ONLY, 0, ending.positions());
+            }
+        }
+        return new Tablebase(tables);
+    }
+
+    /**
+     * @return how many of the endings have a table
+     */
+    public int tables() {
+        int count = 0;
+        for (ByteBuffer table : tables) {
+            if (table != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Looks up the game's current position. Castling rights are ignored, as
+     * the tables have no room for them; en passant can't come up with at most
+     * one pawn.
+     *
+     * @return the side to move's distance to mate as stored in the table, see
+     * {@link #isWin(int)}, {@link #isLoss(int)} and {@link #plies(int)}, or
+     * {@link #UNKNOWN} if the position isn't one the tables cover
+     */
+    public int probe(ChessGame game) {
+        ChessBoard board = game.getBoard();
+        int pieces = Long.bitCount(board.getOccupied());
+        if (pieces > MAX_PIECES) {
+            return UNKNOWN;
+        }
+        for (int i = 0; i < ENDINGS.size(); i++) {
+            Ending ending = ENDINGS.get(i);
+            if (tables[i] == null || ending.pieces() != pieces) {
+                continue;
+            }
+            for (ChessGame.TeamColor strong : ChessGame.TeamColor.values()) {
+                int index = index(board, ending, strong, game.getTeamTurn() == strong);
+                if (index >= 0) {
+                    return tables[i].get(index);
+                }
+            }
+        }
+        return UNKNOWN;
+    }
+
+    public static boolean isWin(int value) {
+        return value != UNKNOWN && value > 0;
+    }
+
+    public static boolean isLoss(int value) {
+        return value != UNKNOWN && value < 0;
+    }
+
+    /**
+     * @return plies until mate for a win or loss, 0 for a draw
+     */
+    public static int plies(int value) {
+        return value < 0 ? -value - 1 : value;
+    }
+
+    /**
+     * @param squares each piece's square, in the order of the ending's name
+     */
+    static int index(boolean strongToMove, int... squares) {
+        int index = strongToMove ? 0 : 1;
+        for (int square : squares) {
+            index = index << 6 | square;
+        }
+        return index;
+    }
+
+    //the board's index in the ending's table with the given side as the strong one, or -1 if it isn't that ending
+    private static int index(ChessBoard board, Ending ending, ChessGame.TeamColor strong, boolean strongToMove) {
+        //turning the board around swaps the colors, so the strong side is white in the table
+        int flip = strong == ChessGame.TeamColor.WHITE ? 0 : 56;
+        int[] squares = new int[ending.pieces()];
+        squares[0] = board.findKing(strong) ^ flip;
+        squares[1] = board.findKing(strong.opponent()) ^ flip;
+        int next = 2;
+        for (ChessGame.TeamColor side : new ChessGame.TeamColor[]{strong, strong.opponent()}) {
+            List<ChessPiece.PieceType> types = side == strong ? ending.strong() : ending.weak();
+            long left = board.getPieces(side) & ~board.getPieces(side, ChessPiece.PieceType.KING);
+            for (ChessPiece.PieceType type : types) {
+                //of two alike, the lower square comes first
+                long pieces = left & board.getPieces(side, type);
+                if (pieces == 0) {
+                    return -1;
+                }
+                int square = Bitboards.lowestSquare(pieces);
+                left &= ~Bitboards.bit(square);
+                squares[next++] = square ^ flip;
+            }
+            if (left != 0) {
+                return -1;
+            }
+        }
+        return index(strongToMove, squares);
+    }
+}
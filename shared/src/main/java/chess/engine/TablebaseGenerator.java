@@ -0,0 +1,527 @@
+package chess.engine;
+
+import chess.Attacks;
+import chess.Bitboards;
+import chess.ChessGame;
+import chess.ChessPiece;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Makes the {@link Tablebase} files by retrograde analysis.
+ * <p>
+ * Each ending is solved in two steps. First every position's moves are
+ * generated once: moves that stay in the ending are counted, and captures
+ * and promotions, which leave it, are looked up in the tables of the ending
+ * they lead to, solved before this one, or are draws if what is left can't
+ * mate. That finds the checkmates and stalemates, and every position whose
+ * result a capture or promotion already settles.
+ * <p>
+ * Then positions are settled in order of distance to mate. Taking back a
+ * move from a position lost in n plies gives positions won in n + 1; taking
+ * one back from a position won in n counts off one of the moves of the
+ * position it came from, which is lost once every move it has leads to a win
+ * for the other side and none leaves the ending for anything better.
+ * Whatever is left when nothing more can be settled is a draw.
+ * <p>
+ * Run from the command line as {@code TablebaseGenerator <directory>} to
+ * write all the tables there.
+ */
+public final class TablebaseGenerator {
+
+    //mate distances must fit a byte, with room for the sign
+    private static final int MAX_PLIES = 126;
+    private static final byte ILLEGAL = -1;
+    private static final byte SETTLED = -2;
+
+    //the tables solved so far, for looking up captures and promotions
+    private final Map<String, byte[]> solved = new HashMap<>();
+
+    /**
+     * Solves every ending, each after those its captures and promotions lead to.
+     *
+     * @return the tables, in the order of {@link Tablebase#ENDINGS}
+     */
+    public byte[][] generateAll() {
+        byte[][] tables = new byte[Tablebase.ENDINGS.size()][];
+        for (int i = 0; i < tables.length; i++) {
+            Tablebase.Ending ending = Tablebase.ENDINGS.get(i);
+            tables[i] = solved.computeIfAbsent(ending.name(), name -> new Solver(ending).solve());
+        }
+        return tables;
+    }
+
+    /**
+     * Writes every table to the directory, replacing any there, creating the
+     * directory if need be.
+     *
+     * @return the tables written, in the order of {@link Tablebase#ENDINGS}
+     */
+    public byte[][] writeAll(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        byte[][] tables = generateAll();
+        for (int i = 0; i < tables.length; i++) {
+            Files.write(directory.resolve(Tablebase.ENDINGS.get(i).name() + Tablebase.EXTENSION), tables[i]);
+        }
+        return tables;
+    }
+
+    //the value for the side to move of a position in an ending solved already, as stored in the tables
+    private int probeSolved(int count, boolean[] white, ChessPiece.PieceType[] types, int[] squares,
+                            boolean whiteToMove) {
+        if (isDrawnMaterial(count, types)) {
+            return 0;
+        }
+        for (Tablebase.Ending ending : Tablebase.ENDINGS) {
+            byte[] table = solved.get(ending.name());
+            if (table == null || ending.pieces() != count) {
+                continue;
+            }
+            for (boolean strongIsWhite : new boolean[]{true, false}) {
+                int index = index(ending, count, white, types, squares, strongIsWhite, whiteToMove == strongIsWhite);
+                if (index >= 0) {
+                    return table[index];
+                }
+            }
+        }
+        StringBuilder material = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            material.append(white[i] ? "" : "-").append(types[i]).append(' ');
+        }
+        throw new IllegalStateException("No table solved yet for " + material.toString().trim());
+    }
+
+    //kings alone, or with one knight or bishop between them
+    private static boolean isDrawnMaterial(int count, ChessPiece.PieceType[] types) {
+        int minors = 0;
+        for (int i = 0; i < count; i++) {
+            switch (types[i]) {
+                case KING -> { }
+                case KNIGHT, BISHOP -> minors++;
+                default -> {
+                    return false;
+                }
+            }
+        }
+        return minors <= 1;
+    }
+
+    //as Tablebase finds a board's index, for pieces given as lists
+    private static int index(Tablebase.Ending ending, int count, boolean[] white, ChessPiece.PieceType[] types,
+                             int[] squares, boolean strongIsWhite, boolean strongToMove) {
+        int flip = strongIsWhite ? 0 : 56;
+        int[] ordered = new int[ending.pieces()];
+        boolean[] used = new boolean[count];
+        int next = 0;
+        for (boolean strongSide : new boolean[]{true, false}) {
+            boolean sideIsWhite = strongSide == strongIsWhite;
+            int king = find(count, white, types, squares, used, sideIsWhite, ChessPiece.PieceType.KING);
+            ordered[next++] = squares[king] ^ flip;
+        }
+        for (boolean strongSide : new boolean[]{true, false}) {
+            boolean sideIsWhite = strongSide == strongIsWhite;
+            for (ChessPiece.PieceType type : strongSide ? ending.strong() : ending.weak()) {
+                int piece = find(count, white, types, squares, used, sideIsWhite, type);
+                if (piece < 0) {
+                    return -1;
+                }
+                ordered[next++] = squares[piece] ^ flip;
+            }
+        }
+        for (boolean isUsed : used) {
+            if (!isUsed) {
+                return -1;
+            }
+        }
+        return Tablebase.index(strongToMove, ordered);
+    }
+
+    //the unused piece of that color and type on the lowest square, marked used, or -1
+    private static int find(int count, boolean[] white, ChessPiece.PieceType[] types, int[] squares, boolean[] used,
+                            boolean isWhite, ChessPiece.PieceType type) {
+        int found = -1;
+        for (int i = 0; i < count; i++) {
+            if (!used[i] && white[i] == isWhite && types[i] == type && (found < 0 || squares[i] < squares[found])) {
+                found = i;
+            }
+        }
+        if (found >= 0) {
+            used[found] = true;
+        }
+        return found;
+    }
+
+    //one ending's tables while they are worked out; the strong side is white
+    private final class Solver {
+
+        private final Tablebase.Ending ending;
+        private final int pieces;
+        private final int positions;
+        private final ChessPiece.PieceType[] types;
+        private final boolean[] white;
+
+        private final byte[] table;
+        //moves within the ending not yet known to lose, ILLEGAL, or SETTLED once in the table
+        private final byte[] remaining;
+        //the ply a position is to be settled at plus one, negated for a loss
+        private final byte[] pending;
+        //positions with a move out of the ending that doesn't lose, so they can't be lost
+        private final BitSet escapes;
+        //the longest a position's moves out of the ending put off being mated, in plies
+        private final byte[] leavingLoss;
+        //the positions scheduled for each ply, some since rescheduled sooner
+        private final int[][] queues = new int[MAX_PLIES + 1][];
+        private final int[] queued = new int[MAX_PLIES + 1];
+
+        //scratch space for one position and the position after a move
+        private final int[] squares;
+        private final int[] after;
+        private final boolean[] afterWhite;
+        private final ChessPiece.PieceType[] afterTypes;
+
+        //what scanning a position's moves found
+        private int moves;
+        private int inEnding;
+        private int bestWin;
+        private int longestLoss;
+        private boolean draws;
+
+        Solver(Tablebase.Ending ending) {
+            this.ending = ending;
+            pieces = ending.pieces();
+            positions = ending.positions();
+            types = new ChessPiece.PieceType[pieces];
+            white = new boolean[pieces];
+            types[0] = ChessPiece.PieceType.KING;
+            white[0] = true;
+            types[1] = ChessPiece.PieceType.KING;
+            int next = 2;
+            for (ChessPiece.PieceType type : ending.strong()) {
+                types[next] = type;
+                white[next++] = true;
+            }
+            for (ChessPiece.PieceType type : ending.weak()) {
+                types[next++] = type;
+            }
+            table = new byte[positions];
+            remaining = new byte[positions];
+            pending = new byte[positions];
+            escapes = new BitSet(positions);
+            leavingLoss = new byte[positions];
+            squares = new int[pieces];
+            after = new int[pieces];
+            afterWhite = new boolean[pieces];
+            afterTypes = new ChessPiece.PieceType[pieces];
+        }
+
+        byte[] solve() {
+            int lastPly = 0;
+            for (int index = 0; index < positions; index++) {
+                decode(index);
+                if (!isLegal(isWhiteToMove(index))) {
+                    remaining[index] = ILLEGAL;
+                    continue;
+                }
+                scan(isWhiteToMove(index));
+                remaining[index] = (byte) inEnding;
+                leavingLoss[index] = (byte) longestLoss;
+                if (moves == 0) {
+                    //mated, or stalemated, which is a draw
+                    if (isInCheck(isWhiteToMove(index))) {
+                        lastPly = schedule(index, false, 0, lastPly);
+                    } else {
+                        escapes.set(index);
+                    }
+                    continue;
+                }
+                if (bestWin != Integer.MAX_VALUE) {
+                    escapes.set(index);
+                    lastPly = schedule(index, true, bestWin, lastPly);
+                } else if (draws) {
+                    escapes.set(index);
+                } else if (inEnding == 0) {
+                    lastPly = schedule(index, false, longestLoss, lastPly);
+                }
+            }
+
+            for (int ply = 0; ply <= lastPly; ply++) {
+                //settling a position can queue more for this same ply
+                for (int i = 0; i < queued[ply]; i++) {
+                    int index = queues[ply][i];
+                    int code = pending[index];
+                    if (remaining[index] == SETTLED || (code != ply + 1 && code != -ply - 1)) {
+                        continue;
+                    }
+                    boolean won = code > 0;
+                    table[index] = (byte) (won ? ply : -ply - 1);
+                    remaining[index] = SETTLED;
+                    lastPly = settlePredecessors(index, won, ply, lastPly);
+                }
+                queues[ply] = null;
+            }
+            return table;
+        }
+
+        //takes back each move that could have led to a newly settled position
+        private int settlePredecessors(int index, boolean won, int ply, int lastPly) {
+            boolean whiteToMove = isWhiteToMove(index);
+            decode(index);
+            long occupied = occupied();
+            for (int piece = 0; piece < pieces; piece++) {
+                //only the side that just moved can take a move back
+                if (white[piece] == whiteToMove) {
+                    continue;
+                }
+                int square = squares[piece];
+                long from = types[piece] == ChessPiece.PieceType.PAWN
+                        ? pawnOrigins(white[piece], square, occupied)
+                        : attacks(piece, occupied) & ~occupied;
+                for (; from != 0; from &= from - 1) {
+                    squares[piece] = Bitboards.lowestSquare(from);
+                    int previous = Tablebase.index(!whiteToMove, squares);
+                    //legal and not yet settled, in one lookup, as these are what the solving spends its time on
+                    if (remaining[previous] >= 0) {
+                        lastPly = won ? countOff(previous, ply, lastPly) : schedule(previous, true, ply + 1, lastPly);
+                    }
+                }
+                squares[piece] = square;
+            }
+            return lastPly;
+        }
+
+        //one more of a position's moves leads to a win for the other side
+        private int countOff(int index, int ply, int lastPly) {
+            if (--remaining[index] != 0 || escapes.get(index) || pending[index] > 0) {
+                return lastPly;
+            }
+            return schedule(index, false, Math.max(ply + 1, leavingLoss[index]), lastPly);
+        }
+
+        private int schedule(int index, boolean win, int ply, int lastPly) {
+            if (ply > MAX_PLIES) {
+                throw new IllegalStateException(ending.name() + " has mates too long to store");
+            }
+            int code = pending[index];
+            if (win && (code <= 0 || code > ply + 1)) {
+                pending[index] = (byte) (ply + 1);
+            } else if (!win && code == 0) {
+                pending[index] = (byte) (-ply - 1);
+            } else {
+                return lastPly;
+            }
+            enqueue(ply, index);
+            return Math.max(lastPly, ply);
+        }
+
+        private void enqueue(int ply, int index) {
+            int[] queue = queues[ply];
+            if (queue == null) {
+                queue = queues[ply] = new int[1024];
+            } else if (queued[ply] == queue.length) {
+                queue = queues[ply] = Arrays.copyOf(queue, queue.length * 2);
+            }
+            queue[queued[ply]++] = index;
+        }
+
+        //squares a pawn standing on square could have come from without capturing
+        private static long pawnOrigins(boolean isWhite, int square, long occupied) {
+            int step = isWhite ? -8 : 8;
+            int row = Bitboards.row(square);
+            if (isWhite ? row < 3 : row > 6) {
+                return 0;
+            }
+            int single = square + step;
+            if (Bitboards.isSet(occupied, single)) {
+                return 0;
+            }
+            long origins = Bitboards.bit(single);
+            if (row == (isWhite ? 4 : 5) && !Bitboards.isSet(occupied, single + step)) {
+                origins |= Bitboards.bit(single + step);
+            }
+            return origins;
+        }
+
+        //generates the side to move's moves from the decoded position, filling in the scan results
+        private void scan(boolean whiteToMove) {
+            moves = 0;
+            inEnding = 0;
+            bestWin = Integer.MAX_VALUE;
+            longestLoss = 0;
+            draws = false;
+            long occupied = occupied();
+            long own = 0;
+            long enemy = 0;
+            for (int piece = 0; piece < pieces; piece++) {
+                if (white[piece] == whiteToMove) {
+                    own |= Bitboards.bit(squares[piece]);
+                } else {
+                    enemy |= Bitboards.bit(squares[piece]);
+                }
+            }
+            boolean inCheck = isAttacked(kingOf(whiteToMove), !whiteToMove, occupied, -1);
+            for (int piece = 0; piece < pieces; piece++) {
+                if (white[piece] != whiteToMove) {
+                    continue;
+                }
+                int from = squares[piece];
+                //out of check, only the king or a pinned piece can move into it
+                boolean safe = !inCheck && types[piece] != ChessPiece.PieceType.KING
+                        && !isAttacked(kingOf(whiteToMove), !whiteToMove, occupied & ~Bitboards.bit(from), -1);
+                if (types[piece] != ChessPiece.PieceType.PAWN) {
+                    for (long targets = attacks(piece, occupied) & ~own; targets != 0; targets &= targets - 1) {
+                        move(whiteToMove, piece, Bitboards.lowestSquare(targets), null, occupied, enemy, safe);
+                    }
+                    continue;
+                }
+                int step = whiteToMove ? 8 : -8;
+                long targets = Attacks.pawnAttacks(whiteToMove ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK,
+                        from) & enemy;
+                if (!Bitboards.isSet(occupied, from + step)) {
+                    targets |= Bitboards.bit(from + step);
+                    int start = whiteToMove ? 2 : 7;
+                    if (Bitboards.row(from) == start && !Bitboards.isSet(occupied, from + 2 * step)) {
+                        targets |= Bitboards.bit(from + 2 * step);
+                    }
+                }
+                for (; targets != 0; targets &= targets - 1) {
+                    int to = Bitboards.lowestSquare(targets);
+                    int lastRow = whiteToMove ? 8 : 1;
+                    if (Bitboards.row(to) != lastRow) {
+                        move(whiteToMove, piece, to, null, occupied, enemy, safe);
+                        continue;
+                    }
+                    for (ChessPiece.PieceType promotion : PROMOTIONS) {
+                        move(whiteToMove, piece, to, promotion, occupied, enemy, safe);
+                    }
+                }
+            }
+        }
+
+        //one move, if it is legal, which it is known to be when safe: counted if it stays in the ending, or looked up if it leaves
+        private void move(boolean whiteToMove, int piece, int to, ChessPiece.PieceType promotion,
+                          long occupied, long enemy, boolean safe) {
+            int captured = -1;
+            if (Bitboards.isSet(enemy, to)) {
+                for (int other = 0; other < pieces; other++) {
+                    if (squares[other] == to) {
+                        captured = other;
+                    }
+                }
+            }
+            int from = squares[piece];
+            squares[piece] = to;
+            long occupiedAfter = occupied & ~Bitboards.bit(from) | Bitboards.bit(to);
+            boolean legal = safe || !isAttacked(kingOf(whiteToMove), !whiteToMove, occupiedAfter, captured);
+            if (legal) {
+                moves++;
+                if (captured < 0 && promotion == null) {
+                    inEnding++;
+                } else {
+                    leave(whiteToMove, piece, promotion, captured);
+                }
+            }
+            squares[piece] = from;
+        }
+
+        //a capture or promotion, scored for the side making it from the ending it leads to
+        private void leave(boolean whiteToMove, int piece, ChessPiece.PieceType promotion, int captured) {
+            int count = 0;
+            for (int other = 0; other < pieces; other++) {
+                if (other == captured) {
+                    continue;
+                }
+                after[count] = squares[other];
+                afterWhite[count] = white[other];
+                afterTypes[count++] = other == piece && promotion != null ? promotion : types[other];
+            }
+            int value = probeSolved(count, afterWhite, afterTypes, after, !whiteToMove);
+            if (Tablebase.isLoss(value)) {
+                bestWin = Math.min(bestWin, Tablebase.plies(value) + 1);
+            } else if (Tablebase.isWin(value)) {
+                longestLoss = Math.max(longestLoss, Tablebase.plies(value) + 1);
+            } else {
+                draws = true;
+            }
+        }
+
+        private boolean isLegal(boolean whiteToMove) {
+            long occupied = occupied();
+            if (Long.bitCount(occupied) != pieces
+                    || Bitboards.isSet(Attacks.kingAttacks(squares[0]), squares[1])) {
+                return false;
+            }
+            for (int piece = 2; piece < pieces; piece++) {
+                int row = Bitboards.row(squares[piece]);
+                if (types[piece] == ChessPiece.PieceType.PAWN && (row == 1 || row == 8)) {
+                    return false;
+                }
+            }
+            //the side that just moved can't have left its king in check
+            return !isInCheck(!whiteToMove);
+        }
+
+        private boolean isInCheck(boolean isWhite) {
+            return isAttacked(kingOf(isWhite), !isWhite, occupied(), -1);
+        }
+
+        private int kingOf(boolean isWhite) {
+            return squares[isWhite ? 0 : 1];
+        }
+
+        //whether a side's pieces, apart from one just captured, attack the square
+        private boolean isAttacked(int square, boolean byWhite, long occupied, int captured) {
+            for (int piece = 0; piece < pieces; piece++) {
+                if (white[piece] == byWhite && piece != captured && Bitboards.isSet(attacks(piece, occupied), square)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private long attacks(int piece, long occupied) {
+            return types[piece] == ChessPiece.PieceType.PAWN
+                    ? Attacks.pawnAttacks(white[piece] ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK,
+                    squares[piece])
+                    : Attacks.attacks(types[piece], squares[piece], occupied);
+        }
+
+        private long occupied() {
+            long occupied = 0;
+            for (int piece = 0; piece < pieces; piece++) {
+                occupied |= Bitboards.bit(squares[piece]);
+            }
+            return occupied;
+        }
+
+        private void decode(int index) {
+            for (int piece = pieces - 1; piece >= 0; piece--) {
+                squares[piece] = index & 63;
+                index >>>= 6;
+            }
+        }
+
+        private boolean isWhiteToMove(int index) {
+            return index >>> (6 * pieces) == 0;
+        }
+    }
+
+    private static final List<ChessPiece.PieceType> PROMOTIONS = List.of(ChessPiece.PieceType.QUEEN,
+            ChessPiece.PieceType.ROOK, ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.KNIGHT);
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: TablebaseGenerator <directory>");
+            return;
+        }
+        long start = System.nanoTime();
+        new TablebaseGenerator().writeAll(Path.of(args[0]));
+        System.out.printf("wrote %d tables in %d ms%n", Tablebase.ENDINGS.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,207 @@
+package chess.engine;
+
+import chess.Move;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size cache of search results by position key, which any number of
+ * searches may share without locking.
+ * <p>
+ * Entries are two longs in one flat array: the packed result, and the
+ * position key XORed with it. The two are written separately, so a reader
+ * racing a writer can see one half old and one half new, but then the key
+ * doesn't check out and the entry is treated as a miss. Entries come in
+ * buckets of four, one cache line, and a new result replaces the entry in
+ * its bucket that is worth least: the one left by the oldest search, then
+ * the shallowest.
+ * <p>
+ * The memory used is set when the table is made and never changes.
+ */
+public class TranspositionTable {
+
+    public static final int UPPER_BOUND = 1;
+    public static final int LOWER_BOUND = 2;
+    public static final int EXACT = 3;
+
+    private static final int BUCKET_ENTRIES = 4;
+    private static final int BUCKET_LONGS = BUCKET_ENTRIES * 2;
+    private static final int BUCKET_BYTES = BUCKET_LONGS * Long.BYTES;
+
+    //opaque access, so each long is read and written whole even where plain longs may tear
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    //packed result: move in bits 0-15, score 16-31, depth 32-39, bound 40-41, age 42-49
+    private static final int SCORE_SHIFT = 16;
+    private static final int DEPTH_SHIFT = 32;
+    private static final int BOUND_SHIFT = 40;
+    private static final int AGE_SHIFT = 42;
+    private static final int AGE_MASK = 0xFF;
+
+    private final long[] slots;
+    private final long bucketMask;
+    private volatile int age;
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * @param megabytes the memory to use, rounded down to a power of two
+     */
+    public TranspositionTable(int megabytes) {
+        if (megabytes < 1) {
+            throw new IllegalArgumentException("Table size must be at least 1 MB");
+        }
+        long buckets = Long.highestOneBit((long) megabytes * 1024 * 1024 / BUCKET_BYTES);
+        if (buckets * BUCKET_LONGS > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Table size too large: " + megabytes + " MB");
+        }
+        slots = new long[(int) (buckets * BUCKET_LONGS)];
+        bucketMask = buckets - 1;
+    }
+
+    /**
+     * @return the bytes taken by the entries
+     */
+    public long sizeBytes() {
+        return (long) slots.length * Long.BYTES;
+    }
+
+    /**
+     * Marks the start of a new search, so entries from earlier searches are
+     * replaced before those from this one.
+     */
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+    /**
+     * Empties the table and resets its statistics.
+     */
+    public void clear() {
+        Arrays.fill(slots, 0L);
+        probes.reset();
+        hits.reset();
+    }
+
+    /**
+     * @return the packed entry for the key, or 0 if there is none; read it with
+     * {@link #move(long)}, {@link #score(long)}, {@link #depth(long)} and {@link #bound(long)}
+     */
+    public long probe(long key) {
+        probes.increment();
+        int bucket = bucketIndex(key);
+        for (int i = bucket; i < bucket + BUCKET_LONGS; i += 2) {
+            long data = (long) SLOTS.getOpaque(slots, i + 1);
+            if (data != 0 && ((long) SLOTS.getOpaque(slots, i) ^ data) == key) {
+                hits.increment();
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Stores a search result. A result for the same position replaces the old
+     * one, keeping the old move if the new result has none.
+     *
+     * @param move the best move found, or {@link Move#NONE}
+     * @param score the score, which must fit in 16 bits
+     * @param depth the depth searched, 0 to 255
+     * @param bound {@link #EXACT}, {@link #LOWER_BOUND} or {@link #UPPER_BOUND}
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int bucket = bucketIndex(key);
+        int currentAge = age;
+        int target = bucket;
+        int worstValue = Integer.MAX_VALUE;
+        for (int i = bucket; i < bucket + BUCKET_LONGS; i += 2) {
+            long data = (long) SLOTS.getOpaque(slots, i + 1);
+            if (data == 0) {
+                target = i;
+                break;
+            }
+            if (((long) SLOTS.getOpaque(slots, i) ^ data) == key) {
+                target = i;
+                if (move == Move.NONE) {
+                    move = move(data);
+                }
+                break;
+            }
+            //entries from older searches go first, then shallower ones
+            int ageDistance = (currentAge - age(data)) & AGE_MASK;
+            int value = depth(data) - ageDistance * 256;
+            if (value < worstValue) {
+                worstValue = value;
+                target = i;
+            }
+        }
+        long data = (move & 0xFFFFL)
+                | ((score & 0xFFFFL) << SCORE_SHIFT)
+                | ((long) (depth & 0xFF) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) currentAge << AGE_SHIFT);
+        SLOTS.setOpaque(slots, target + 1, data);
+        SLOTS.setOpaque(slots, target, key ^ data);
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0xFFFF);
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> SCORE_SHIFT);
+    }
+
+    public static int depth(long data) {
+        return (int) ((data >>> DEPTH_SHIFT) & 0xFF);
+    }
+
+    public static int bound(long data) {
+        return (int) ((data >>> BOUND_SHIFT) & 3);
+    }
+
+    private static int age(long data) {
+        return (int) ((data >>> AGE_SHIFT) & AGE_MASK);
+    }
+
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the fraction of probes that found an entry, 0 if there were none
+     */
+    public double hitRate() {
+        long probeCount = probes.sum();
+        return probeCount == 0 ? 0 : (double) hits.sum() / probeCount;
+    }
+
+    /**
+     * @return how full the table is with entries from the current search, in
+     * parts per thousand, estimated from the first thousand entries
+     */
+    public int hashfull() {
+        int sampled = Math.min(1000, slots.length / 2);
+        int currentAge = age;
+        int used = 0;
+        for (int i = 0; i < sampled; i++) {
+            long data = (long) SLOTS.getOpaque(slots, i * 2 + 1);
+            if (data != 0 && age(data) == currentAge) {
+                used++;
+            }
+        }
+        return used * 1000 / sampled;
+    }
+
+    //the key's low bits pick the bucket, and all of it is checked on probe
+    private int bucketIndex(long key) {
+        return (int) (key & bucketMask) * BUCKET_LONGS;
+    }
+}
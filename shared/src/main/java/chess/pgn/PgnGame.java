@@ -0,0 +1,87 @@
+package chess.pgn;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.InvalidMoveException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One game from a PGN file: its tag pairs in file order, its main line as SAN
+ * strings, and its result ("1-0", "0-1", "1/2-1/2" or "*"). Comments,
+ * variations and annotation glyphs are not kept.
+ */
+public record PgnGame(Map<String, String> tags, List<String> moves, String result) {
+
+    public static final String WHITE_WINS = "1-0";
+    public static final String BLACK_WINS = "0-1";
+    public static final String DRAW = "1/2-1/2";
+    public static final String UNFINISHED = "*";
+
+    /**
+     * Builds the record of a game by naming each move in turn. The start game
+     * is played forward and ends in the final position.
+     *
+     * @param tags tag pairs to write, in order; Result is set from the final position
+     * @param start the position the moves start from
+     * @param moves the moves made, in order
+     * @throws IllegalArgumentException if a move is not legal when it is made
+     */
+    public static PgnGame fromMoves(Map<String, String> tags, ChessGame start, List<ChessMove> moves) {
+        List<String> san = new ArrayList<>(moves.size());
+        for (ChessMove move : moves) {
+            san.add(San.toSan(start, move));
+            try {
+                start.makeMove(move);
+            } catch (InvalidMoveException ex) {
+                throw new IllegalArgumentException(ex.getMessage());
+            }
+        }
+        Map<String, String> allTags = new LinkedHashMap<>(tags);
+        String result = result(start);
+        allTags.put("Result", result);
+        return new PgnGame(allTags, san, result);
+    }
+
+    /**
+     * @return the PGN result the game's position stands for; games that are
+     * still going, or that were resigned, are "*" since the winner isn't recorded
+     */
+    public static String result(ChessGame game) {
+        return switch (game.getGameStatus()) {
+            case CHECKMATE -> game.getTeamTurn() == ChessGame.TeamColor.WHITE ? BLACK_WINS : WHITE_WINS;
+            case STALEMATE, REPETITION, FIFTY_MOVES, INSUFFICIENT_MATERIAL -> DRAW;
+            default -> UNFINISHED;
+        };
+    }
+
+    /**
+     * Plays the main line out, from the FEN tag if there is one and the
+     * standard starting position otherwise.
+     *
+     * @return the game after the last move
+     * @throws IllegalArgumentException if the FEN or a move can't be read or isn't legal
+     */
+    public ChessGame play() {
+        ChessGame game = startingPosition();
+        for (String san : moves) {
+            try {
+                game.makeMove(San.parse(game, san));
+            } catch (InvalidMoveException ex) {
+                throw new IllegalArgumentException(ex.getMessage());
+            }
+        }
+        return game;
+    }
+
+    /**
+     * @return a new game in the position the main line starts from
+     */
+    public ChessGame startingPosition() {
+        String fen = tags.get("FEN");
+        return fen == null ? new ChessGame() : ChessGame.fromFen(fen);
+    }
+}
@@ -0,0 +1,257 @@
+package chess.pgn;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads games from PGN text one at a time, on demand. Only the game being
+ * returned is held in memory, so files of any size are read in memory
+ * proportional to their longest game. Input is buffered here, so the reader
+ * passed in doesn't need to be.
+ * <p>
+ * Moves are returned as SAN strings without being checked against the
+ * rules; {@link PgnGame#play()} does that. Comments, variations, annotation
+ * glyphs and move numbers are skipped.
+ */
+public class PgnReader implements Iterator<PgnGame>, Closeable {
+
+    private static final int EOF = -1;
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private int line = 1;
+    private PgnGame next;
+
+    public PgnReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @throws UncheckedIOException if the underlying reader fails
+     * @throws IllegalArgumentException if the text isn't well-formed PGN
+     */
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readGame();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return next != null;
+    }
+
+    /**
+     * @throws UncheckedIOException if the underlying reader fails
+     * @throws IllegalArgumentException if the text isn't well-formed PGN
+     */
+    @Override
+    public PgnGame next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        PgnGame game = next;
+        next = null;
+        return game;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    //a game is its tags then its movetext, ended by a result or by the next game's tags
+    private PgnGame readGame() throws IOException {
+        Map<String, String> tags = new LinkedHashMap<>();
+        List<String> moves = new ArrayList<>();
+        StringBuilder token = new StringBuilder(16);
+        while (true) {
+            int c = skipWhitespace();
+            if (c == EOF) {
+                if (tags.isEmpty() && moves.isEmpty()) {
+                    return null;
+                }
+                return new PgnGame(tags, moves, tags.getOrDefault("Result", PgnGame.UNFINISHED));
+            }
+            if (c == '[') {
+                if (!moves.isEmpty()) {
+                    //the next game started without this one giving a result
+                    return new PgnGame(tags, moves, tags.getOrDefault("Result", PgnGame.UNFINISHED));
+                }
+                read();
+                readTag(tags, token);
+            } else if (c == '{') {
+                skipComment();
+            } else if (c == ';' || c == '%') {
+                skipLine();
+            } else if (c == '(') {
+                skipVariation();
+            } else if (c == '$') {
+                read();
+                readSymbol(token);
+            } else {
+                readSymbol(token);
+                if (token.isEmpty()) {
+                    throw error("Unexpected character '" + (char) read() + "'");
+                }
+                String result = result(token);
+                if (result != null) {
+                    return new PgnGame(tags, moves, result);
+                }
+                String move = stripMoveNumber(token);
+                if (!move.isEmpty()) {
+                    moves.add(move);
+                }
+            }
+        }
+    }
+
+    private void readTag(Map<String, String> tags, StringBuilder token) throws IOException {
+        skipWhitespace();
+        readSymbol(token);
+        String name = token.toString();
+        if (name.isEmpty() || skipWhitespace() != '"') {
+            throw error("Malformed tag");
+        }
+        read();
+        token.setLength(0);
+        int c;
+        while ((c = read()) != '"') {
+            if (c == EOF || c == '\n') {
+                throw error("Unterminated tag value");
+            }
+            if (c == '\\') {
+                c = read();
+            }
+            token.append((char) c);
+        }
+        if (skipWhitespace() != ']') {
+            throw error("Malformed tag");
+        }
+        read();
+        tags.put(name, token.toString());
+    }
+
+    private static String result(StringBuilder token) {
+        String text = token.toString();
+        return switch (text) {
+            case PgnGame.WHITE_WINS, PgnGame.BLACK_WINS, PgnGame.DRAW, PgnGame.UNFINISHED -> text;
+            default -> null;
+        };
+    }
+
+    //"12." and "12..." are just numbers, and "12.e4" is a number and a move
+    private static String stripMoveNumber(StringBuilder token) {
+        int i = 0;
+        while (i < token.length() && Character.isDigit(token.charAt(i))) {
+            i++;
+        }
+        if (i == token.length() || (i > 0 && token.charAt(i) == '.')) {
+            while (i < token.length() && token.charAt(i) == '.') {
+                i++;
+            }
+            return token.substring(i);
+        }
+        return token.toString();
+    }
+
+    private void readSymbol(StringBuilder token) throws IOException {
+        token.setLength(0);
+        int c = peek();
+        while (c != EOF && isSymbolChar(c)) {
+            token.append((char) read());
+            c = peek();
+        }
+    }
+
+    private static boolean isSymbolChar(int c) {
+        return Character.isLetterOrDigit(c) || "_+#=:-/.!?*".indexOf(c) >= 0;
+    }
+
+    private void skipComment() throws IOException {
+        read();
+        int c;
+        while ((c = read()) != '}') {
+            if (c == EOF) {
+                throw error("Unterminated comment");
+            }
+        }
+    }
+
+    private void skipLine() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c != '\n' && c != EOF);
+    }
+
+    //variations nest, and may hold comments with parentheses in them
+    private void skipVariation() throws IOException {
+        read();
+        int depth = 1;
+        while (depth > 0) {
+            int c = peek();
+            if (c == EOF) {
+                throw error("Unterminated variation");
+            } else if (c == '{') {
+                skipComment();
+            } else if (c == ';') {
+                skipLine();
+            } else {
+                read();
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                }
+            }
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c = peek();
+        while (c != EOF && Character.isWhitespace(c)) {
+            read();
+            c = peek();
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        while (position == limit) {
+            int count = reader.read(buffer, 0, buffer.length);
+            if (count < 0) {
+                return EOF;
+            }
+            position = 0;
+            limit = count;
+        }
+        return buffer[position];
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if (c != EOF) {
+            position++;
+            if (c == '\n') {
+                line++;
+            }
+        }
+        return c;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " on line " + line);
+    }
+}
@@ -0,0 +1,242 @@
+package chess.pgn;
+
+import chess.Bitboards;
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.Move;
+import chess.MoveList;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Standard algebraic notation, the move format used in PGN: "e4", "Nbd7",
+ * "exd6", "O-O", "e8=Q+". Both directions work from the game's legal moves,
+ * so a move is only named or recognized if it is legal in the game's
+ * current position.
+ */
+public final class San {
+
+    private static final String FILES = "abcdefgh";
+
+    private San() {
+    }
+
+    /**
+     * Names a move in the game's current position. The game is left as it was.
+     *
+     * @param game the game the move is about to be made in
+     * @param move a legal move for the team whose turn it is
+     * @return the move in standard algebraic notation, with + or # for check and mate
+     * @throws IllegalArgumentException if the move is not legal
+     */
+    public static String toSan(ChessGame game, ChessMove move) {
+        MoveList moves = new MoveList();
+        game.legalMoves(moves);
+        int packed = moves.find(move);
+        if (packed == Move.NONE) {
+            throw new IllegalArgumentException("Illegal move: " + move);
+        }
+
+        StringBuilder san = new StringBuilder(8);
+        appendMove(san, game.getBoard(), moves, packed);
+
+        game.makeLegalMove(packed);
+        if (game.isInCheck(game.getTeamTurn())) {
+            game.legalMoves(moves);
+            san.append(moves.isEmpty() ? '#' : '+');
+        }
+        game.unmakeMove();
+        return san.toString();
+    }
+
+    private static void appendMove(StringBuilder san, ChessBoard board, MoveList moves, int packed) {
+        int flags = Move.flags(packed);
+        if (flags == Move.KING_CASTLE) {
+            san.append("O-O");
+            return;
+        }
+        if (flags == Move.QUEEN_CASTLE) {
+            san.append("O-O-O");
+            return;
+        }
+
+        int from = Move.from(packed);
+        int to = Move.to(packed);
+        ChessPiece.PieceType type = board.getPiece(from).getPieceType();
+        if (type == ChessPiece.PieceType.PAWN) {
+            if (Move.isCapture(packed)) {
+                san.append(FILES.charAt(from & 7));
+            }
+        } else {
+            san.append(letter(type));
+            appendDisambiguation(san, board, moves, packed, type);
+        }
+        if (Move.isCapture(packed)) {
+            san.append('x');
+        }
+        appendSquare(san, to);
+        if (Move.isPromotion(packed)) {
+            san.append('=').append(letter(Move.promotionType(packed)));
+        }
+    }
+
+    //file if that tells the pieces apart, else rank, else both
+    private static void appendDisambiguation(StringBuilder san, ChessBoard board, MoveList moves, int packed,
+                                             ChessPiece.PieceType type) {
+        int from = Move.from(packed);
+        boolean ambiguous = false;
+        boolean sameFile = false;
+        boolean sameRank = false;
+        for (int i = 0; i < moves.size(); i++) {
+            int other = moves.get(i);
+            int otherFrom = Move.from(other);
+            if (Move.to(other) != Move.to(packed) || otherFrom == from
+                    || board.getPiece(otherFrom).getPieceType() != type) {
+                continue;
+            }
+            ambiguous = true;
+            sameFile |= (otherFrom & 7) == (from & 7);
+            sameRank |= (otherFrom >>> 3) == (from >>> 3);
+        }
+        if (!ambiguous) {
+            return;
+        }
+        if (!sameFile) {
+            san.append(FILES.charAt(from & 7));
+        } else if (!sameRank) {
+            san.append((char) ('1' + (from >>> 3)));
+        } else {
+            appendSquare(san, from);
+        }
+    }
+
+    private static void appendSquare(StringBuilder san, int square) {
+        san.append(FILES.charAt(square & 7)).append((char) ('1' + (square >>> 3)));
+    }
+
+    /**
+     * Finds the legal move a SAN string names in the game's current position.
+     * Check, mate and annotation suffixes such as "+", "#" and "!?" are ignored,
+     * as are a missing "=" before a promotion piece and castling written with
+     * zeros.
+     *
+     * @return the move, not yet made
+     * @throws IllegalArgumentException if the string is malformed, or names no legal
+     * move or more than one
+     */
+    public static ChessMove parse(ChessGame game, String san) {
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        String text = san.substring(0, end);
+
+        MoveList moves = new MoveList();
+        game.legalMoves(moves);
+        if (text.equals("O-O") || text.equals("0-0")) {
+            return single(san, moves, move -> Move.flags(move) == Move.KING_CASTLE);
+        }
+        if (text.equals("O-O-O") || text.equals("0-0-0")) {
+            return single(san, moves, move -> Move.flags(move) == Move.QUEEN_CASTLE);
+        }
+
+        //read from the end: promotion piece, destination square, then what's left up front
+        ChessPiece.PieceType promotion = null;
+        if (end > 0 && Character.isUpperCase(text.charAt(end - 1))) {
+            promotion = pieceType(text.charAt(end - 1), san);
+            end--;
+            if (end > 0 && text.charAt(end - 1) == '=') {
+                end--;
+            }
+        }
+        if (end < 2) {
+            throw new IllegalArgumentException("Malformed move: " + san);
+        }
+        int to = square(text.charAt(end - 2), text.charAt(end - 1), san);
+        end -= 2;
+        if (end > 0 && text.charAt(end - 1) == 'x') {
+            end--;
+        }
+
+        int start = 0;
+        ChessPiece.PieceType type = ChessPiece.PieceType.PAWN;
+        if (end > 0 && Character.isUpperCase(text.charAt(0))) {
+            type = pieceType(text.charAt(0), san);
+            start = 1;
+        }
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= 'a' && c <= 'h') {
+                fromFile = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRank = c - '1';
+            } else {
+                throw new IllegalArgumentException("Malformed move: " + san);
+            }
+        }
+
+        ChessBoard board = game.getBoard();
+        ChessPiece.PieceType pieceType = type;
+        ChessPiece.PieceType promotionType = promotion;
+        int file = fromFile;
+        int rank = fromRank;
+        return single(san, moves, move -> {
+            int from = Move.from(move);
+            return Move.to(move) == to
+                    && board.getPiece(from).getPieceType() == pieceType
+                    && Move.promotionType(move) == promotionType
+                    && (file < 0 || (from & 7) == file)
+                    && (rank < 0 || (from >>> 3) == rank);
+        });
+    }
+
+    private static ChessMove single(String san, MoveList moves, IntPredicate filter) {
+        int found = Move.NONE;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (filter.test(move)) {
+                if (found != Move.NONE) {
+                    throw new IllegalArgumentException("Ambiguous move: " + san);
+                }
+                found = move;
+            }
+        }
+        if (found == Move.NONE) {
+            throw new IllegalArgumentException("Illegal move: " + san);
+        }
+        return Move.toChessMove(found);
+    }
+
+    private static int square(char file, char rank, String san) {
+        if (file < 'a' || file > 'h' || rank < '1' || rank > '8') {
+            throw new IllegalArgumentException("Malformed move: " + san);
+        }
+        return Bitboards.square(rank - '0', file - 'a' + 1);
+    }
+
+    private static ChessPiece.PieceType pieceType(char letter, String san) {
+        return switch (letter) {
+            case 'K' -> ChessPiece.PieceType.KING;
+            case 'Q' -> ChessPiece.PieceType.QUEEN;
+            case 'R' -> ChessPiece.PieceType.ROOK;
+            case 'B' -> ChessPiece.PieceType.BISHOP;
+            case 'N' -> ChessPiece.PieceType.KNIGHT;
+            default -> throw new IllegalArgumentException("Malformed move: " + san);
+        };
+    }
+
+    private static char letter(ChessPiece.PieceType type) {
+        return switch (type) {
+            case KING -> 'K';
+            case QUEEN -> 'Q';
+            case ROOK -> 'R';
+            case BISHOP -> 'B';
+            case KNIGHT -> 'N';
+            case PAWN -> 'P';
+        };
+    }
+}
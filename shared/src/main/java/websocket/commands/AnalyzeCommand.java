@@ -0,0 +1,23 @@
+package websocket.commands;
+
+public class AnalyzeCommand extends UserGameCommand {
+
+    //how many of the best moves to show lines for
+    private final Integer lines;
+    //plies from the start of the game of the position to analyze, or null for the current one
+    private final Integer ply;
+
+    public AnalyzeCommand(CommandType commandType, String authToken, Integer gameID, Integer lines, Integer ply) {
+        super(commandType, authToken, gameID);
+        this.lines = lines;
+        this.ply = ply;
+    }
+
+    public Integer getLines() {
+        return lines;
+    }
+
+    public Integer getPly() {
+        return ply;
+    }
+}
@@ -0,0 +1,48 @@
+package websocket.messages;
+
+import java.util.List;
+
+/**
+ * Progress of an analysis: sent as {@link ServerMessageType#ANALYSIS} after
+ * each depth the search finishes, then once more as
+ * {@link ServerMessageType#ANALYSIS_COMPLETE} when it stops. A position in
+ * the opening book isn't searched; its book moves come at once as a complete
+ * analysis of depth 0.
+ */
+public class AnalysisMessage extends ServerMessage {
+
+    private final int depth;
+    private final long nodes;
+    private final List<Line> lines;
+
+    /**
+     * One of the best moves and the play expected after it, best line first.
+     *
+     * @param centipawns the score from the side to move's point of view, or null for a mate
+     * @param mateIn moves until mate, negative when the side to move is getting mated, or null
+     * @param moves the line in standard algebraic notation
+     * @param bookPercent for a book move, its share of the weight of the position's
+     *                    book moves, or null for a searched line
+     */
+    public record Line(Integer centipawns, Integer mateIn, List<String> moves, Integer bookPercent) {
+    }
+
+    public AnalysisMessage(ServerMessageType type, int depth, long nodes, List<Line> lines) {
+        super(type, null);
+        this.depth = depth;
+        this.nodes = nodes;
+        this.lines = lines;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public List<Line> getLines() {
+        return lines;
+    }
+}
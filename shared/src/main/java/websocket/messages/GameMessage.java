@@ -1,9 +1,13 @@
 package websocket.messages;
 
 import chess.ChessGame;
+import chess.FenTypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
 
 public class GameMessage extends ServerMessage{
 
+    //sent as FEN, which is all a client needs to draw the board
+    @JsonAdapter(FenTypeAdapter.class)
     private final ChessGame game;
 
     public GameMessage(ServerMessageType type, ChessGame game) {
@@ -15,7 +15,9 @@ public class ServerMessage {
     public enum ServerMessageType {
         LOAD_GAME,
         ERROR,
-        NOTIFICATION
+        NOTIFICATION,
+        ANALYSIS,
+        ANALYSIS_COMPLETE
     }
 
     public ServerMessage(ServerMessageType type, String message) {
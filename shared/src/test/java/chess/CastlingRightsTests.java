@@ -0,0 +1,85 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class CastlingRightsTests {
+
+    private static final String ROOKS = "r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1";
+
+    @Test
+    @DisplayName("Moving the king loses both of its team's rights")
+    public void kingMoves() throws InvalidMoveException {
+        Assertions.assertEquals(ChessGame.BLACK_KINGSIDE | ChessGame.BLACK_QUEENSIDE, rightsAfter(ROOKS, "e1", "e2"));
+        Assertions.assertEquals(ChessGame.WHITE_KINGSIDE | ChessGame.WHITE_QUEENSIDE,
+                rightsAfter("r3k2r/8/8/8/8/8/8/R3K2R b KQkq - 0 1", "e8", "d8"));
+    }
+
+    @Test
+    @DisplayName("Moving a rook loses the right on its side only")
+    public void rookMoves() throws InvalidMoveException {
+        Assertions.assertEquals(ChessGame.ALL_CASTLING & ~ChessGame.WHITE_KINGSIDE, rightsAfter(ROOKS, "h1", "h4"));
+        Assertions.assertEquals(ChessGame.ALL_CASTLING & ~ChessGame.WHITE_QUEENSIDE, rightsAfter(ROOKS, "a1", "b1"));
+        Assertions.assertEquals(ChessGame.ALL_CASTLING & ~ChessGame.BLACK_QUEENSIDE,
+                rightsAfter("r3k2r/8/8/8/8/8/8/R3K2R b KQkq - 0 1", "a8", "a5"));
+    }
+
+    @Test
+    @DisplayName("A rook captured on its home square takes its side's right with it")
+    public void rookCaptured() throws InvalidMoveException {
+        //the capturing rook leaves its own home square too
+        Assertions.assertEquals(ChessGame.WHITE_KINGSIDE | ChessGame.BLACK_KINGSIDE, rightsAfter(ROOKS, "a1", "a8"));
+        Assertions.assertEquals(ChessGame.ALL_CASTLING & ~ChessGame.WHITE_KINGSIDE,
+                rightsAfter("r3k2r/8/8/8/8/8/6b1/R3K2R b KQkq - 0 1", "g2", "h1"));
+    }
+
+    @Test
+    @DisplayName("Other moves keep every right")
+    public void otherMoves() throws InvalidMoveException {
+        Assertions.assertEquals(ChessGame.ALL_CASTLING,
+                rightsAfter("r3k2r/8/8/8/8/8/4P3/R3K2R w KQkq - 0 1", "e2", "e4"));
+    }
+
+    @Test
+    @DisplayName("The en passant square is set only by a double pawn push, and only for one move")
+    public void enPassantSquare() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        Assertions.assertEquals(-1, game.getEnPassantSquare());
+        move(game, "e2", "e3");
+        Assertions.assertEquals(-1, game.getEnPassantSquare());
+        move(game, "d7", "d5");
+        Assertions.assertEquals(Bitboards.square(6, 4), game.getEnPassantSquare());
+        move(game, "g1", "f3");
+        Assertions.assertEquals(-1, game.getEnPassantSquare());
+        move(game, "d5", "d4");
+        Assertions.assertEquals(-1, game.getEnPassantSquare());
+        move(game, "c2", "c4");
+        Assertions.assertEquals(Bitboards.square(3, 3), game.getEnPassantSquare());
+
+        game.makeLegalMove(new ChessMove(square("d4"), square("c3"), null));
+        Assertions.assertEquals(-1, game.getEnPassantSquare());
+        game.unmakeMove();
+        Assertions.assertEquals(Bitboards.square(3, 3), game.getEnPassantSquare());
+    }
+
+    //the rights after the move, which makeMove and makeLegalMove have to agree on
+    private static int rightsAfter(String fen, String from, String to) throws InvalidMoveException {
+        ChessGame checked = ChessGame.fromFen(fen);
+        move(checked, from, to);
+        ChessGame unchecked = ChessGame.fromFen(fen);
+        unchecked.makeLegalMove(new ChessMove(square(from), square(to), null));
+        Assertions.assertEquals(checked.getCastlingRights(), unchecked.getCastlingRights());
+        unchecked.unmakeMove();
+        Assertions.assertEquals(ChessGame.fromFen(fen).getCastlingRights(), unchecked.getCastlingRights());
+        return checked.getCastlingRights();
+    }
+
+    private static void move(ChessGame game, String from, String to) throws InvalidMoveException {
+        game.makeMove(new ChessMove(square(from), square(to), null));
+    }
+
+    private static ChessPosition square(String name) {
+        return ChessPosition.of(name.charAt(1) - '0', name.charAt(0) - 'a' + 1);
+    }
+}
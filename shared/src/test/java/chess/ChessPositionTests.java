@@ -0,0 +1,38 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ChessPositionTests {
+
+    @Test
+    @DisplayName("Squares on the board share one position each")
+    public void sharedInstances() {
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                ChessPosition position = ChessPosition.of(row, col);
+                Assertions.assertSame(position, ChessPosition.of(row, col));
+                Assertions.assertSame(position, ChessPosition.ofIndex(position.index()));
+                Assertions.assertEquals(new ChessPosition(row, col), position);
+            }
+        }
+        //off the board there is nothing to share
+        Assertions.assertNotSame(ChessPosition.of(1, 9), ChessPosition.of(1, 9));
+        Assertions.assertEquals(new ChessPosition(0, 1), ChessPosition.of(0, 1));
+    }
+
+    @Test
+    @DisplayName("Moves to or from squares off the board are refused")
+    public void offBoard() {
+        ChessGame game = new ChessGame();
+        String start = game.toFen();
+        //column 9 of row 1 would otherwise index a2
+        Assertions.assertThrows(InvalidMoveException.class,
+                () -> game.makeMove(new ChessMove(ChessPosition.of(1, 9), ChessPosition.of(3, 9), null)));
+        Assertions.assertThrows(InvalidMoveException.class,
+                () -> game.makeMove(new ChessMove(ChessPosition.of(2, 1), ChessPosition.of(0, 1), null)));
+        Assertions.assertEquals(start, game.toFen());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ChessPosition.of(1, 9).index());
+    }
+}
@@ -0,0 +1,88 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class GameCodecTests {
+
+    @Test
+    @DisplayName("Starting position")
+    public void startingPosition() {
+        ChessGame game = new ChessGame();
+        byte[] bytes = GameCodec.encode(game);
+        Assertions.assertEquals(34, bytes.length);
+        assertSameGame(game, GameCodec.decode(bytes));
+    }
+
+    @Test
+    @DisplayName("State after moves survives a round trip")
+    public void afterMoves() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        int[][] moves = {{2, 5, 4, 5}, {8, 7, 6, 6}, {1, 7, 3, 6}, {6, 6, 8, 7}, {3, 6, 1, 7}, {7, 4, 5, 4}};
+        for (int[] move : moves) {
+            game.makeMove(new ChessMove(ChessPosition.of(move[0], move[1]), ChessPosition.of(move[2], move[3]), null));
+        }
+        ChessGame decoded = GameCodec.decode(GameCodec.encode(game));
+        assertSameGame(game, decoded);
+        Assertions.assertEquals("rnbqkbnr/ppp1pppp/8/3p4/4P3/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 4", decoded.toFen());
+    }
+
+    @Test
+    @DisplayName("Repetition is still detected after a round trip")
+    public void repetition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        int[][] moves = {{1, 7, 3, 6}, {8, 7, 6, 6}, {3, 6, 1, 7}, {6, 6, 8, 7}, {1, 7, 3, 6}, {8, 7, 6, 6}, {3, 6, 1, 7}};
+        for (int[] move : moves) {
+            game.makeMove(new ChessMove(ChessPosition.of(move[0], move[1]), ChessPosition.of(move[2], move[3]), null));
+        }
+        ChessGame decoded = GameCodec.decode(GameCodec.encode(game));
+        decoded.makeMove(new ChessMove(ChessPosition.of(6, 6), ChessPosition.of(8, 7), null));
+        Assertions.assertEquals(ChessGame.GameStatus.REPETITION, decoded.getGameStatus());
+    }
+
+    @Test
+    @DisplayName("Resigned games stay over")
+    public void resigned() {
+        ChessGame game = new ChessGame();
+        game.setGameOver(true);
+        ChessGame decoded = GameCodec.decode(GameCodec.encode(game));
+        Assertions.assertTrue(decoded.isResigned());
+        Assertions.assertEquals(ChessGame.GameStatus.RESIGNED, decoded.getGameStatus());
+    }
+
+    @Test
+    @DisplayName("Writes at the buffer position")
+    public void bufferPosition() {
+        ChessGame game = ChessGame.fromFen("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1");
+        ByteBuffer buffer = ByteBuffer.allocate(3 + GameCodec.encodedSize(game));
+        buffer.put(new byte[] {7, 7, 7});
+        GameCodec.write(game, buffer);
+        Assertions.assertFalse(buffer.hasRemaining());
+
+        buffer.position(3);
+        assertSameGame(game, GameCodec.read(buffer));
+        Assertions.assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    @DisplayName("Unreadable state is rejected")
+    public void invalid() {
+        byte[] bytes = GameCodec.encode(new ChessGame());
+        byte[] wrongVersion = bytes.clone();
+        wrongVersion[0] = 99;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> GameCodec.decode(wrongVersion));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> GameCodec.decode(Arrays.copyOf(bytes, bytes.length - 1)));
+    }
+
+    private static void assertSameGame(ChessGame expected, ChessGame actual) {
+        Assertions.assertEquals(expected, actual);
+        Assertions.assertEquals(expected.toFen(), actual.toFen());
+        Assertions.assertEquals(expected.positionKey(), actual.positionKey());
+        Assertions.assertArrayEquals(expected.getPositionHistory(), actual.getPositionHistory());
+    }
+}
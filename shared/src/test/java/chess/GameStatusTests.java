@@ -0,0 +1,141 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class GameStatusTests {
+
+    //both knights out and back, which brings the starting position round again
+    private static final String[][] KNIGHT_SHUFFLE = {{"g1", "f3"}, {"g8", "f6"}, {"f3", "g1"}, {"f6", "g8"}};
+
+    @Test
+    @DisplayName("Repetition is a draw on the third occurrence, not the second")
+    public void threefoldRepetition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        shuffle(game);
+        Assertions.assertEquals(ChessGame.GameStatus.ONGOING, game.getGameStatus());
+        Assertions.assertTrue(game.isRepeated());
+
+        shuffle(game);
+        Assertions.assertEquals(ChessGame.GameStatus.REPETITION, game.getGameStatus());
+        Assertions.assertTrue(game.isGameOver());
+        Assertions.assertThrows(InvalidMoveException.class, () -> move(game, "g1", "f3"));
+    }
+
+    @Test
+    @DisplayName("A position that recurs after a pawn move isn't a repetition")
+    public void irreversibleMoveResetsRepetition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        shuffle(game);
+        move(game, "e2", "e4");
+        move(game, "e7", "e5");
+        shuffle(game);
+        //the position after 1. e4 e5 has come up twice; the starting position's earlier two don't count
+        Assertions.assertEquals(ChessGame.GameStatus.ONGOING, game.getGameStatus());
+        shuffle(game);
+        Assertions.assertEquals(ChessGame.GameStatus.REPETITION, game.getGameStatus());
+    }
+
+    @Test
+    @DisplayName("Fifty moves is a draw at exactly 100 plies")
+    public void fiftyMoves() throws InvalidMoveException {
+        ChessGame game = ChessGame.fromFen("4k3/8/8/8/8/8/4P3/R3K3 w - - 98 80");
+        move(game, "a1", "a2");
+        Assertions.assertEquals(99, game.getHalfmoveClock());
+        Assertions.assertEquals(ChessGame.GameStatus.ONGOING, game.getGameStatus());
+        move(game, "e8", "d8");
+        Assertions.assertEquals(100, game.getHalfmoveClock());
+        Assertions.assertEquals(ChessGame.GameStatus.FIFTY_MOVES, game.getGameStatus());
+    }
+
+    @Test
+    @DisplayName("A pawn move or a capture resets the halfmove clock")
+    public void clockResets() throws InvalidMoveException {
+        ChessGame pawnMove = ChessGame.fromFen("4k3/8/8/8/8/8/4P3/R3K3 w - - 98 80");
+        move(pawnMove, "e2", "e3");
+        Assertions.assertEquals(0, pawnMove.getHalfmoveClock());
+
+        ChessGame capture = ChessGame.fromFen("4k3/8/8/8/8/8/r3P3/R3K3 w - - 98 80");
+        move(capture, "a1", "a2");
+        Assertions.assertEquals(0, capture.getHalfmoveClock());
+        move(capture, "e8", "d8");
+        Assertions.assertEquals(1, capture.getHalfmoveClock());
+    }
+
+    @Test
+    @DisplayName("The first move keeps the halfmove clock from the FEN")
+    public void clockCarriesOver() throws InvalidMoveException {
+        ChessGame game = ChessGame.fromFen("4k3/8/8/8/8/8/8/4K2R w K - 40 30");
+        //a rejected move changes nothing
+        Assertions.assertThrows(InvalidMoveException.class,
+                () -> game.makeMove(new ChessMove(ChessPosition.of(1, 8), ChessPosition.of(2, 7), null)));
+        Assertions.assertEquals(40, game.getHalfmoveClock());
+        Assertions.assertEquals(0, game.getPositionHistory().length);
+
+        game.makeMove(new ChessMove(ChessPosition.of(1, 8), ChessPosition.of(1, 7), null));
+        Assertions.assertEquals(41, game.getHalfmoveClock());
+        Assertions.assertEquals("4k3/8/8/8/8/8/8/4K1R1 b - - 41 30", game.toFen());
+    }
+
+    @Test
+    @DisplayName("Repetition is still found after the game is stored and loaded")
+    public void repetitionAfterReload() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        shuffle(game);
+
+        ChessGame decoded = GameCodec.decode(GameCodec.encode(game));
+        shuffle(decoded);
+        Assertions.assertEquals(ChessGame.GameStatus.REPETITION, decoded.getGameStatus());
+
+        ChessGame fromFen = ChessGame.fromFen(game.toFen());
+        fromFen.setPositionHistory(game.getPositionHistory());
+        shuffle(fromFen);
+        Assertions.assertEquals(ChessGame.GameStatus.REPETITION, fromFen.getGameStatus());
+
+        //the FEN alone has no history, so the earlier occurrences are forgotten
+        ChessGame fenOnly = ChessGame.fromFen(game.toFen());
+        shuffle(fenOnly);
+        Assertions.assertEquals(ChessGame.GameStatus.ONGOING, fenOnly.getGameStatus());
+    }
+
+    @Test
+    @DisplayName("The cached status is recomputed after a move, an unmake or a resignation")
+    public void statusCacheInvalidated() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        move(game, "f2", "f3");
+        move(game, "e7", "e5");
+        move(game, "g2", "g4");
+        //each status is read before the change, so a stale cached one would be returned after it
+        Assertions.assertEquals(ChessGame.GameStatus.ONGOING, game.getGameStatus());
+        game.makeLegalMove(new ChessMove(square("d8"), square("h4"), null));
+        Assertions.assertEquals(ChessGame.GameStatus.CHECKMATE, game.getGameStatus());
+        game.unmakeMove();
+        Assertions.assertEquals(ChessGame.GameStatus.ONGOING, game.getGameStatus());
+        move(game, "d8", "h4");
+        Assertions.assertEquals(ChessGame.GameStatus.CHECKMATE, game.getGameStatus());
+
+        game = new ChessGame();
+        Assertions.assertEquals(ChessGame.GameStatus.ONGOING, game.getGameStatus());
+        game.setGameOver(true);
+        Assertions.assertEquals(ChessGame.GameStatus.RESIGNED, game.getGameStatus());
+        Assertions.assertTrue(game.isGameOver());
+        game.setGameOver(false);
+        Assertions.assertEquals(ChessGame.GameStatus.ONGOING, game.getGameStatus());
+        Assertions.assertFalse(game.isGameOver());
+    }
+
+    private static void shuffle(ChessGame game) throws InvalidMoveException {
+        for (String[] squares : KNIGHT_SHUFFLE) {
+            move(game, squares[0], squares[1]);
+        }
+    }
+
+    private static void move(ChessGame game, String from, String to) throws InvalidMoveException {
+        game.makeMove(new ChessMove(square(from), square(to), null));
+    }
+
+    private static ChessPosition square(String name) {
+        return ChessPosition.of(name.charAt(1) - '0', name.charAt(0) - 'a' + 1);
+    }
+}
@@ -0,0 +1,142 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import passoff.chess.TestUtilities;
+
+import java.util.Map;
+
+/**
+ * Node counts for the standard perft reference positions. Castling rights come
+ * from the piece placement, which matches the published rights for each of
+ * these positions.
+ */
+public class PerftTests {
+
+    @Test
+    @DisplayName("Starting position")
+    public void startingPosition() {
+        ChessGame game = new ChessGame();
+        Assertions.assertEquals(20, Perft.perft(game, 1));
+        Assertions.assertEquals(400, Perft.perft(game, 2));
+        Assertions.assertEquals(8902, Perft.perft(game, 3));
+        Assertions.assertEquals(197281, Perft.perft(game, 4));
+    }
+
+    @Test
+    @DisplayName("Kiwipete")
+    public void kiwipete() {
+        ChessGame game = new ChessGame(ChessGame.TeamColor.WHITE, TestUtilities.loadBoard("""
+                |r| | | |k| | |r|
+                |p| |p|p|q|p|b| |
+                |b|n| | |p|n|p| |
+                | | | |P|N| | | |
+                | |p| | |P| | | |
+                | | |N| | |Q| |p|
+                |P|P|P|B|B|P|P|P|
+                |R| | | |K| | |R|
+                """));
+        Assertions.assertEquals(48, Perft.perft(game, 1));
+        Assertions.assertEquals(2039, Perft.perft(game, 2));
+        Assertions.assertEquals(97862, Perft.perft(game, 3));
+    }
+
+    @Test
+    @DisplayName("Rook and pawn endgame with en passant pins")
+    public void position3() {
+        ChessGame game = new ChessGame(ChessGame.TeamColor.WHITE, TestUtilities.loadBoard("""
+                | | | | | | | | |
+                | | |p| | | | | |
+                | | | |p| | | | |
+                |K|P| | | | | |r|
+                | |R| | | |p| |k|
+                | | | | | | | | |
+                | | | | |P| |P| |
+                | | | | | | | | |
+                """));
+        Assertions.assertEquals(14, Perft.perft(game, 1));
+        Assertions.assertEquals(191, Perft.perft(game, 2));
+        Assertions.assertEquals(2812, Perft.perft(game, 3));
+        Assertions.assertEquals(43238, Perft.perft(game, 4));
+        Assertions.assertEquals(674624, Perft.perft(game, 5));
+    }
+
+    @Test
+    @DisplayName("Promotions and castling out of check")
+    public void position4() {
+        ChessGame game = new ChessGame(ChessGame.TeamColor.WHITE, TestUtilities.loadBoard("""
+                |r| | | |k| | |r|
+                |P|p|p|p| |p|p|p|
+                | |b| | | |n|b|N|
+                |n|P| | | | | | |
+                |B|B|P| |P| | | |
+                |q| | | | |N| | |
+                |P|p| |P| | |P|P|
+                |R| | |Q| |R|K| |
+                """));
+        Assertions.assertEquals(6, Perft.perft(game, 1));
+        Assertions.assertEquals(264, Perft.perft(game, 2));
+        Assertions.assertEquals(9467, Perft.perft(game, 3));
+    }
+
+    @Test
+    @DisplayName("Underpromotion with discovered check")
+    public void position5() {
+        ChessGame game = new ChessGame(ChessGame.TeamColor.WHITE, TestUtilities.loadBoard("""
+                |r|n|b|q| |k| |r|
+                |p|p| |P|b|p|p|p|
+                | | |p| | | | | |
+                | | | | | | | | |
+                | | |B| | | | | |
+                | | | | | | | | |
+                |P|P|P| |N|n|P|P|
+                |R|N|B|Q|K| | |R|
+                """));
+        Assertions.assertEquals(44, Perft.perft(game, 1));
+        Assertions.assertEquals(1486, Perft.perft(game, 2));
+        Assertions.assertEquals(62379, Perft.perft(game, 3));
+    }
+
+    @Test
+    @DisplayName("Symmetrical middlegame")
+    public void position6() {
+        ChessGame game = new ChessGame(ChessGame.TeamColor.WHITE, TestUtilities.loadBoard("""
+                |r| | | | |r|k| |
+                | |p|p| |q|p|p|p|
+                |p| |n|p| |n| | |
+                | | |b| |p| |B| |
+                | | |B| |P| |b| |
+                |P| |N|P| |N| | |
+                | |P|P| |Q|P|P|P|
+                |R| | | | |R|K| |
+                """));
+        Assertions.assertEquals(46, Perft.perft(game, 1));
+        Assertions.assertEquals(2079, Perft.perft(game, 2));
+        Assertions.assertEquals(89890, Perft.perft(game, 3));
+    }
+
+    @Test
+    @DisplayName("Divide adds up and leaves the game unchanged")
+    public void divide() {
+        ChessGame game = new ChessGame();
+        long key = game.positionKey();
+        Map<ChessMove, Long> counts = Perft.divide(game, 3);
+
+        Assertions.assertEquals(20, counts.size());
+        Assertions.assertEquals(8902, counts.values().stream().mapToLong(Long::longValue).sum());
+        Assertions.assertEquals(key, game.positionKey());
+        Assertions.assertEquals(new ChessGame(), game);
+    }
+
+    @Test
+    @DisplayName("Depths below the root")
+    public void shallowDepths() {
+        ChessGame game = new ChessGame();
+        Assertions.assertEquals(1, Perft.perft(game, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Perft.perft(game, -1));
+        Assertions.assertTrue(Perft.divide(game, 0).isEmpty());
+        Assertions.assertTrue(Perft.divide(game, -1).isEmpty());
+        Assertions.assertEquals(new ChessGame(), game);
+    }
+}
@@ -0,0 +1,101 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Walks the move tree of the perft positions checking at every node that the
+ * keys kept up move by move match keys worked out from scratch.
+ */
+public class ZobristTests {
+
+    //perft positions 2 to 5, each with the depth to walk it to
+    private static final String[] POSITIONS = {
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8"
+    };
+    private static final int[] DEPTHS = {3, 4, 3, 3};
+
+    //how often the walk made each kind of move that touches more than the pieces moved
+    private static final class Counts {
+        int castles;
+        int enPassants;
+        int promotions;
+        int castlingRightsLost;
+        int enPassantSquaresSet;
+    }
+
+    @Test
+    @DisplayName("Incremental keys match a full recompute at every node")
+    public void incrementalKeys() {
+        Counts counts = new Counts();
+        for (int i = 0; i < POSITIONS.length; i++) {
+            walk(ChessGame.fromFen(POSITIONS[i]), DEPTHS[i], counts);
+        }
+        //the walk is only worth something if it went through the moves that are easy to get wrong
+        Assertions.assertTrue(counts.castles > 0);
+        Assertions.assertTrue(counts.enPassants > 0);
+        Assertions.assertTrue(counts.promotions > 0);
+        Assertions.assertTrue(counts.castlingRightsLost > 0);
+        Assertions.assertTrue(counts.enPassantSquaresSet > 0);
+    }
+
+    private static void walk(ChessGame game, int depth, Counts counts) {
+        assertKeys(game);
+        if (depth == 0) {
+            return;
+        }
+        MoveList moves = new MoveList();
+        game.legalMoves(moves);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            long key = game.positionKey();
+            long pawnKey = game.getBoard().getPawnKey();
+            int castlingRights = game.getCastlingRights();
+
+            game.makeLegalMove(move);
+            int flags = Move.flags(move);
+            if (flags == Move.KING_CASTLE || flags == Move.QUEEN_CASTLE) {
+                counts.castles++;
+            } else if (flags == Move.EN_PASSANT) {
+                counts.enPassants++;
+            } else if (Move.isPromotion(move)) {
+                counts.promotions++;
+            }
+            if (game.getCastlingRights() != castlingRights) {
+                counts.castlingRightsLost++;
+            }
+            if (game.getEnPassantSquare() >= 0) {
+                counts.enPassantSquaresSet++;
+            }
+            walk(game, depth - 1, counts);
+
+            game.unmakeMove();
+            Assertions.assertEquals(key, game.positionKey());
+            Assertions.assertEquals(pawnKey, game.getBoard().getPawnKey());
+        }
+    }
+
+    private static void assertKeys(ChessGame game) {
+        long key = 0L;
+        long pawnKey = 0L;
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = game.getBoard().getPiece(square);
+            if (piece == null) {
+                continue;
+            }
+            key ^= Zobrist.piece(piece, square);
+            if (piece.getPieceType() == ChessPiece.PieceType.PAWN) {
+                pawnKey ^= Zobrist.piece(piece, square);
+            }
+        }
+        String fen = game.toFen();
+        Assertions.assertEquals(key, game.getBoard().getKey(), fen);
+        Assertions.assertEquals(pawnKey, game.getBoard().getPawnKey(), fen);
+        //a game read from the FEN starts with its keys worked out from nothing
+        Assertions.assertEquals(ChessGame.fromFen(fen).positionKey(), game.positionKey(), fen);
+    }
+}
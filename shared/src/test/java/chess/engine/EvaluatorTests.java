@@ -0,0 +1,95 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.MoveList;
+import chess.PieceSquareTables;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+public class EvaluatorTests {
+
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    @Test
+    @DisplayName("Board sums stay equal to a fresh count through moves and unmoves")
+    public void incremental() {
+        ChessGame game = ChessGame.fromFen(KIWIPETE);
+        ChessBoard start = new ChessBoard(game.getBoard());
+        SplittableRandom random = new SplittableRandom(7);
+        MoveList moves = new MoveList();
+        int made = 0;
+        for (int i = 0; i < 40; i++) {
+            game.legalMoves(moves);
+            if (moves.isEmpty()) {
+                break;
+            }
+            game.makeLegalMove(moves.get(random.nextInt(moves.size())));
+            made++;
+            assertSameSums(ChessGame.fromFen(game.toFen()).getBoard(), game.getBoard());
+        }
+        for (int i = 0; i < made; i++) {
+            game.unmakeMove();
+        }
+        assertSameSums(start, game.getBoard());
+    }
+
+    @Test
+    @DisplayName("Scores the same from either side of a mirrored position")
+    public void symmetry() {
+        Evaluator evaluator = new Evaluator();
+        Assertions.assertEquals(0, evaluator.evaluate(new ChessGame()));
+        Assertions.assertEquals(PieceSquareTables.MAX_PHASE, new ChessGame().getBoard().getPhase());
+
+        ChessGame white = ChessGame.fromFen("r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP3PPP/R2QKB1R w - - 0 8");
+        ChessGame black = ChessGame.fromFen("r2qkb1r/pp3ppp/2n1pn2/2pp4/3P4/2N1PN2/PP2BPPP/R1BQ1RK1 b - - 0 8");
+        Assertions.assertEquals(evaluator.evaluate(white), evaluator.evaluate(black));
+    }
+
+    @Test
+    @DisplayName("Rewards passed pawns and penalizes doubled and isolated ones")
+    public void pawnStructure() {
+        Evaluator evaluator = new Evaluator();
+        //same material; in the first, white's e-pawn is passed
+        int passed = evaluator.evaluate(ChessGame.fromFen("4k3/p7/8/8/4P3/8/8/4K3 w - - 0 1"));
+        int blocked = evaluator.evaluate(ChessGame.fromFen("4k3/3p4/8/8/4P3/8/8/4K3 w - - 0 1"));
+        Assertions.assertTrue(passed > blocked, passed + " vs " + blocked);
+
+        ChessBoard healthy = ChessGame.fromFen("4k3/8/8/8/8/8/3PP3/4K3 w - - 0 1").getBoard();
+        ChessBoard doubled = ChessGame.fromFen("4k3/8/8/8/8/4P3/4P3/4K3 w - - 0 1").getBoard();
+        ChessBoard isolated = ChessGame.fromFen("4k3/8/8/8/8/8/2P1P3/4K3 w - - 0 1").getBoard();
+        int healthyScore = Evaluator.pawnStructure(healthy, ChessGame.TeamColor.WHITE);
+        Assertions.assertTrue(PieceSquareTables.endgame(Evaluator.pawnStructure(doubled, ChessGame.TeamColor.WHITE))
+                < PieceSquareTables.endgame(healthyScore));
+        Assertions.assertTrue(PieceSquareTables.endgame(Evaluator.pawnStructure(isolated, ChessGame.TeamColor.WHITE))
+                < PieceSquareTables.endgame(healthyScore));
+
+        //a cached structure scores the same as a fresh one
+        ChessGame game = ChessGame.fromFen("4k3/p7/8/8/4P3/8/8/4K3 b - - 0 1");
+        Assertions.assertEquals(-passed, evaluator.evaluate(game));
+        Assertions.assertEquals(-passed, new Evaluator(1).evaluate(game));
+    }
+
+    @Test
+    @DisplayName("Packed scores read back both halves")
+    public void packing() {
+        for (int mg : new int[]{-2000, -1, 0, 1, 2000}) {
+            for (int eg : new int[]{-2000, -1, 0, 1, 2000}) {
+                int packed = PieceSquareTables.pack(mg, eg);
+                Assertions.assertEquals(mg, PieceSquareTables.middlegame(packed));
+                Assertions.assertEquals(eg, PieceSquareTables.endgame(packed));
+            }
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new Evaluator(3));
+    }
+
+    private static void assertSameSums(ChessBoard expected, ChessBoard actual) {
+        Assertions.assertEquals(expected.getKey(), actual.getKey());
+        Assertions.assertEquals(expected.getPawnKey(), actual.getPawnKey());
+        Assertions.assertEquals(expected.getPieceSquareScore(), actual.getPieceSquareScore());
+        Assertions.assertEquals(expected.getPhase(), actual.getPhase());
+    }
+}
@@ -0,0 +1,134 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.pgn.PgnReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class OpeningBookTests {
+
+    private static final String GAMES = """
+            [Result "1-0"]
+
+            1. e4 e5 2. Nf3 Nc6 3. Bc4 Nf6 4. O-O 1-0
+
+            [Result "1/2-1/2"]
+
+            1. e4 c5 2. Nf3 1/2-1/2
+
+            [Result "0-1"]
+
+            1. d4 d5 0-1
+
+            [Result "*"]
+
+            1. c4 *
+            """;
+
+    @Test
+    @DisplayName("Book built from games gives their moves weighted by result")
+    public void buildAndProbe(@TempDir Path directory) throws IOException {
+        OpeningBook book = build(directory, 8);
+        //white: e4 won once and drew once, d4 lost; the unfinished game isn't counted
+        Assertions.assertEquals(List.of(new OpeningBook.Entry(move("e2", "e4"), 3)), book.lookup(new ChessGame()));
+
+        ChessGame game = new ChessGame();
+        game.makeLegalMove(move("e2", "e4"));
+        List<OpeningBook.Entry> replies = book.lookup(game);
+        //black: e5 lost and c5 drew, so only c5 is left
+        Assertions.assertEquals(List.of(new OpeningBook.Entry(move("c7", "c5"), 1)), replies);
+
+        game.makeLegalMove(move("c7", "c5"));
+        game.makeLegalMove(move("g1", "f3"));
+        Assertions.assertTrue(book.lookup(game).isEmpty());
+        Assertions.assertNull(book.choose(game, new SplittableRandom(1)));
+    }
+
+    @Test
+    @DisplayName("Castling survives being written as king takes rook")
+    public void castling(@TempDir Path directory) throws IOException {
+        OpeningBook book = build(directory, 8);
+        ChessGame game = new ChessGame();
+        for (String[] move : new String[][]{{"e2", "e4"}, {"e7", "e5"}, {"g1", "f3"}, {"b8", "c6"},
+                {"f1", "c4"}, {"g8", "f6"}}) {
+            game.makeLegalMove(move(move[0], move[1]));
+        }
+        ChessMove castle = book.choose(game, new SplittableRandom(1));
+        Assertions.assertEquals(move("e1", "g1"), castle);
+        Assertions.assertTrue(game.legalMoves().contains(castle));
+    }
+
+    @Test
+    @DisplayName("Book depth limits the plies taken from each game")
+    public void depth(@TempDir Path directory) throws IOException {
+        OpeningBook book = build(directory, 1);
+        Assertions.assertFalse(book.lookup(new ChessGame()).isEmpty());
+        ChessGame game = new ChessGame();
+        game.makeLegalMove(move("e2", "e4"));
+        Assertions.assertTrue(book.lookup(game).isEmpty());
+        Assertions.assertEquals(1, book.size());
+    }
+
+    @Test
+    @DisplayName("Files without the header, or that aren't whole entries, are refused")
+    public void badFile(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("bad.bin");
+        Files.write(file, ByteBuffer.allocate(OpeningBook.HEADER_BYTES + OpeningBook.ENTRY_BYTES + 1)
+                .put(header(OpeningBook.VERSION)).array());
+        Assertions.assertThrows(IOException.class, () -> OpeningBook.open(file));
+
+        //a Polyglot book is entries from its first byte
+        Path polyglot = directory.resolve("polyglot.bin");
+        Files.write(polyglot, ByteBuffer.allocate(2 * OpeningBook.ENTRY_BYTES)
+                .putLong(0x463b96181691fc9cL).putShort((short) 0x31c).putShort((short) 1).array());
+        Assertions.assertThrows(IOException.class, () -> OpeningBook.open(polyglot));
+        Files.write(polyglot, new byte[0]);
+        Assertions.assertThrows(IOException.class, () -> OpeningBook.open(polyglot));
+
+        Path later = directory.resolve("later.bin");
+        Files.write(later, header(OpeningBook.VERSION + 1));
+        Assertions.assertThrows(IOException.class, () -> OpeningBook.open(later));
+
+        Path empty = directory.resolve("empty.bin");
+        Files.write(empty, header(OpeningBook.VERSION));
+        Assertions.assertTrue(OpeningBook.open(empty).lookup(new ChessGame()).isEmpty());
+        Assertions.assertEquals(0, OpeningBook.open(empty).size());
+    }
+
+    private static byte[] header(int version) {
+        return ByteBuffer.allocate(OpeningBook.HEADER_BYTES).putLong(OpeningBook.MAGIC).putInt(version).putInt(0).array();
+    }
+
+    private static OpeningBook build(Path directory, int plies) throws IOException {
+        OpeningBookBuilder builder = new OpeningBookBuilder(plies);
+        try (PgnReader reader = new PgnReader(new StringReader(GAMES))) {
+            while (reader.hasNext()) {
+                builder.add(reader.next());
+            }
+        }
+        Assertions.assertEquals(3, builder.games());
+        Path file = directory.resolve("book.bin");
+        builder.write(file);
+        return OpeningBook.open(file);
+    }
+
+    private static ChessMove move(String from, String to) {
+        return new ChessMove(square(from), square(to), null);
+    }
+
+    private static ChessPosition square(String name) {
+        return new ChessPosition(name.charAt(1) - '0', name.charAt(0) - 'a' + 1);
+    }
+}
@@ -0,0 +1,103 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ParallelSearchTests {
+
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    @Test
+    @DisplayName("Finds the same mate as one thread")
+    public void mate() {
+        try (ParallelSearch search = new ParallelSearch(4)) {
+            SearchResult result = search.search(ChessGame.fromFen("6k1/5ppp/8/8/8/8/8/R3K3 w Q - 0 1"),
+                    SearchLimits.depth(4));
+            Assertions.assertEquals(new ChessMove(ChessPosition.of(1, 1), ChessPosition.of(8, 1), null),
+                    result.bestMove());
+            Assertions.assertEquals(1, result.mateIn());
+
+            result = search.search(ChessGame.fromFen("6k1/8/8/8/8/8/R7/1R4K1 w - - 0 1"), SearchLimits.depth(6));
+            Assertions.assertEquals(2, result.mateIn(), result.toString());
+        }
+    }
+
+    @Test
+    @DisplayName("Counts every thread's nodes, within the budget, and leaves the game unchanged")
+    public void nodeBudget() {
+        ChessGame game = ChessGame.fromFen(KIWIPETE);
+        long key = game.positionKey();
+        try (ParallelSearch search = new ParallelSearch(4)) {
+            SearchResult result = search.search(game, SearchLimits.nodes(200_000));
+            Assertions.assertTrue(result.nodes() <= 200_000, result.toString());
+            //the helpers did some of the work
+            Assertions.assertTrue(result.nodes() > 50_000, result.toString());
+            Assertions.assertTrue(game.legalMoves().contains(result.bestMove()));
+        }
+        Assertions.assertEquals(KIWIPETE, game.toFen());
+        Assertions.assertEquals(key, game.positionKey());
+    }
+
+    @Test
+    @DisplayName("Reports the main thread's iterations")
+    public void iterations() {
+        List<SearchResult> results = new ArrayList<>();
+        try (ParallelSearch search = new ParallelSearch(3)) {
+            SearchResult last = search.search(ChessGame.fromFen(KIWIPETE), SearchLimits.depth(5), results::add);
+            Assertions.assertEquals(5, results.size());
+            Assertions.assertEquals(5, last.depth());
+            Assertions.assertEquals(last.bestMove(), results.getLast().bestMove());
+        }
+    }
+
+    @Test
+    @DisplayName("Analysis on several threads finds distinct lines, best first")
+    public void analyze() {
+        try (ParallelSearch search = new ParallelSearch(3)) {
+            ChessGame game = ChessGame.fromFen(KIWIPETE);
+            List<SearchResult> lines = search.analyze(game, SearchLimits.depth(4), 3, null, () -> false);
+            Assertions.assertEquals(3, lines.size());
+            Assertions.assertEquals(3, lines.stream().map(SearchResult::bestMove).distinct().count());
+            for (int i = 1; i < lines.size(); i++) {
+                Assertions.assertTrue(lines.get(i).score() <= lines.get(i - 1).score(), lines.toString());
+            }
+            Assertions.assertEquals(KIWIPETE, game.toFen());
+
+            //a cancel made before it starts ends it at once
+            Assertions.assertTrue(search.analyze(game, SearchLimits.depth(30), 3, null, () -> true)
+                    .getFirst().depth() <= 1);
+        }
+    }
+
+    @Test
+    @DisplayName("Stop ends every thread")
+    public void stop() throws InterruptedException {
+        try (ParallelSearch search = new ParallelSearch(4)) {
+            List<SearchResult> results = new ArrayList<>();
+            Thread thread = new Thread(() -> results.add(search.search(ChessGame.fromFen(KIWIPETE), SearchLimits.depth(30))));
+            thread.start();
+            Thread.sleep(200);
+            search.stop();
+            thread.join(5000);
+            Assertions.assertFalse(thread.isAlive());
+            Assertions.assertNotNull(results.getFirst().bestMove());
+
+            //and the next search starts afresh
+            Assertions.assertEquals(3, search.search(ChessGame.fromFen(KIWIPETE), SearchLimits.depth(3)).depth());
+        }
+    }
+
+    @Test
+    @DisplayName("Rejects a thread count below one")
+    public void threads() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ParallelSearch(0));
+        Assertions.assertTrue(ParallelSearch.defaultThreads() >= 1);
+    }
+}
@@ -0,0 +1,154 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SearchTests {
+
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    @Test
+    @DisplayName("Finds mate in one")
+    public void mateInOne() {
+        SearchResult result = new Search().search(ChessGame.fromFen("6k1/5ppp/8/8/8/8/8/R3K3 w Q - 0 1"),
+                SearchLimits.depth(4));
+        Assertions.assertEquals(move(1, 1, 8, 1), result.bestMove());
+        Assertions.assertTrue(result.isMate());
+        Assertions.assertEquals(1, result.mateIn());
+    }
+
+    @Test
+    @DisplayName("Finds mate in two")
+    public void mateInTwo() {
+        //1. Ra7 and the other rook mates on the back rank
+        SearchResult result = new Search().search(ChessGame.fromFen("6k1/8/8/8/8/8/R7/1R4K1 w - - 0 1"),
+                SearchLimits.depth(6));
+        Assertions.assertTrue(result.isMate(), result.toString());
+        Assertions.assertEquals(2, result.mateIn(), result.toString());
+    }
+
+    @Test
+    @DisplayName("Wins material and avoids losing it")
+    public void material() {
+        SearchResult result = new Search().search(ChessGame.fromFen("4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1"),
+                SearchLimits.depth(3));
+        Assertions.assertEquals(move(2, 4, 5, 4), result.bestMove());
+        Assertions.assertTrue(result.score() > 0);
+
+        //the knight on d5 is attacked by a pawn and defended by nothing
+        result = new Search().search(ChessGame.fromFen("4k3/8/4p3/3N4/8/8/8/4K3 w - - 0 1"), SearchLimits.depth(4));
+        Assertions.assertTrue(result.score() > 0, result.toString());
+        Assertions.assertNotEquals(move(5, 4, 6, 5), result.bestMove(), result.toString());
+    }
+
+    @Test
+    @DisplayName("No move when the game is over")
+    public void noMoves() {
+        SearchResult mated = new Search().search(
+                ChessGame.fromFen("R5k1/5ppp/8/8/8/8/8/4K3 b - - 0 1"), SearchLimits.depth(3));
+        Assertions.assertNull(mated.bestMove());
+        Assertions.assertTrue(mated.score() < 0 && mated.isMate());
+
+        SearchResult stalemate = new Search().search(
+                ChessGame.fromFen("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1"), SearchLimits.depth(3));
+        Assertions.assertNull(stalemate.bestMove());
+        Assertions.assertEquals(0, stalemate.score());
+    }
+
+    @Test
+    @DisplayName("Stays within the node budget and leaves the game unchanged")
+    public void nodeBudget() {
+        ChessGame game = ChessGame.fromFen(KIWIPETE);
+        long key = game.positionKey();
+        SearchResult result = new Search().search(game, SearchLimits.nodes(20_000));
+        Assertions.assertTrue(result.nodes() <= 20_000, result.toString());
+        Assertions.assertNotNull(result.bestMove());
+        Assertions.assertTrue(game.legalMoves().contains(result.bestMove()));
+        Assertions.assertEquals(KIWIPETE, game.toFen());
+        Assertions.assertEquals(key, game.positionKey());
+    }
+
+    @Test
+    @DisplayName("Reports every iteration, with the best move leading the PV")
+    public void iterations() {
+        List<SearchResult> results = new ArrayList<>();
+        SearchResult last = new Search().search(ChessGame.fromFen(KIWIPETE), SearchLimits.depth(4), results::add);
+        Assertions.assertEquals(4, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            Assertions.assertEquals(i + 1, results.get(i).depth());
+            Assertions.assertEquals(results.get(i).bestMove(), results.get(i).pv().getFirst());
+        }
+        Assertions.assertSame(results.getLast(), last);
+        Assertions.assertTrue(last.toString().startsWith("depth 4 score cp "), last.toString());
+    }
+
+    @Test
+    @DisplayName("Finds several lines, each led by a different move")
+    public void multiPv() {
+        ChessGame game = ChessGame.fromFen(KIWIPETE);
+        List<List<SearchResult>> iterations = new ArrayList<>();
+        List<SearchResult> lines = new Search().analyze(game, SearchLimits.depth(4), 3, iterations::add);
+        Assertions.assertEquals(4, iterations.size());
+        Assertions.assertSame(iterations.getLast(), lines);
+        Assertions.assertEquals(3, lines.size());
+        Assertions.assertEquals(3, lines.stream().map(SearchResult::bestMove).distinct().count());
+        for (int i = 0; i < lines.size(); i++) {
+            Assertions.assertEquals(4, lines.get(i).depth());
+            Assertions.assertTrue(game.legalMoves().contains(lines.get(i).bestMove()));
+            if (i > 0) {
+                Assertions.assertTrue(lines.get(i).score() <= lines.get(i - 1).score(), lines.toString());
+            }
+        }
+        Assertions.assertEquals(KIWIPETE, game.toFen());
+
+        //only as many lines as there are moves: the king has two squares
+        lines = new Search().analyze(ChessGame.fromFen("7k/8/8/8/8/8/8/K6R b - - 0 1"), SearchLimits.depth(3), 5, null);
+        Assertions.assertEquals(2, lines.size());
+    }
+
+    @Test
+    @DisplayName("Stop ends the search early")
+    public void stop() throws InterruptedException {
+        Search search = new Search();
+        List<SearchResult> results = new ArrayList<>();
+        Thread thread = new Thread(() -> results.add(search.search(ChessGame.fromFen(KIWIPETE), SearchLimits.depth(30))));
+        thread.start();
+        Thread.sleep(200);
+        search.stop();
+        thread.join(5000);
+        Assertions.assertFalse(thread.isAlive());
+        Assertions.assertNotNull(results.getFirst().bestMove());
+    }
+
+    @Test
+    @DisplayName("A cancel made before the search starts still ends it")
+    public void cancelledBeforeStart() {
+        Search search = new Search();
+        SearchResult result = search.search(ChessGame.fromFen(KIWIPETE), SearchLimits.depth(30), null, () -> true);
+        Assertions.assertNotNull(result.bestMove());
+        Assertions.assertTrue(result.depth() <= 1, result.toString());
+
+        //and it only ends that search
+        Assertions.assertEquals(3, search.search(ChessGame.fromFen(KIWIPETE), SearchLimits.depth(3)).depth());
+    }
+
+    @Test
+    @DisplayName("Nodes per second doesn't overflow on long searches")
+    public void nps() {
+        //twenty billion nodes in ten seconds, as many threads searching for a while can count
+        SearchResult result = new SearchResult(null, 0, 30, 20_000_000_000L, 10_000_000_000L, List.of());
+        Assertions.assertEquals(2_000_000_000L, result.nps());
+        Assertions.assertEquals(5, new SearchResult(null, 0, 1, 5, 0, List.of()).nps() / 1_000_000_000L);
+    }
+
+    private static ChessMove move(int fromRow, int fromCol, int toRow, int toCol) {
+        return new ChessMove(ChessPosition.of(fromRow, fromCol), ChessPosition.of(toRow, toCol), null);
+    }
+}
@@ -0,0 +1,213 @@
+package chess.engine;
+
+import chess.Attacks;
+import chess.Bitboards;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class TablebaseTests {
+
+    @TempDir
+    static Path directory;
+    private static byte[][] tables;
+    private static Tablebase tablebase;
+
+    @BeforeAll
+    public static void generate() throws IOException {
+        tables = new TablebaseGenerator().writeAll(directory);
+        tablebase = Tablebase.open(directory);
+    }
+
+    @Test
+    @DisplayName("Longest mates match the known ones for each ending")
+    public void longestMates() {
+        //10, 16, 28, 35 and 33 moves, counted in plies with the winning side to move
+        int[] expected = {19, 31, 55, 69, 65};
+        for (int i = 0; i < tables.length; i++) {
+            Tablebase.Ending ending = Tablebase.ENDINGS.get(i);
+            int longest = 0;
+            for (int index = 0; index < ending.positions() / 2; index++) {
+                longest = Math.max(longest, tables[i][index]);
+            }
+            Assertions.assertEquals(expected[i], longest, ending.name());
+        }
+        Assertions.assertEquals(Tablebase.ENDINGS.size(), tablebase.tables());
+    }
+
+    @Test
+    @DisplayName("Four-piece endings look through captures to the tables they lead to")
+    public void fourPieces() {
+        //the rook takes the queen with check and wins KRK
+        ChessGame skewer = ChessGame.fromFen("r3Q3/8/8/3k4/8/8/8/4K3 b - - 0 1");
+        Assertions.assertTrue(Tablebase.isWin(tablebase.probe(skewer)));
+        //with white to move, the queen keeps the win
+        Assertions.assertTrue(Tablebase.isWin(tablebase.probe(ChessGame.fromFen("r3Q3/8/8/3k4/8/8/8/4K3 w - - 0 1"))));
+
+        //the king takes the loose knight, and a bishop alone can't mate
+        Assertions.assertEquals(0, tablebase.probe(ChessGame.fromFen("8/8/8/8/3k4/3N4/8/K6B b - - 0 1")));
+        Assertions.assertTrue(Tablebase.isWin(tablebase.probe(ChessGame.fromFen("8/8/8/8/3k4/3N4/8/K6B w - - 0 1"))));
+
+        //the same endings with the colors the other way round
+        Assertions.assertTrue(Tablebase.isWin(tablebase.probe(ChessGame.fromFen("4k3/8/8/8/3K4/8/8/R3q3 w - - 0 1"))));
+        Assertions.assertEquals(Tablebase.UNKNOWN,
+                tablebase.probe(ChessGame.fromFen("8/8/8/3k4/8/8/3PP3/4K3 w - - 0 1")));
+    }
+
+    @Test
+    @DisplayName("Every sampled position agrees with the best of its moves")
+    public void agreesWithMoves() {
+        SplittableRandom random = new SplittableRandom(11);
+        int checked = 0;
+        while (checked < 3000) {
+            ChessGame game = randomPosition(random);
+            if (game == null) {
+                continue;
+            }
+            int value = tablebase.probe(game);
+            Assertions.assertNotEquals(Tablebase.UNKNOWN, value, game.toFen());
+            Assertions.assertEquals(fromMoves(game), value, game.toFen());
+            checked++;
+        }
+    }
+
+    @Test
+    @DisplayName("Search with the tables plays the shortest mate at once")
+    public void search() {
+        ChessGame game = ChessGame.fromFen("8/8/8/4k3/8/8/8/R3K3 w - - 0 1");
+        int value = tablebase.probe(game);
+        Assertions.assertTrue(Tablebase.isWin(value));
+        SearchResult result = new Search(new TranspositionTable(1), tablebase).search(game, SearchLimits.depth(2));
+        Assertions.assertTrue(result.isMate());
+        Assertions.assertEquals(Search.MATE - Tablebase.plies(value), result.score());
+        game.makeLegalMove(result.bestMove());
+        Assertions.assertEquals(-Tablebase.plies(value), tablebase.probe(game));
+
+        //black has the pawn, so the board is turned around to probe
+        ChessGame black = ChessGame.fromFen("8/8/8/8/8/3k4/3p4/5K2 b - - 0 1");
+        Assertions.assertTrue(Tablebase.isWin(tablebase.probe(black)));
+        Assertions.assertEquals(Tablebase.UNKNOWN, tablebase.probe(new ChessGame()));
+    }
+
+    @Test
+    @DisplayName("Bare kings and lone minor pieces are dead draws")
+    public void insufficientMaterial() {
+        Assertions.assertEquals(ChessGame.GameStatus.INSUFFICIENT_MATERIAL,
+                ChessGame.fromFen("8/8/4k3/8/8/3K4/8/8 w - - 0 1").getGameStatus());
+        Assertions.assertEquals(ChessGame.GameStatus.INSUFFICIENT_MATERIAL,
+                ChessGame.fromFen("8/8/4k3/8/8/3KN3/8/8 b - - 0 1").getGameStatus());
+        //both bishops on dark squares
+        Assertions.assertEquals(ChessGame.GameStatus.INSUFFICIENT_MATERIAL,
+                ChessGame.fromFen("8/8/4kb2/8/8/3KB3/8/8 w - - 0 1").getGameStatus());
+        Assertions.assertEquals(ChessGame.GameStatus.ONGOING,
+                ChessGame.fromFen("b7/8/4k3/8/8/3KB3/8/8 w - - 0 1").getGameStatus());
+        Assertions.assertEquals(ChessGame.GameStatus.ONGOING,
+                ChessGame.fromFen("8/8/4k3/8/8/3KNN2/8/8 w - - 0 1").getGameStatus());
+        Assertions.assertEquals(ChessGame.GameStatus.ONGOING,
+                ChessGame.fromFen("8/8/4k3/8/8/3K4/4P3/8 w - - 0 1").getGameStatus());
+    }
+
+    //the value the tables should hold, worked out from the probes of the position's moves
+    private static int fromMoves(ChessGame game) {
+        ChessGame.GameStatus status = game.getGameStatus();
+        if (status == ChessGame.GameStatus.CHECKMATE) {
+            return -1;
+        }
+        if (status == ChessGame.GameStatus.STALEMATE) {
+            return 0;
+        }
+        int bestWin = Integer.MAX_VALUE;
+        int longestLoss = -1;
+        boolean escapes = false;
+        for (ChessMove move : game.legalMoves()) {
+            game.makeLegalMove(move);
+            int reply = tablebase.probe(game);
+            game.unmakeMove();
+            //captures and minor promotions leave material that can't mate
+            if (reply == Tablebase.UNKNOWN || reply == 0) {
+                escapes = true;
+            } else if (Tablebase.isLoss(reply)) {
+                bestWin = Math.min(bestWin, Tablebase.plies(reply) + 1);
+            } else {
+                longestLoss = Math.max(longestLoss, Tablebase.plies(reply) + 1);
+            }
+        }
+        if (bestWin != Integer.MAX_VALUE) {
+            return bestWin;
+        }
+        return escapes ? 0 : -longestLoss - 1;
+    }
+
+    private static ChessGame randomPosition(SplittableRandom random) {
+        Tablebase.Ending ending = Tablebase.ENDINGS.get(random.nextInt(Tablebase.ENDINGS.size()));
+        ChessGame.TeamColor strong = random.nextBoolean() ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+        int[] squares = new int[ending.pieces()];
+        char[] symbols = new char[ending.pieces()];
+        List<ChessPiece.PieceType> types = new ArrayList<>(List.of(ChessPiece.PieceType.KING, ChessPiece.PieceType.KING));
+        types.addAll(ending.strong());
+        types.addAll(ending.weak());
+        for (int i = 0; i < squares.length; i++) {
+            squares[i] = random.nextInt(64);
+            //the kings, then the strong side's pieces, then the weak side's
+            boolean isStrong = i == 0 || i >= 2 && i < 2 + ending.strong().size();
+            symbols[i] = new ChessPiece(isStrong ? strong : strong.opponent(), types.get(i)).toString().charAt(0);
+        }
+        char[] board = new char[64];
+        for (int i = 0; i < squares.length; i++) {
+            if (board[squares[i]] != 0) {
+                return null;
+            }
+            board[squares[i]] = symbols[i];
+        }
+        StringBuilder fen = new StringBuilder();
+        for (int row = 7; row >= 0; row--) {
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                char symbol = board[row * 8 + col];
+                if (symbol == 0) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                fen.append(symbol);
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (row > 0) {
+                fen.append('/');
+            }
+        }
+        fen.append(random.nextBoolean() ? " w" : " b").append(" - - 0 1");
+        ChessGame game;
+        try {
+            game = ChessGame.fromFen(fen.toString());
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+        //no pawns on the back ranks, no touching kings, and the side not to move not in check
+        boolean pawnOnBackRank = false;
+        for (int i = 2; i < squares.length; i++) {
+            pawnOnBackRank |= types.get(i) == ChessPiece.PieceType.PAWN && (squares[i] < 8 || squares[i] >= 56);
+        }
+        if (pawnOnBackRank || Bitboards.isSet(Attacks.kingAttacks(squares[0]), squares[1])
+                || game.isInCheck(game.getTeamTurn().opponent())) {
+            return null;
+        }
+        return game;
+    }
+}
@@ -0,0 +1,106 @@
+package chess.engine;
+
+import chess.Move;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TranspositionTableTests {
+
+    @Test
+    @DisplayName("Stored results read back")
+    public void storeAndProbe() {
+        TranspositionTable table = new TranspositionTable(1);
+        int move = Move.of(12, 28, Move.DOUBLE_PAWN_PUSH);
+        table.store(0x1234_5678_9ABC_DEF0L, move, -30_500, 17, TranspositionTable.LOWER_BOUND);
+
+        long entry = table.probe(0x1234_5678_9ABC_DEF0L);
+        Assertions.assertEquals(move, TranspositionTable.move(entry));
+        Assertions.assertEquals(-30_500, TranspositionTable.score(entry));
+        Assertions.assertEquals(17, TranspositionTable.depth(entry));
+        Assertions.assertEquals(TranspositionTable.LOWER_BOUND, TranspositionTable.bound(entry));
+        Assertions.assertEquals(0, table.probe(0x1234_5678_9ABC_DEF1L));
+        Assertions.assertEquals(0.5, table.hitRate());
+
+        table.store(0x1234_5678_9ABC_DEF0L, Move.NONE, 42, 18, TranspositionTable.UPPER_BOUND);
+        entry = table.probe(0x1234_5678_9ABC_DEF0L);
+        Assertions.assertEquals(move, TranspositionTable.move(entry));
+        Assertions.assertEquals(42, TranspositionTable.score(entry));
+
+        table.clear();
+        Assertions.assertEquals(0, table.probe(0x1234_5678_9ABC_DEF0L));
+        Assertions.assertEquals(1, table.getProbes());
+    }
+
+    @Test
+    @DisplayName("Size is fixed up front")
+    public void size() {
+        Assertions.assertEquals(1 << 20, new TranspositionTable(1).sizeBytes());
+        Assertions.assertEquals(8 << 20, new TranspositionTable(12).sizeBytes());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TranspositionTable(0));
+    }
+
+    @Test
+    @DisplayName("Old and shallow entries are replaced first")
+    public void replacement() {
+        TranspositionTable table = new TranspositionTable(1);
+        long buckets = (1 << 20) / 64;
+        //five keys in the same bucket: the first four fill it
+        long[] keys = new long[5];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = 7 + (i + 1) * buckets;
+        }
+        table.store(keys[0], Move.NONE, 0, 30, TranspositionTable.EXACT);
+        table.newSearch();
+        table.store(keys[1], Move.NONE, 0, 2, TranspositionTable.EXACT);
+        table.store(keys[2], Move.NONE, 0, 1, TranspositionTable.EXACT);
+        table.store(keys[3], Move.NONE, 0, 3, TranspositionTable.EXACT);
+
+        //the deep entry from the last search goes before a shallow one from this search
+        table.store(keys[4], Move.NONE, 0, 4, TranspositionTable.EXACT);
+        Assertions.assertEquals(0, table.probe(keys[0]));
+        Assertions.assertNotEquals(0, table.probe(keys[4]));
+
+        //then the shallowest
+        table.store(keys[0], Move.NONE, 0, 5, TranspositionTable.EXACT);
+        Assertions.assertEquals(0, table.probe(keys[2]));
+        Assertions.assertNotEquals(0, table.probe(keys[1]));
+        Assertions.assertNotEquals(0, table.probe(keys[3]));
+    }
+
+    @Test
+    @DisplayName("Racing writers never produce a mismatched entry")
+    public void concurrentAccess() throws InterruptedException {
+        TranspositionTable table = new TranspositionTable(1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong badReads = new AtomicLong();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                while (running.get()) {
+                    //few keys, so threads keep hitting the same entries; each key has one right score
+                    long key = random.nextLong(64) * 0x9E37_79B9_7F4A_7C15L;
+                    long entry = table.probe(key);
+                    if (entry != 0 && TranspositionTable.score(entry) != (short) key) {
+                        badReads.incrementAndGet();
+                    }
+                    table.store(key, Move.NONE, (short) key, random.nextInt(64), TranspositionTable.EXACT);
+                }
+            });
+            threads[t].start();
+        }
+        Thread.sleep(300);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assertions.assertEquals(0, badReads.get());
+        Assertions.assertTrue(table.getHits() > 0);
+    }
+}
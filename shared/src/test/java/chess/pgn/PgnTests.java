@@ -0,0 +1,164 @@
+package chess.pgn;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class PgnTests {
+
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    @Test
+    @DisplayName("Every legal move survives a SAN round trip")
+    public void sanRoundTrip() {
+        String[] positions = {
+                KIWIPETE,
+                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3"
+        };
+        for (String fen : positions) {
+            ChessGame game = ChessGame.fromFen(fen);
+            for (ChessMove move : game.legalMoves()) {
+                String san = San.toSan(game, move);
+                Assertions.assertEquals(move, San.parse(game, san), fen + " " + san);
+            }
+            Assertions.assertEquals(fen, game.toFen());
+        }
+    }
+
+    @Test
+    @DisplayName("SAN names castling, captures, promotions and checks")
+    public void sanNames() {
+        ChessGame game = ChessGame.fromFen(KIWIPETE);
+        Assertions.assertEquals("O-O", San.toSan(game, move(1, 5, 1, 7, null)));
+        Assertions.assertEquals("O-O-O", San.toSan(game, move(1, 5, 1, 3, null)));
+        Assertions.assertEquals("Bxa6", San.toSan(game, move(2, 5, 6, 1, null)));
+        Assertions.assertEquals("dxe6", San.toSan(game, move(5, 4, 6, 5, null)));
+        Assertions.assertEquals("Nxf7", San.toSan(game, move(5, 5, 7, 6, null)));
+
+        ChessGame promotion = ChessGame.fromFen("4k3/8/8/8/8/8/1p6/R3K3 b - - 0 1");
+        Assertions.assertEquals("bxa1=Q+", San.toSan(promotion, move(2, 2, 1, 1, ChessPiece.PieceType.QUEEN)));
+        Assertions.assertEquals("b1=N", San.toSan(promotion, move(2, 2, 1, 2, ChessPiece.PieceType.KNIGHT)));
+
+        ChessGame mate = ChessGame.fromFen("6k1/5ppp/8/8/8/8/8/R3K3 w Q - 0 1");
+        Assertions.assertEquals("Ra8#", San.toSan(mate, move(1, 1, 8, 1, null)));
+        Assertions.assertEquals("Rd1", San.toSan(mate, move(1, 1, 1, 4, null)));
+    }
+
+    @Test
+    @DisplayName("SAN disambiguates by file, then rank, then square")
+    public void disambiguation() {
+        ChessGame game = ChessGame.fromFen("k7/8/8/8/4K3/8/8/R6R w - - 0 1");
+        Assertions.assertEquals("Rad1", San.toSan(game, move(1, 1, 1, 4, null)));
+        game = ChessGame.fromFen("7R/8/k7/8/8/8/7R/4K3 w - - 0 1");
+        Assertions.assertEquals("R2h5", San.toSan(game, move(2, 8, 5, 8, null)));
+        game = ChessGame.fromFen("k7/8/8/8/8/2Q1Q3/8/2Q1K3 w - - 0 1");
+        Assertions.assertEquals("Qc3d2", San.toSan(game, move(3, 3, 2, 4, null)));
+        Assertions.assertEquals(move(3, 5, 2, 4, null), San.parse(game, "Qe3d2"));
+    }
+
+    @Test
+    @DisplayName("Bad SAN is rejected")
+    public void badSan() {
+        ChessGame game = new ChessGame();
+        for (String san : new String[] {"", "e5", "Ke2", "Nd2", "e9", "Zf3", "O-O", "exd3"}) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> San.parse(game, san), san);
+        }
+        ChessGame ambiguous = ChessGame.fromFen("k7/8/8/8/4K3/8/8/R6R w - - 0 1");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> San.parse(ambiguous, "Rd1"));
+    }
+
+    @Test
+    @DisplayName("Reader skips comments, variations and annotations")
+    public void reader() throws IOException {
+        String pgn = """
+                [Event "Casual"]
+                [White "Ann \\"A\\" Lee"]
+                [Result "1-0"]
+
+                1. e4 {best by test (so they say)} e5 2. Nf3 $1 (2. f4 exf4 (2... d5) 3. Nf3) 2... Nc6
+                3.Bc4 ; the Italian
+                Nd4?! 4. Nxe5 Qg5 5. Nxf7 Qxg2 6. Rf1 Qxe4+ 7. Be2 Nf3# 0-1
+
+                [Event "Second"]
+                1. d4 d5 *
+                1. c4
+                """;
+        List<PgnGame> games = new ArrayList<>();
+        try (PgnReader reader = new PgnReader(new StringReader(pgn))) {
+            reader.forEachRemaining(games::add);
+        }
+        Assertions.assertEquals(3, games.size());
+
+        PgnGame first = games.getFirst();
+        Assertions.assertEquals("Ann \"A\" Lee", first.tags().get("White"));
+        Assertions.assertEquals("0-1", first.result());
+        Assertions.assertEquals(List.of("e4", "e5", "Nf3", "Nc6", "Bc4", "Nd4?!", "Nxe5", "Qg5", "Nxf7", "Qxg2",
+                "Rf1", "Qxe4+", "Be2", "Nf3#"), first.moves());
+        Assertions.assertEquals(ChessGame.GameStatus.CHECKMATE, first.play().getGameStatus());
+
+        Assertions.assertEquals(List.of("d4", "d5"), games.get(1).moves());
+        Assertions.assertEquals("*", games.get(1).result());
+        Assertions.assertEquals(List.of("c4"), games.get(2).moves());
+    }
+
+    @Test
+    @DisplayName("Malformed PGN is rejected")
+    public void malformed() {
+        String[] invalid = {"[Event Casual]\n1. e4 *", "[Event \"Casual\"\n1. e4 *", "1. e4 {unclosed", "1. e4 (1. d4 *"};
+        for (String pgn : invalid) {
+            PgnReader reader = new PgnReader(new StringReader(pgn));
+            Assertions.assertThrows(IllegalArgumentException.class, reader::hasNext, pgn);
+        }
+    }
+
+    @Test
+    @DisplayName("Writer output reads back the same")
+    public void writer() throws IOException {
+        String fen = "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1";
+        ChessGame start = ChessGame.fromFen(fen);
+        List<ChessMove> moves = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            moves.add(i % 4 < 2
+                    ? (i % 2 == 0 ? move(8, 7, 6, 6, null) : move(1, 7, 3, 6, null))
+                    : (i % 2 == 0 ? move(6, 6, 8, 7, null) : move(3, 6, 1, 7, null)));
+        }
+        PgnGame game = PgnGame.fromMoves(Map.of("FEN", fen, "SetUp", "1"), start, moves.subList(0, 8));
+        Assertions.assertEquals("1/2-1/2", game.result());
+
+        StringWriter text = new StringWriter();
+        try (PgnWriter writer = new PgnWriter(text)) {
+            writer.write(game);
+            writer.write(game);
+        }
+        Assertions.assertTrue(text.toString().startsWith("[Event \"?\"]\n[Site \"?\"]"), text.toString());
+        Assertions.assertTrue(text.toString().contains("\n\n1... Nf6 2. Nf3 Ng8"), text.toString());
+        for (String line : text.toString().split("\n")) {
+            Assertions.assertTrue(line.length() < 80, line);
+        }
+
+        PgnReader reader = new PgnReader(new StringReader(text.toString()));
+        PgnGame read = reader.next();
+        Assertions.assertEquals(game.moves(), read.moves());
+        Assertions.assertEquals(fen, read.tags().get("FEN"));
+        Assertions.assertEquals(ChessGame.GameStatus.REPETITION, read.play().getGameStatus());
+        Assertions.assertEquals(game.moves(), reader.next().moves());
+        Assertions.assertFalse(reader.hasNext());
+    }
+
+    private static ChessMove move(int fromRow, int fromCol, int toRow, int toCol, ChessPiece.PieceType promotion) {
+        return new ChessMove(ChessPosition.of(fromRow, fromCol), ChessPosition.of(toRow, toCol), promotion);
+    }
+}